@@ -28,10 +28,6 @@ import com.sun.javadoc.LanguageVersion;
 import com.sun.javadoc.PackageDoc;
 import com.sun.javadoc.RootDoc;
 import com.sun.tools.doclets.standard.Standard;
-import jdepend.framework.JDepend;
-import jdepend.framework.JavaClass;
-import jdepend.framework.JavaPackage;
-import jdepend.framework.PackageFilter;
 import se.jguru.javadoc.apiviz.APIvizWrappedRootDoc;
 import se.jguru.javadoc.apiviz.JavaDocOption;
 import se.jguru.javadoc.apiviz.doclet.APIvizDoclet;
@@ -39,13 +35,19 @@ import se.jguru.javadoc.apiviz.model.DocletModel;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import static se.jguru.javadoc.apiviz.model.DocletModel.CLASSPATH_ARGUMENT;
 
@@ -63,41 +65,113 @@ public class APIviz {
      */
     public static final String NEWLINE = System.getProperty("line.separator", "\n");
 
-    private static final Pattern INSERTION_POINT_PATTERN = Pattern.compile(
-            "((<\\/PRE>)(?=\\s*(<P>|<div[^>]*block))|(?=<TABLE BORDER=\"1\")|(<div[^>]*contentContainer[^>]*>))",
-            Pattern.CASE_INSENSITIVE);
+    /**
+     * The directory, relative to the output directory, to which the Graphviz source of each diagram
+     * is exported when {@link JavaDocOption#OUTPUT_DIAGRAM} or {@link JavaDocOption#DOT_ONLY} is given.
+     */
+    public static final String DOT_EXPORT_DIRECTORY = "apiviz-dot";
 
     public static boolean start(RootDoc root) {
         root = new APIvizWrappedRootDoc(root);
-        if (!Standard.start(root)) {
-            return false;
-        }
 
-        if (!Graphviz.isAvailable(root)) {
+        // Create a DocletModel
+        final DocletModel docletModel = new DocletModel(root.options(), root);
+
+        if (docletModel.isDotOnly()) {
+            root.printNotice("Exporting the diagram sources to " + DOT_EXPORT_DIRECTORY + " without running Graphviz.");
+        } else if (!Graphviz.isAvailable(root)) {
             root.printWarning("Graphviz was not found on the system path. (Not installed or incorrect graphviz.home)");
             root.printWarning("Please install graphviz and specify -Dgraphviz.home ");
             root.printWarning("Skipping diagram generation.");
-            return true;
+            return Standard.start(root);
         }
+        final DeferredMessageRootDoc diagramRoot = new DeferredMessageRootDoc(root);
+        final RenderContext context = openRenderContext(root, diagramRoot, docletModel);
 
-        // Create a DocletModel
-        final DocletModel docletModel = new DocletModel(root.options(), root);
-
+        // #1) Build the graph before the standard doclet starts, as javadoc loads the tags, packages and
+        //     related classes of each ClassDoc lazily, and not thread-safely. The graph reads all of them
+        //     up front, such that generating the diagrams never reads the javadoc model.
+        final ClassDocGraph graph;
         try {
-            final File outputDirectory = docletModel.getOutputDirectory();
-
-            ClassDocGraph graph = new ClassDocGraph(root, docletModel);
-            if (docletModel.generatePackageDiagram()) {
-                generateOverviewSummary(root, graph, docletModel);
+            graph = new ClassDocGraph(root, docletModel);
+            if (context.isIncremental()) {
+                graph.exportTo(context.getSnapshot());
+                root.printNotice(context.getPreviousSnapshot().countChangedNodes(context.getSnapshot()) + " of "
+                        + context.getSnapshot().getNumNodes() + " classes and "
+                        + context.getPreviousSnapshot().countChangedEdges(context.getSnapshot())
+                        + " relationships changed since the previous run.");
             }
-            generatePackageSummaries(root, graph, outputDirectory);
-            generateClassDiagrams(root, graph, outputDirectory);
-
         } catch (Throwable t) {
+            context.getRenderQueue().awaitCompletion();
+
+            // The HTML pages do not depend on the diagrams, so write them anyway.
+            Standard.start(root);
             root.printError("An error occurred during diagram generation: " + t.toString());
             t.printStackTrace();
             return false;
         }
+
+        // #2) Analyze the dependencies and render the diagrams while the standard doclet writes the HTML pages.
+        //     Javadoc prints messages thread-unsafely, so the messages of the diagrams are printed afterwards.
+        final FutureTask<Void> diagrams = new FutureTask<Void>(new Callable<Void>() {
+            public Void call() throws Exception {
+                if (docletModel.generatePackageDiagram()) {
+                    generateOverviewSummary(diagramRoot, graph, context);
+                }
+                generatePackageSummaries(diagramRoot, graph, context);
+                generateClassDiagrams(diagramRoot, graph, context);
+                submitPendingBatch(context);
+                return null;
+            }
+        });
+        final Thread diagramGenerator = new Thread(diagrams, "apiviz-diagrams");
+        diagramGenerator.setDaemon(true);
+        diagramGenerator.start();
+
+        final boolean pagesWritten = Standard.start(root);
+
+        // #3) Print the messages of the diagrams, and inject them into the HTML pages now that those are written.
+        try {
+            try {
+                getUninterruptibly(diagrams);
+            } finally {
+                diagramRoot.release();
+            }
+            if (pagesWritten) {
+                context.pagesWritten();
+            }
+            root.printNotice(graph.getLayoutPolicy().toString());
+
+        } catch (Throwable t) {
+            final Throwable cause = t instanceof ExecutionException ? t.getCause() : t;
+            root.printError("An error occurred during diagram generation: " + cause.toString());
+            cause.printStackTrace();
+            context.getRenderQueue().awaitCompletion();
+            return false;
+        }
+
+        final int numFailures = context.getRenderQueue().awaitCompletion();
+        if (!pagesWritten) {
+            return false;
+        }
+        if (context.getRenderCache() != null) {
+            root.printNotice(context.getRenderCache().toString());
+        }
+        if (context.isIncremental()) {
+            root.printNotice("Reused " + context.getNumReusedDiagrams() + " unchanged diagram(s).");
+
+            final File snapshotFile = new File(docletModel.getOutputDirectory(), GraphSnapshot.FILENAME);
+            try {
+                context.getSnapshot().write(snapshotFile);
+            } catch (IOException e) {
+                root.printWarning("Could not write the graph snapshot " + snapshotFile + " (" + e.getMessage()
+                        + "). The next run will render all diagrams.");
+            }
+        }
+        if (numFailures > 0) {
+            root.printError("Failed to generate " + numFailures + " diagram(s).");
+            return false;
+        }
         return true;
     }
 
@@ -143,16 +217,47 @@ public class APIviz {
                             return false;
                         }
                         for (File classPathSnippet : classPath) {
-
-                            final boolean isReadableFile = classPathSnippet.isFile() && classPathSnippet.canRead();
-                            if (!isReadableFile) {
+                            if (!DocletModel.isReadableClassPathSnippet(classPathSnippet)) {
                                 errorReporter.printError("ClassPath snippet [" + classPathSnippet.getAbsolutePath()
-                                        + "] was not a readable file.");
+                                        + "] was not a readable directory or file.");
                                 return false;
                             }
                         }
 
                         break;
+
+                    case DIAGRAM_THREADS:
+                    case DIAGRAM_BATCH:
+                    case DIAGRAM_FAN_OUT:
+                    case DIAGRAM_CACHE_SIZE:
+
+                        final String positiveInteger = current[1];
+                        if (DocletModel.parsePositiveInteger(positiveInteger) == null) {
+                            errorReporter.printError(javaDocOption.getOption()
+                                    + " requires a positive integer argument. (Got: " + positiveInteger + ")");
+                            return false;
+                        }
+                        break;
+
+                    case DIAGRAM_FORMAT:
+
+                        if (DiagramFormat.parse(current[1]) == null) {
+                            errorReporter.printError(javaDocOption.getOption()
+                                    + " requires one of the arguments svg, png or both. (Got: " + current[1] + ")");
+                            return false;
+                        }
+                        break;
+
+                    case DIAGRAM_LAYOUT:
+
+                        if (!LayoutPolicy.AUTOMATIC.equalsIgnoreCase(current[1].trim())
+                                && LayoutPolicy.Tier.parse(current[1]) == null) {
+                            errorReporter.printError(javaDocOption.getOption()
+                                    + " requires one of the arguments auto, small, medium or large. (Got: "
+                                    + current[1] + ")");
+                            return false;
+                        }
+                        break;
                 }
             }
         }
@@ -219,38 +324,50 @@ public class APIviz {
 
     public static void generateOverviewSummary(final RootDoc root,
             final ClassDocGraph graph,
-            final DocletModel model) throws IOException {
-        final Map<String, PackageDoc> packages = getPackages(root);
-
-        PackageFilter packageFilter = PackageFilter.all();
-
-        for (Map.Entry<String, PackageDoc> entry : packages.entrySet()) {
-            String packageName = entry.getKey();
-            PackageDoc p = entry.getValue();
-
-            if (!ClassDocGraph.isHidden(p)) {
-                packageFilter.including(packageName);
+            final RenderContext context) throws IOException, InterruptedException {
+        final DocletModel model = context.getModel();
+
+        // #1) Analyze the dependencies between all packages which are not hidden.
+        final Set<String> analyzedPackages = new HashSet<String>();
+        for (Map.Entry<String, PackageDoc> entry : graph.getPackages().entrySet()) {
+            if (!graph.isHidden(entry.getValue())) {
+                analyzedPackages.add(entry.getKey());
             }
         }
 
-        JDepend jdepend = new JDepend(packageFilter.excludingRest());
-
         final List<File> classPath = model.getClassPath();
         for (File e : classPath) {
-            if (e.isDirectory()) {
-                root.printNotice("Included into dependency analysis: " + e);
-                jdepend.addDirectory(e.toString());
-            } else {
-                root.printNotice("Excluded from dependency analysis: " + e);
-            }
+            root.printNotice("Included into dependency analysis: " + e);
         }
 
-        jdepend.analyze();
+        // Incremental runs only parse the class files which changed since the previous run.
+        final ClassFileCache cache = context.isIncremental()
+                ? new ClassFileCache(new File(model.getOutputDirectory(), ClassFileCache.FILENAME))
+                : null;
 
-        if (checkClasspathOption(root, jdepend)) {
+        final PackageDependencies dependencies;
+        try {
+            dependencies = new ClassFileScanner(analyzedPackages, cache).scan(classPath);
+        } catch (IOException e) {
+            root.printWarning("Could not analyze the compiled class files: " + e.getMessage());
+            root.printWarning("Package dependency diagram will not be generated to avoid the inaccurate result.");
+            return;
+        }
+
+        if (cache != null) {
+            root.printNotice(cache.toString());
+            try {
+                cache.write();
+            } catch (IOException e) {
+                root.printWarning("Could not write the class file cache (" + e.getMessage()
+                        + "). The next run will parse all class files.");
+            }
+        }
+
+        // #2) Render the dependencies, provided that all compiled classes were found.
+        if (checkClasspathOption(root, graph, dependencies)) {
             instrumentDiagram(
-                    root, model.getOutputDirectory(), "overview-summary",
-                    graph.getOverviewSummaryDiagram(jdepend));
+                    root, context, "overview-summary", null, graph.getOverviewSummaryDiagram(dependencies));
         } else {
             root.printWarning("Please make sure that the '"
                     + JavaDocOption.SOURCE_CLASSPATH.getOption() + "' option was specified correctly.");
@@ -258,39 +375,27 @@ public class APIviz {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private static boolean checkClasspathOption(final RootDoc root, final JDepend jdepend) {
+    private static boolean checkClasspathOption(final RootDoc root,
+            final ClassDocGraph graph,
+            final PackageDependencies dependencies) {
 
         // Sanity check
         boolean correctClasspath = true;
-        if (jdepend.countClasses() == 0) {
-            root.printWarning("JDepend was not able to locate any compiled class files.");
+        if (dependencies.getNumClasses() == 0) {
+            root.printWarning("No compiled class files could be found.");
             correctClasspath = false;
         } else {
             for (ClassDoc c : root.classes()) {
-                if (c.containingPackage() == null
-                        || c.containingPackage().name() == null
-                        || ClassDocGraph.isHidden(c.containingPackage())) {
+                final PackageDoc pkg = graph.getPackage(c);
+                if (pkg == null
+                        || pkg.name() == null
+                        || graph.isHidden(pkg)) {
                     continue;
                 }
 
-                boolean found = false;
-                String fqcn = c.containingPackage().name() + '.' + c.name().replace('.', '$');
-                JavaPackage jpkg = jdepend.getPackage(c.containingPackage().name());
-                if (jpkg != null) {
-                    Collection<JavaClass> jclasses = jpkg.getClasses();
-                    if (jclasses != null) {
-                        for (JavaClass jcls : jclasses) {
-                            if (fqcn.equals(jcls.getName())) {
-                                found = true;
-                                break;
-                            }
-                        }
-                    }
-                }
-
-                if (!found) {
-                    root.printWarning("JDepend was not able to locate some compiled class files: " + fqcn);
+                String fqcn = pkg.name() + '.' + c.name().replace('.', '$');
+                if (!dependencies.containsClass(pkg.name(), fqcn)) {
+                    root.printWarning("Some compiled class files could not be found: " + fqcn);
                     correctClasspath = false;
                     break;
                 }
@@ -301,39 +406,45 @@ public class APIviz {
 
     public static void generatePackageSummaries(final RootDoc root,
             final ClassDocGraph graph,
-            final File outputDirectory) throws IOException {
+            final RenderContext context) throws IOException, InterruptedException {
 
-        for (PackageDoc p : getPackages(root).values()) {
-            instrumentDiagram(root,
-                    outputDirectory,
-                    p.name().replace('.', File.separatorChar) + File.separatorChar + "package-summary",
-                    graph.getPackageSummaryDiagram(p));
+        for (PackageDoc p : graph.getPackages().values()) {
+            final String filename = getDiagramFilename(p, "package-summary");
+            final String fingerprint = context.isIncremental() ? graph.getPackageSummaryFingerprint(p) : null;
+            if (!reuseDiagram(root, context, filename, fingerprint)) {
+                instrumentDiagram(root, context, filename, fingerprint, graph.getPackageSummaryDiagram(p));
+            }
         }
     }
 
     public static void generateClassDiagrams(final RootDoc root,
             final ClassDocGraph graph,
-            final File outputDirectory) throws IOException {
+            final RenderContext context) throws IOException, InterruptedException {
 
         for (ClassDoc c : root.classes()) {
-            if (c.containingPackage() == null) {
-                instrumentDiagram(
-                        root,
-                        outputDirectory,
-                        c.name(),
-                        graph.getClassDiagram(c));
-            } else {
-                instrumentDiagram(
-                        root,
-                        outputDirectory,
-                        c.containingPackage().name().replace('.', File.separatorChar) + File.separatorChar + c.name(),
-                        graph.getClassDiagram(c));
+            final String filename = getDiagramFilename(graph.getPackage(c), c.name());
+            final String fingerprint = context.isIncremental() ? graph.getClassDiagramFingerprint(c) : null;
+            if (!reuseDiagram(root, context, filename, fingerprint)) {
+                instrumentDiagram(root, context, filename, fingerprint, graph.getClassDiagram(c));
             }
         }
     }
 
+    private static String getDiagramFilename(final PackageDoc pkg, final String name) {
+
+        // The diagrams of the unnamed package reside in the output directory itself.
+        return pkg == null || pkg.name().isEmpty()
+                ? name
+                : pkg.name().replace('.', File.separatorChar) + File.separatorChar + name;
+    }
+
     static Map<String, PackageDoc> getPackages(final RootDoc root) {
 
+        // The APIvizWrappedRootDoc has indexed the packages already.
+        if (root instanceof APIvizWrappedRootDoc) {
+            return ((APIvizWrappedRootDoc) root).getPackagesByName();
+        }
+
         Map<String, PackageDoc> packages = new TreeMap<String, PackageDoc>();
         for (ClassDoc c : root.classes()) {
             PackageDoc p = c.containingPackage();
@@ -345,64 +456,259 @@ public class APIviz {
         return packages;
     }
 
+    private static boolean reuseDiagram(final RootDoc root,
+            final RenderContext context,
+            final String imageFilename,
+            final String fingerprint) throws IOException {
+
+        if (fingerprint == null) {
+            return false;
+        }
+
+        // The diagram can be reused if its subgraph is unchanged and its images are still present.
+        final File outputDirectory = context.getModel().getOutputDirectory();
+        final DiagramFormat format = context.getModel().getDiagramFormat();
+        final String markup = context.getPreviousSnapshot().getImageMap(imageFilename, fingerprint);
+        if (markup == null) {
+            return false;
+        }
+        for (String current : format.getImageSuffixes()) {
+            if (!new File(outputDirectory, imageFilename + current).isFile()) {
+                return false;
+            }
+        }
+
+        context.getSnapshot().putDiagram(imageFilename, fingerprint, markup);
+        context.diagramReused();
+        final String description = new File(outputDirectory, imageFilename + ".html").getPath();
+        context.afterPagesWritten(description, markup, newInjection(context, imageFilename, null));
+        return true;
+    }
+
     private static void instrumentDiagram(final RootDoc root,
-            final File outputDirectory,
-            String filename,
-            final String diagram) throws IOException {
+            final RenderContext context,
+            final String imageFilename,
+            final String fingerprint,
+            final DiagramSource diagram) throws InterruptedException {
+
+        final File outputDirectory = context.getModel().getOutputDirectory();
+        if (context.getModel().isPrintDiagrams()) {
+            exportDiagram(context, imageFilename, diagram);
+        }
+        if (context.getModel().isDotOnly()) {
+            return;
+        }
 
-        // TODO - it would be nice to have a debug flag that would spit out the graphviz source as well
-        //System.out.println(diagram);
+        final DiagramFormat format = context.getModel().getDiagramFormat();
+        final File htmlFile = new File(outputDirectory, imageFilename + ".html");
+        final String description = format.getImageSuffixes().isEmpty()
+                ? htmlFile.getPath()
+                : new File(outputDirectory, imageFilename + format.getImageSuffixes().get(0)).getPath();
 
-        boolean needsBottomMargin = filename.contains("overview-summary") || filename.contains("package-summary");
+        root.printNotice("Generating " + description + "...");
 
-        File htmlFile = new File(outputDirectory, filename + ".html");
-        File pngFile = new File(outputDirectory, filename + ".png");
-        File mapFile = new File(outputDirectory, filename + ".map");
+        // Write and render the diagram along with others on a worker thread,
+        // and inject it into the HTML file once the standard doclet wrote it.
+        final DiagramBatch.Completion injection = newInjection(context, imageFilename, fingerprint);
+        addToBatch(root, context, description, diagram, imageFilename, new DiagramBatch.Completion() {
+            public void complete(final String markup) throws IOException {
+                context.afterPagesWritten(htmlFile.getPath(), markup, injection);
+            }
+        });
+    }
 
-        if (!htmlFile.exists()) {
-            // Shouldn't reach here anymore.
-            // I'm retaining the code just in case.
-            for (; ; ) {
-                int idx = filename.lastIndexOf(File.separatorChar);
-                if (idx > 0) {
-                    filename = filename.substring(0, idx) + '.' + filename.substring(idx + 1);
-                } else {
-                    // Give up (maybe missing)
+    private static DiagramBatch.Completion newInjection(final RenderContext context,
+            final String imageFilename,
+            final String fingerprint) {
+
+        final DiagramFormat format = context.getModel().getDiagramFormat();
+        final File outputDirectory = context.getModel().getOutputDirectory();
+        final File htmlFile = new File(outputDirectory, imageFilename + ".html");
+        final GraphSnapshot snapshot = context.getSnapshot();
+        return new DiagramBatch.Completion() {
+            public void complete(final String markup) throws IOException {
+
+                // Pages not written by the standard doclet, such as the overview summary
+                // of a single package, get no diagram.
+                if (!htmlFile.isFile()) {
+                    for (String current : format.getImageSuffixes()) {
+                        Files.deleteIfExists(new File(outputDirectory, imageFilename + current).toPath());
+                    }
                     return;
                 }
-                htmlFile = new File(outputDirectory, filename + ".html");
-                if (htmlFile.exists()) {
-                    pngFile = new File(outputDirectory, filename + ".png");
-                    mapFile = new File(outputDirectory, filename + ".map");
-                    break;
+
+                injectDiagram(format, htmlFile, imageFilename, markup, isSummary(imageFilename));
+                if (snapshot != null && fingerprint != null) {
+                    snapshot.putDiagram(imageFilename, fingerprint, markup);
                 }
             }
+        };
+    }
+
+    private static boolean isSummary(final String filename) {
+        return filename.contains("overview-summary") || filename.contains("package-summary");
+    }
+
+    private static void exportDiagram(final RenderContext context,
+            final String filename,
+            final DiagramSource diagram) throws InterruptedException {
+
+        final Path dotFile = context.getModel().getOutputDirectory().toPath()
+                .resolve(DOT_EXPORT_DIRECTORY)
+                .resolve(filename + ".dot");
+
+        // Write the diagram source on a worker thread, in parallel with rendering.
+        context.getRenderQueue().submit(dotFile.toString(), new Callable<Void>() {
+            public Void call() throws IOException {
+                Files.createDirectories(dotFile.getParent());
+                try (Writer out = Files.newBufferedWriter(dotFile, Charset.forName(Graphviz.DOT_STANDARD_CHARSET))) {
+                    diagram.writeTo(out);
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void addToBatch(final RootDoc root,
+            final RenderContext context,
+            final String description,
+            final DiagramSource diagram,
+            final String filename,
+            final DiagramBatch.Completion completion) throws InterruptedException {
+
+        DiagramBatch batch = context.getPendingBatch();
+        if (batch == null) {
+            batch = new DiagramBatch(root,
+                    context.getModel().getDiagramFormat(),
+                    context.getModel().getOutputDirectory(),
+                    context.getRenderCache(),
+                    context.getModel().isReproducible());
+            context.setPendingBatch(batch);
+        }
+
+        batch.add(description, diagram, filename, completion);
+        if (batch.size() >= context.getModel().getDiagramBatchSize()) {
+            submitPendingBatch(context);
+        }
+    }
+
+    private static void submitPendingBatch(final RenderContext context) throws InterruptedException {
+
+        final DiagramBatch batch = context.getPendingBatch();
+        if (batch != null) {
+            context.setPendingBatch(null);
+            context.getRenderQueue().submitBatch(batch.getDescriptions(), batch);
         }
+    }
 
-        root.printNotice("Generating " + pngFile + "...");
-        Graphviz.writeImageAndMap(root, diagram, outputDirectory, filename);
+    private static RenderCache openRenderCache(final RootDoc root, final DocletModel model) {
+
+        final File cacheDirectory = model.getDiagramCacheDirectory();
+        if (cacheDirectory == null) {
+            return null;
+        }
 
         try {
-            String oldContent = FileUtil.readFile(htmlFile);
-            String mapContent = FileUtil.readFile(mapFile);
+            // Reproducible diagrams are cached without metadata, and hence apart from the others.
+            final RenderCache toReturn = new RenderCache(cacheDirectory,
+                    model.getDiagramCacheSize(),
+                    Graphviz.getVersion(),
+                    model.getDiagramFormat().getOutputFormats() + (model.isReproducible() ? ",reproducible" : ""));
+            root.printNotice("Using the diagram cache in " + cacheDirectory);
+            return toReturn;
+        } catch (IOException e) {
+            root.printWarning("Could not open the diagram cache (" + e.getMessage()
+                    + "). Diagrams will not be cached.");
+            return null;
+        }
+    }
 
-            Matcher matcher = INSERTION_POINT_PATTERN.matcher(oldContent);
-            if (!matcher.find()) {
-                throw new IllegalStateException(
-                        "Failed to find an insertion point: " + htmlFile);
+    private static RenderContext openRenderContext(final RootDoc root,
+            final DocErrorReporter diagramReporter,
+            final DocletModel model) {
+
+        final DiagramRenderQueue renderQueue = new DiagramRenderQueue(diagramReporter, model.getDiagramThreads());
+        if (model.isDotOnly()) {
+            if (model.isIncremental()) {
+                root.printNotice(JavaDocOption.INCREMENTAL.getOption() + " is ignored, since no diagrams are "
+                        + "rendered when " + JavaDocOption.DOT_ONLY.getOption() + " is given.");
             }
-            String style = "text-align: center;";
-            if (needsBottomMargin) {
-                style += "margin-bottom: 1em;";
+            return new RenderContext(model, renderQueue, null, null, null);
+        }
+
+        final RenderCache renderCache = openRenderCache(root, model);
+        if (!model.isIncremental()) {
+            return new RenderContext(model, renderQueue, renderCache, null, null);
+        }
+
+        // Diagrams rendered using another Graphviz version or other options are never reused.
+        final StringBuilder salt = new StringBuilder(Graphviz.getVersion()).append('\n');
+        for (String[] current : root.options()) {
+            final JavaDocOption option = JavaDocOption.parseJavaDocOptionArray(current);
+            if (option == JavaDocOption.DIAGRAM_THREADS
+                    || option == JavaDocOption.DIAGRAM_BATCH
+                    || option == JavaDocOption.DIAGRAM_CACHE
+                    || option == JavaDocOption.DIAGRAM_CACHE_SIZE
+                    || option == JavaDocOption.INCREMENTAL) {
+                continue;
             }
-            String newContent = oldContent.substring(0, matcher.end()) + NEWLINE + mapContent
-                    + "<div id=\"apivizContainer\" style=\"" + style + "\">"
-                    + "<img src=\"" + pngFile.getName() + "\" usemap=\"#APIVIZ\" border=\"0\"></div>"
-                    + oldContent.substring(matcher.end());
-            FileUtil.writeFile(htmlFile, newContent);
+            for (String argument : current) {
+                salt.append(argument).append('\t');
+            }
+            salt.append('\n');
+        }
 
+        final File snapshotFile = new File(model.getOutputDirectory(), GraphSnapshot.FILENAME);
+        return new RenderContext(model,
+                renderQueue,
+                renderCache,
+                GraphSnapshot.read(snapshotFile, salt.toString()),
+                new GraphSnapshot(salt.toString()));
+    }
+
+    private static void getUninterruptibly(final FutureTask<?> task) throws ExecutionException {
+
+        boolean interrupted = false;
+        try {
+            for (; ; ) {
+                try {
+                    task.get();
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
         } finally {
-            mapFile.delete();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void injectDiagram(final DiagramFormat format,
+            final File htmlFile,
+            final String imageFilename,
+            final String markup,
+            final boolean needsBottomMargin) throws IOException {
+
+        String style = "text-align: center;";
+        if (needsBottomMargin) {
+            style += "margin-bottom: 1em;";
+        }
+
+        final String content;
+        if (format.rendersPng()) {
+            final String pngName = new File(imageFilename + DiagramFormat.PNG_SUFFIX).getName();
+            content = NEWLINE + markup
+                    + "<div id=\"apivizContainer\" style=\"" + style + "\">"
+                    + "<img src=\"" + pngName + "\" usemap=\"#APIVIZ\" border=\"0\"></div>";
+        } else {
+
+            // Inline the SVG element, skipping the XML declaration, DOCTYPE and comments preceding it.
+            final int svgStart = markup.indexOf("<svg");
+            content = NEWLINE + "<div id=\"apivizContainer\" style=\"" + style + "\">"
+                    + (svgStart < 0 ? markup : markup.substring(svgStart)).trim() + "</div>";
         }
+        HtmlSplicer.splice(htmlFile, content.getBytes(FileUtil.DEFAULT_CHARSET));
     }
 }
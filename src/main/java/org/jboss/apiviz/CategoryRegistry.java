@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import se.jguru.javadoc.apiviz.model.Category;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * <p>Immutable lookup table of the {@link Category} of every {@code @apiviz.category} name used within a
+ * {@link ClassDocGraph}.</p>
+ * <p>Categories configured using the {@code -category} option keep their configured colors. All other
+ * categories are assigned the predefined {@link ColorCombination}s in category name order, and are left
+ * uncolored once those run out. Since every category is known before the first diagram is rendered, the
+ * colors never depend on rendering order, and any number of threads may read the table without locking.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class CategoryRegistry {
+
+    // Internal state
+    private final Map<String, Category> categories;
+
+    /**
+     * Creates a new CategoryRegistry.
+     *
+     * @param configuredCategories The categories configured using the {@code -category} option. Should a
+     *                             category be configured multiple times, the last configuration is used.
+     * @param usedCategoryNames    The names of all categories used by {@code @apiviz.category} tags.
+     */
+    CategoryRegistry(final Collection<Category> configuredCategories,
+                     final Collection<String> usedCategoryNames) {
+
+        final Map<String, Category> toAssign = new HashMap<String, Category>();
+        for (Category current : configuredCategories) {
+            toAssign.put(current.getName(), current);
+        }
+
+        // Assign the predefined colors in name order.
+        final SortedSet<String> unconfiguredNames = new TreeSet<String>(usedCategoryNames);
+        unconfiguredNames.removeAll(toAssign.keySet());
+
+        final ColorCombination[] colorCombinations = ColorCombination.values();
+        int numColored = 0;
+        for (String current : unconfiguredNames) {
+            if (numColored < colorCombinations.length) {
+                final ColorCombination colorCombination = colorCombinations[numColored++];
+                toAssign.put(current, new Category(current,
+                        colorCombination.getFillColor(),
+                        colorCombination.getLineColor()));
+            } else {
+
+                // Category's own color defaults cannot be resolved to Colors; state them explicitly.
+                toAssign.put(current, new Category(current, Color.white, Color.black));
+            }
+        }
+
+        // Assign internal state
+        this.categories = Collections.unmodifiableMap(toAssign);
+    }
+
+    /**
+     * Retrieves the Category with the supplied name.
+     *
+     * @param categoryName The name of a category, or {@code null}.
+     * @return The Category with the supplied name, or {@code null} if the name is null or unknown.
+     */
+    Category get(final String categoryName) {
+        return categoryName == null ? null : categories.get(categoryName);
+    }
+}
@@ -22,17 +22,17 @@
  */
 package org.jboss.apiviz;
 
-import com.sun.javadoc.ClassDoc;
-
 import java.util.Comparator;
 
 /**
- * Comparator implementation for ClassDoc instances, which takes layout orientation into account.
+ * Comparator implementation for the NodeDescriptors of ClassDoc instances, which takes layout orientation
+ * into account. Classes are sorted by their {@link NodeDescriptor#getSortRank() natural sort rank}, and then
+ * by name.
  *
  * @author The APIviz Project (apiviz-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
  */
-class ClassDocComparator implements Comparator<ClassDoc> {
+class ClassDocComparator implements Comparator<NodeDescriptor> {
 
     private final boolean isPortraitOrientation;
 
@@ -48,67 +48,19 @@ class ClassDocComparator implements Comparator<ClassDoc> {
     /**
      * {@inheritDoc}
      */
-    public int compare(final ClassDoc left, final ClassDoc right) {
+    public int compare(final NodeDescriptor left, final NodeDescriptor right) {
 
-        // Calculate the natural sort order between the supplied ClassDocs
-        final int typeDifference = getNaturalSortOrder(left) - getNaturalSortOrder(right);
+        // Calculate the natural sort order between the supplied classes
+        final int typeDifference = left.getSortRank() - right.getSortRank();
 
         // Different types?
         if (typeDifference != 0) {
             return isPortraitOrientation ? -typeDifference : typeDifference;
         }
 
-        // Fallback to comparing the names of the ClassDocs given.
-        return isPortraitOrientation ? left.name().compareTo(right.name()) : right.name().compareTo(left.name());
-    }
-
-    //
-    // Private helpers
-    //
-
-    /**
-     * Retrieves the normal/natural sort order between ClassDocs, which are assumed to be sorted as follows:
-     *
-     * <ol>
-     *     <li>Annotations</li>
-     *     <li>Enums</li>
-     *     <li>Static Classes</li>
-     *     <li>Interfaces</li>
-     *     <li>Abstract types</li>
-     *     <li>All other types</li>
-     *     <li>Errors / Exceptions</li>
-     * </ol>
-     *
-     * @param classDoc A non-null ClassDoc instance.
-     * @return
-     */
-    @SuppressWarnings("all")
-    private static int getNaturalSortOrder(final ClassDoc classDoc) {
-
-        if (classDoc.isAnnotationType()) {
-            return 0;
-        }
-
-        if (classDoc.isEnum()) {
-            return 1;
-        }
-
-        if (ClassDocGraph.isStaticType(classDoc)) {
-            return 2;
-        }
-
-        if (classDoc.isInterface()) {
-            return 3;
-        }
-
-        if (classDoc.isAbstract()) {
-            return 4;
-        }
-
-        if (classDoc.isError() || classDoc.isException()) {
-            return 100;
-        }
-
-        return 50;
+        // Fallback to comparing the names of the classes given.
+        return isPortraitOrientation
+                ? left.getName().compareTo(right.getName())
+                : right.getName().compareTo(left.getName());
     }
 }
@@ -24,19 +24,18 @@ package org.jboss.apiviz;
 
 import com.sun.javadoc.ClassDoc;
 import com.sun.javadoc.Doc;
-import com.sun.javadoc.MethodDoc;
 import com.sun.javadoc.PackageDoc;
 import com.sun.javadoc.RootDoc;
 import com.sun.javadoc.SeeTag;
 import com.sun.javadoc.Tag;
-import jdepend.framework.JDepend;
-import jdepend.framework.JavaPackage;
-import se.jguru.javadoc.apiviz.JavaDocTag;
 import se.jguru.javadoc.apiviz.model.Category;
 import se.jguru.javadoc.apiviz.model.DocletModel;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.security.MessageDigest;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -46,7 +45,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.jboss.apiviz.FileUtil.ITALIC_FONT;
 import static org.jboss.apiviz.FileUtil.NEWLINE;
@@ -58,52 +57,138 @@ import static org.jboss.apiviz.FileUtil.NORMAL_FONT;
  */
 public class ClassDocGraph {
 
+    private static final String SEE_ALSO_LABEL = "&#171;see also&#187;";
+
     final DocletModel model;
     final RootDoc root;
-    private final Map<String, ClassDoc> nodes = new TreeMap<String, ClassDoc>();
-    private final Map<ClassDoc, Set<Edge>> edges = new HashMap<ClassDoc, Set<Edge>>();
-    private final Map<ClassDoc, Set<Edge>> reversedEdges = new HashMap<ClassDoc, Set<Edge>>();
-    private int nonConfiguredCategoryCount = 0;
-    private final Map<String, Category> name2CategoryMap = new HashMap<String, Category>();
+    private final GraphIndex index;
+    private final CategoryRegistry categories;
+    private final String[] nodeFingerprints;
+    private final DocDescriptor[] nodeDescriptors;
+    private final NodeDescriptor[] classDescriptors;
+    private final Map<String, PackageDoc> packages;
+    private final Map<PackageDoc, DocDescriptor> packageDescriptors = new HashMap<PackageDoc, DocDescriptor>();
+    private final Set<PackageDoc> hiddenPackages = new HashSet<PackageDoc>();
+    private final Map<PackageDoc, String[]> packagePaths = new ConcurrentHashMap<PackageDoc, String[]>();
+    private final ExclusionMatcher[] classExclusions;
+    private final Map<PackageDoc, ExclusionMatcher> packageExclusions =
+            new ConcurrentHashMap<PackageDoc, ExclusionMatcher>();
+    private final LayoutPolicy layoutPolicy;
 
     public ClassDocGraph(final RootDoc root, final DocletModel model) {
 
         // Assign internal state
         this.root = root;
         this.model = model;
+        this.layoutPolicy = new LayoutPolicy(model.getDiagramLayoutTier());
 
-        // #1) Map all known Categories
+        // #1) Check the configured Categories
+        final Set<String> configuredCategoryNames = new HashSet<String>();
         for (Category current : model.getCategories()) {
-
-            final String categoryName = current.getName();
-            if (name2CategoryMap.containsKey(categoryName)) {
-                root.printWarning("Category defined multiple times: " + categoryName);
+            if (!configuredCategoryNames.add(current.getName())) {
+                root.printWarning("Category defined multiple times: " + current.getName());
             }
-
-            name2CategoryMap.put(current.getName(), current);
         }
 
         // #2) Populate this ClassDocGraph.
         root.printNotice("Building graph for all classes...");
+        final Map<String, ClassDoc> nodes = new HashMap<String, ClassDoc>();
+        final List<Edge> edges = new ArrayList<Edge>();
+        final RelationshipTagParser relationships = new RelationshipTagParser(root);
         for (ClassDoc node : root.classes()) {
-            addNode(node, true);
+            addNode(nodes, edges, relationships, node, true);
+        }
+
+        // #3) Index the graph once all relations are known.
+        this.index = new GraphIndex(nodes.values(), edges);
+
+        // #4) Describe the tags of all packages. Like all other reads of the javadoc model, this happens before
+        //     the diagrams are generated, as they are generated while the standard doclet is running.
+        this.packages = APIviz.getPackages(root);
+        for (PackageDoc current : packages.values()) {
+            addPackageDescriptor(current);
+        }
+        for (int node = 0; node < index.getNumNodes(); node++) {
+            if (index.getPackage(node) != null) {
+                addPackageDescriptor(index.getPackage(node));
+            }
+        }
+
+        // #5) Describe the tags and appearance of all classes, and compile the exclusion rules
+        //     of all classes and their packages.
+        this.nodeDescriptors = new DocDescriptor[index.getNumNodes()];
+        this.classDescriptors = new NodeDescriptor[index.getNumNodes()];
+        this.classExclusions = new ExclusionMatcher[index.getNumNodes()];
+        for (int node = 0; node < index.getNumNodes(); node++) {
+            nodeDescriptors[node] = new DocDescriptor(index.getNode(node));
+            classDescriptors[node] = new NodeDescriptor(index.getNode(node), nodeDescriptors[node]);
+            if (index.isMember(node)) {
+                classExclusions[node] = new ExclusionMatcher(
+                        nodeDescriptors[node].getExcludePatterns(), index.getNumNodes());
+                if (index.getPackage(node) != null) {
+                    getPackageExclusions(index.getPackage(node));
+                }
+            } else {
+                classExclusions[node] = ExclusionMatcher.NONE;
+            }
+        }
+
+        // #6) Assign the colors of all categories used by any class or package before rendering,
+        //     such that the colors never depend on the order in which the diagrams are rendered.
+        final Set<String> usedCategoryNames = new HashSet<String>();
+        for (DocDescriptor current : nodeDescriptors) {
+            addCategoryName(usedCategoryNames, current);
+        }
+        for (PackageDoc current : packages.values()) {
+            addCategoryName(usedCategoryNames, getDescriptor(current));
+        }
+        this.categories = new CategoryRegistry(model.getCategories(), usedCategoryNames);
+
+        // #7) Fingerprint all classes, which only incremental runs compare to those of the previous run.
+        this.nodeFingerprints = new String[index.getNumNodes()];
+        if (model.isIncremental()) {
+            for (int node = 0; node < index.getNumNodes(); node++) {
+                nodeFingerprints[node] = calculateNodeFingerprint(node);
+            }
         }
     }
 
-    private void addNode(final ClassDoc node, final boolean addRelatedClasses) {
+    private void addPackageDescriptor(final PackageDoc pkg) {
+        if (!packageDescriptors.containsKey(pkg)) {
+            final DocDescriptor descriptor = new DocDescriptor(pkg);
+            packageDescriptors.put(pkg, descriptor);
+            if (descriptor.isHidden()) {
+                hiddenPackages.add(pkg);
+            }
+        }
+    }
+
+    private static void addCategoryName(final Set<String> categoryNames, final DocDescriptor descriptor) {
+        if (descriptor.getCategory() != null) {
+            categoryNames.add(descriptor.getCategory());
+        }
+    }
+
+    private void addNode(final Map<String, ClassDoc> nodes,
+            final List<Edge> edges,
+            final RelationshipTagParser relationships,
+            final ClassDoc node,
+            final boolean addRelatedClasses) {
 
         String key = node.qualifiedName();
         if (!nodes.containsKey(key)) {
             nodes.put(key, node);
-            edges.put(node, new TreeSet<Edge>());
         }
 
         if (addRelatedClasses) {
-            addRelatedClasses(node);
+            addRelatedClasses(nodes, edges, relationships, node);
         }
     }
 
-    private void addRelatedClasses(final ClassDoc type) {
+    private void addRelatedClasses(final Map<String, ClassDoc> nodes,
+            final List<Edge> edges,
+            final RelationshipTagParser relationships,
+            final ClassDoc type) {
 
         // Generalization
         ClassDoc superType = type.superclass();
@@ -112,8 +197,8 @@ public class ClassDocGraph {
                 && !superType.qualifiedName().equals("java.lang.Annotation")
                 && !superType.qualifiedName().equals("java.lang.Enum")) {
 
-            addNode(superType, false);
-            addEdge(new Edge(EdgeType.GENERALIZATION, type, superType));
+            addNode(nodes, edges, relationships, superType, false);
+            edges.add(new Edge(EdgeType.GENERALIZATION, type, superType));
         }
 
         // Realization
@@ -122,95 +207,78 @@ public class ClassDocGraph {
                 continue;
             }
 
-            addNode(i, false);
-            addEdge(new Edge(EdgeType.REALIZATION, type, i));
+            addNode(nodes, edges, relationships, i, false);
+            edges.add(new Edge(EdgeType.REALIZATION, type, i));
         }
 
         // Apply custom Doclet tags.
         for (Tag t : type.tags()) {
-            if (t.name().equals(JavaDocTag.USES.toString())) {
-                addEdge(new Edge(root, EdgeType.DEPENDENCY, type, t.text()));
-            } else if (t.name().equals(JavaDocTag.HAS.toString())) {
-                addEdge(new Edge(root, EdgeType.NAVIGABILITY, type, t.text()));
-            } else if (t.name().equals(JavaDocTag.OWNS.toString())) {
-                addEdge(new Edge(root, EdgeType.AGGREGATION, type, t.text()));
-            } else if (t.name().equals(JavaDocTag.COMPOSED_OF.toString())) {
-                addEdge(new Edge(root, EdgeType.COMPOSITION, type, t.text()));
+            if (RelationshipTagParser.getEdgeType(t.name()) != null) {
+                final Edge edge = relationships.parse(type, t);
+                if (edge != null) {
+                    edges.add(edge);
+                }
             }
         }
 
         // Add an edge with '<<see also>>' label for the classes with @see tags, but avoid duplication.
         for (SeeTag t : type.seeTags()) {
+            final ClassDoc referencedClass;
             try {
-                if (t.referencedClass() == null) {
+                referencedClass = t.referencedClass();
+                if (referencedClass == null) {
                     continue;
                 }
             } catch (Exception e) {
                 continue;
             }
 
-            String a = type.qualifiedName();
-            String b = t.referencedClass().qualifiedName();
-            addNode(t.referencedClass(), false);
-            if (a.compareTo(b) != 0) {
-                if (a.compareTo(b) < 0) {
-                    addEdge(new Edge(root, EdgeType.SEE_ALSO, type, b + " - - &#171;see also&#187;"));
-                } else {
-                    addEdge(new Edge(root, EdgeType.SEE_ALSO, t.referencedClass(), a + " - - &#171;see also&#187;"));
-                }
+            addNode(nodes, edges, relationships, referencedClass, false);
+            final int order = type.qualifiedName().compareTo(referencedClass.qualifiedName());
+            if (order < 0) {
+                edges.add(new Edge(EdgeType.SEE_ALSO, type, referencedClass, "", "", SEE_ALSO_LABEL, false));
+            } else if (order > 0) {
+                edges.add(new Edge(EdgeType.SEE_ALSO, referencedClass, type, "", "", SEE_ALSO_LABEL, false));
             }
         }
     }
 
-    private void addEdge(final Edge edge) {
-        edges.get(edge.getSource()).add(edge);
-
-        Set<Edge> reversedEdgeSubset = reversedEdges.get(edge.getTarget());
-        if (reversedEdgeSubset == null) {
-            reversedEdgeSubset = new TreeSet<Edge>();
-            reversedEdges.put((ClassDoc) edge.getTarget(), reversedEdgeSubset);
-        }
-        reversedEdgeSubset.add(edge);
-    }
-
-    public String getOverviewSummaryDiagram(final JDepend jdepend) {
+    /**
+     * Retrieves the diagram of the dependencies between all packages, shown in the overview summary.
+     *
+     * @param packageDependencies The dependencies between the packages, found within the compiled classes.
+     * @return The DiagramSource of the overview summary diagram.
+     */
+    public DiagramSource getOverviewSummaryDiagram(final PackageDependencies packageDependencies) {
 
-        Map<String, PackageDoc> packages = new TreeMap<String, PackageDoc>(new Comparator<String>() {
+        final Map<String, PackageDoc> packages = new TreeMap<String, PackageDoc>(new Comparator<String>() {
             public int compare(final String left, final String right) {
                 return right.compareTo(left);
             }
         });
 
-        Set<Edge> edgesToRender = new TreeSet<Edge>();
+        final Set<Edge> edgesToRender = new TreeSet<Edge>();
 
-        addPackageDependencies(jdepend, packages, edgesToRender);
+        addPackageDependencies(packageDependencies, packages, edgesToRender);
 
         // Replace direct dependencies with transitive dependencies
         // if possible to simplify the diagram.
 
-        //// Build the matrix first.
-        Map<Doc, Set<Doc>> dependencies = new HashMap<Doc, Set<Doc>>();
-        for (Edge edge : edgesToRender) {
-            Set<Doc> nextDependencies = dependencies.get(edge.getSource());
-            if (nextDependencies == null) {
-                nextDependencies = new HashSet<Doc>();
-                dependencies.put(edge.getSource(), nextDependencies);
-            }
-            nextDependencies.add(edge.getTarget());
+        final List<Edge> dependencies = new ArrayList<Edge>(edgesToRender);
+        final Map<Doc, Integer> packageIds = new HashMap<Doc, Integer>();
+        final int[] sources = new int[dependencies.size()];
+        final int[] targets = new int[dependencies.size()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = getPackageId(packageIds, dependencies.get(i).getSource());
+            targets[i] = getPackageId(packageIds, dependencies.get(i).getTarget());
         }
 
         //// Remove the edges which doesn't change the effective relationship
         //// which can be calculated by indirect (transitive) dependency resolution.
-        for (int i = edgesToRender.size(); i > 0; i--) {
-            for (Edge edge : edgesToRender) {
-                if (isIndirectlyReachable(dependencies, edge.getSource(), edge.getTarget())) {
-                    edgesToRender.remove(edge);
-                    Set<Doc> targets = dependencies.get(edge.getSource());
-                    if (targets != null) {
-                        targets.remove(edge.getTarget());
-                    }
-                    break;
-                }
+        final boolean[] kept = TransitiveReduction.reduce(packageIds.size(), sources, targets);
+        for (int i = 0; i < kept.length; i++) {
+            if (!kept[i]) {
+                edgesToRender.remove(dependencies.get(i));
             }
         }
 
@@ -253,84 +321,94 @@ public class ClassDocGraph {
             }
         }
 
-        StringBuilder buf = new StringBuilder(16384);
-        buf.append(
-                "digraph APIVIZ {" + NEWLINE +
+        final int labelPrefixLen = prefixLen;
+        final LayoutPolicy.Tier tier = layoutPolicy.choose(packages.size(), edgesToRender.size());
+        return new DiagramSource() {
+            public void writeTo(final Writer out) throws IOException {
+                out.write("digraph APIVIZ {" + NEWLINE +
                         "rankdir=LR;" + NEWLINE +
                         "ranksep=0.3;" + NEWLINE +
                         "nodesep=0.2;" + NEWLINE +
-                        "mclimit=128;" + NEWLINE +
                         "outputorder=edgesfirst;" + NEWLINE +
-                        "center=1;" + NEWLINE +
-                        "remincross=true;" + NEWLINE +
-                        "searchsize=65536;" + NEWLINE +
-                        "splines=polyline;" + NEWLINE +
-                        "edge [fontsize=10, fontname=\"" + NORMAL_FONT + "\", " +
+                        "center=1;" + NEWLINE);
+                LayoutPolicy.writeAttributes(out, tier, 128, packages.size(), edgesToRender.size());
+                out.write("edge [fontsize=10, fontname=\"" + NORMAL_FONT + "\", " +
                         "style=\"setlinewidth(0.6)\"]; " + NEWLINE +
                         "node [shape=box, fontsize=10, fontname=\"" + NORMAL_FONT + "\", " +
                         "width=0.1, height=0.1, style=\"setlinewidth(0.6)\"]; " + NEWLINE);
 
-        for (PackageDoc pkg : packages.values()) {
-            renderPackage(buf, pkg, prefixLen);
-        }
-
-        for (Edge edge : edgesToRender) {
-            renderEdge(null, buf, edge);
-        }
+                for (PackageDoc pkg : packages.values()) {
+                    renderPackage(out, pkg, labelPrefixLen);
+                }
 
-        buf.append("}" + NEWLINE);
+                for (Edge edge : edgesToRender) {
+                    renderEdge(null, out, edge);
+                }
 
-        return buf.toString();
+                out.write("}" + NEWLINE);
+            }
+        };
     }
 
-    @SuppressWarnings("unchecked")
     private void addPackageDependencies(
-            JDepend jdepend, Map<String, PackageDoc> packages, Set<Edge> edgesToRender) {
+            PackageDependencies dependencies, Map<String, PackageDoc> packages, Set<Edge> edgesToRender) {
 
-        Map<String, PackageDoc> allPackages = APIviz.getPackages(root);
-        for (String pname : allPackages.keySet()) {
-            if (isHidden(allPackages.get(pname))) {
+        for (String pname : this.packages.keySet()) {
+            if (isHidden(this.packages.get(pname))) {
                 continue;
             }
 
-            JavaPackage pkg = jdepend.getPackage(pname);
-            if (pkg == null) {
+            if (!dependencies.containsPackage(pname)) {
                 continue;
             }
 
-            packages.put(pname, allPackages.get(pname));
-
-            Collection<JavaPackage> epkgs = pkg.getEfferents();
-            if (epkgs == null) {
-                continue;
-            }
+            packages.put(pname, this.packages.get(pname));
 
-            for (JavaPackage epkg : epkgs) {
-                if (isHidden(allPackages.get(epkg.getName()))) {
+            for (String epkg : dependencies.getEfferents(pname)) {
+                if (isHidden(this.packages.get(epkg))) {
                     continue;
                 }
-                addPackageDependency(edgesToRender, allPackages.get(pname), allPackages.get(epkg.getName()));
+                addPackageDependency(edgesToRender, this.packages.get(pname), this.packages.get(epkg));
             }
         }
     }
 
-    static boolean isHidden(Doc node) {
-        if (node.tags(JavaDocTag.HIDDEN.toString()).length > 0) {
-            return true;
-        }
+    /**
+     * Retrieves the packages of all classes documented by this ClassDocGraph.
+     *
+     * @return The packages, indexed by name in name order.
+     */
+    public Map<String, PackageDoc> getPackages() {
+        return packages;
+    }
 
-        Tag[] tags = node.tags(JavaDocTag.EXCLUDE.toString());
-        if (tags == null) {
-            return false;
-        }
+    /**
+     * Retrieves the containing package of the supplied class of this ClassDocGraph.
+     *
+     * @param cls A class of this ClassDocGraph.
+     * @return The containing package of the class, or {@code null} if it has none.
+     */
+    public PackageDoc getPackage(final ClassDoc cls) {
+        return index.getPackage(index.getNodeId(cls));
+    }
 
-        for (Tag t : tags) {
-            if (t.text() == null || t.text().trim().length() == 0) {
-                return true;
-            }
-        }
+    /**
+     * Checks if the supplied package is hidden from the diagrams, as it is tagged {@code @apiviz.hidden}
+     * or holds an {@code @apiviz.exclude} tag without a pattern.
+     *
+     * @param pkg A package of this ClassDocGraph.
+     * @return {@code true} if the package is hidden.
+     */
+    public boolean isHidden(final PackageDoc pkg) {
+        return hiddenPackages.contains(pkg);
+    }
+
+    private DocDescriptor getDescriptor(final int node) {
+        return nodeDescriptors[node];
+    }
 
-        return false;
+    private DocDescriptor getDescriptor(final PackageDoc pkg) {
+        return packageDescriptors.get(pkg);
     }
 
     private static void addPackageDependency(
@@ -341,588 +419,700 @@ public class ClassDocGraph {
         }
     }
 
-    private static boolean isIndirectlyReachable(Map<Doc, Set<Doc>> dependencyGraph, Doc source, Doc target) {
-        Set<Doc> intermediaryTargets = dependencyGraph.get(source);
-        if (intermediaryTargets == null || intermediaryTargets.isEmpty()) {
-            return false;
+    private static int getPackageId(final Map<Doc, Integer> packageIds, final Doc pkg) {
+        Integer toReturn = packageIds.get(pkg);
+        if (toReturn == null) {
+            toReturn = packageIds.size();
+            packageIds.put(pkg, toReturn);
         }
-
-        Set<Doc> visited = new HashSet<Doc>();
-        visited.add(source);
-
-        for (Doc t : intermediaryTargets) {
-            if (t == target) {
-                continue;
-            }
-            if (isIndirectlyReachable(dependencyGraph, t, target, visited)) {
-                return true;
-            }
-        }
-        return false;
+        return toReturn;
     }
 
-    private static boolean isIndirectlyReachable(Map<Doc, Set<Doc>> dependencyGraph, Doc source, Doc target, Set<Doc> visited) {
-        if (visited.contains(source)) {
-            // Evade cyclic dependency.
-            return false;
-        }
-        visited.add(source);
-
-        Set<Doc> intermediaryTargets = dependencyGraph.get(source);
-        if (intermediaryTargets == null || intermediaryTargets.isEmpty()) {
-            return false;
-        }
+    /**
+     * Retrieves the diagram of all classes within the supplied package, shown in its package summary.
+     *
+     * @param pkg The package.
+     * @return The DiagramSource of the package summary diagram.
+     */
+    public DiagramSource getPackageSummaryDiagram(final PackageDoc pkg) {
 
-        for (Doc t : intermediaryTargets) {
-            if (t == target) {
-                return true;
-            }
+        final BitSet nodesToRender = new BitSet(index.getNumNodes());
+        final BitSet edgesToRender = new BitSet(index.getNumEdges());
 
-            if (isIndirectlyReachable(dependencyGraph, t, target, visited)) {
-                return true;
-            }
-        }
-        return false;
-    }
+        fetchPackageSubgraph(pkg, nodesToRender, edgesToRender);
 
-    public String getPackageSummaryDiagram(final PackageDoc pkg) {
-        StringBuilder buf = new StringBuilder(16384);
-        buf.append(
-                "digraph APIVIZ {" + NEWLINE +
+        final List<Integer> nodeOrder = sortForRendering(nodesToRender, true);
+        final int numEdges = edgesToRender.cardinality();
+        final LayoutPolicy.Tier tier = layoutPolicy.choose(nodeOrder.size(), numEdges);
+        return new DiagramSource() {
+            public void writeTo(final Writer out) throws IOException {
+                out.write("digraph APIVIZ {" + NEWLINE +
                         "rankdir=LR;" + NEWLINE +
                         "ranksep=0.3;" + NEWLINE +
                         "nodesep=0.25;" + NEWLINE +
-                        "mclimit=1024;" + NEWLINE +
                         "outputorder=edgesfirst;" + NEWLINE +
-                        "center=1;" + NEWLINE +
-                        "remincross=true;" + NEWLINE +
-                        "searchsize=65536;" + NEWLINE +
-                        "splines=polyline;" + NEWLINE +
-                        "edge [fontsize=10, fontname=\"" + NORMAL_FONT + "\", " +
+                        "center=1;" + NEWLINE);
+                LayoutPolicy.writeAttributes(out, tier, 1024, nodeOrder.size(), numEdges);
+                out.write("edge [fontsize=10, fontname=\"" + NORMAL_FONT + "\", " +
                         "style=\"setlinewidth(0.6)\"]; " + NEWLINE +
                         "node [shape=box, fontsize=10, fontname=\"" + NORMAL_FONT + "\", " +
                         "width=0.1, height=0.1, style=\"setlinewidth(0.6)\"]; " + NEWLINE);
 
-        Map<String, ClassDoc> nodesToRender = new TreeMap<String, ClassDoc>();
-
-        Set<Edge> edgesToRender = new TreeSet<Edge>();
-
-        for (ClassDoc node : nodes.values()) {
-            fetchSubgraph(pkg, node, nodesToRender, edgesToRender, true, false, true);
-        }
-
-        renderSubgraph(pkg, null, buf, nodesToRender, edgesToRender, true);
+                renderSubgraph(pkg, -1, out, nodeOrder, edgesToRender);
 
-        buf.append("}" + NEWLINE);
-
-        return buf.toString();
+                out.write("}" + NEWLINE);
+            }
+        };
     }
 
-    private void checkCategoryExistence(final Doc node) {
-
-        // Don't crash on null nodes
-        if (node != null) {
+    private void fetchPackageSubgraph(final PackageDoc pkg,
+            final BitSet nodesToRender,
+            final BitSet edgesToRender) {
 
-            // Should we add the category with the supplied text?
-            final Tag[] nodeCategoryTags = node.tags(JavaDocTag.CATEGORY.toString());
-            final String categoryName = nodeCategoryTags == null || nodeCategoryTags.length == 0
-                    ? null
-                    : nodeCategoryTags[0].text();
+        // Only the members of the package itself are part of its subgraph.
+        final int pkgId = index.getPackageId(pkg.name());
+        if (pkgId < 0) {
+            return;
+        }
+        for (int i = 0; i < index.getNumPackageMembers(pkgId); i++) {
+            fetchSubgraph(pkg, index.getPackageMember(pkgId, i), nodesToRender, edgesToRender, true, false, true);
+        }
+    }
 
-            final boolean shouldAddCategory = nodeCategoryTags != null
-                    && nodeCategoryTags.length > 0
-                    && categoryName != null
-                    && !name2CategoryMap.containsKey(nodeCategoryTags[0].text());
+    private void fetchSubgraph(
+            PackageDoc pkg, int clsId,
+            BitSet nodesToRender, BitSet edgesToRender,
+            boolean useHidden, boolean useSee, boolean forceInherit) {
 
-            if (shouldAddCategory) {
+        if (useHidden && getDescriptor(clsId).isHidden()) {
+            return;
+        }
 
-                Category toAdd = new Category(categoryName, null, null);
-                if (ColorCombination.values().length > nonConfiguredCategoryCount) {
+        final ExclusionMatcher pkgExclusions = getPackageExclusions(pkg);
+        if (forceInherit && pkgExclusions.isExcluded(clsId, index.getQualifiedName(clsId))) {
+            return;
+        }
 
-                    // Use a predefined combination of colors which works "well"...
-                    final ColorCombination colorCombination = ColorCombination.values()[nonConfiguredCategoryCount++];
+        if (index.getPackage(clsId) == pkg) {
+            nodesToRender.set(clsId);
+            for (int i = 0; i < index.getNumOutgoingEdges(clsId); i++) {
+                fetchEdge(pkgExclusions, clsId, index.getOutgoingEdge(clsId, i), nodesToRender, edgesToRender,
+                        useHidden, useSee, forceInherit);
+            }
 
-                    // Overwrite the 'toAdd' Category.
-                    toAdd = new Category(
-                            categoryName,
-                            colorCombination.getFillColor(),
-                            colorCombination.getLineColor());
+            final boolean excludeSubtypes = getDescriptor(clsId).isExcludeSubtypes();
+            for (int i = 0; i < index.getNumIncomingEdges(clsId); i++) {
+                final int edge = index.getIncomingEdge(clsId, i);
+                if (excludeSubtypes
+                        && (index.getEdgeType(edge) == EdgeType.GENERALIZATION
+                        || index.getEdgeType(edge) == EdgeType.REALIZATION)) {
+                    continue;
                 }
 
-                name2CategoryMap.put(toAdd.getName(), toAdd);
+                fetchEdge(pkgExclusions, clsId, edge, nodesToRender, edgesToRender,
+                        useHidden, useSee, forceInherit);
             }
         }
     }
 
-    private void fetchSubgraph(
-            PackageDoc pkg, ClassDoc cls,
-            Map<String, ClassDoc> nodesToRender, Set<Edge> edgesToRender,
+    private void fetchEdge(
+            ExclusionMatcher pkgExclusions, int clsId, int edge,
+            BitSet nodesToRender, BitSet edgesToRender,
             boolean useHidden, boolean useSee, boolean forceInherit) {
 
-        if (useHidden && isHidden(cls)) {
+        if (!useSee && index.getEdgeType(edge) == EdgeType.SEE_ALSO) {
             return;
         }
 
-        if (forceInherit) {
-            for (Tag t : pkg.tags(JavaDocTag.EXCLUDE.toString())) {
-                if (t.text() == null || t.text().trim().length() == 0) {
-                    continue;
-                }
-
-                if (Pattern.compile(t.text().trim()).matcher(cls.qualifiedName()).find()) {
-                    return;
-                }
+        final int sourceId = index.getEdgeSource(edge);
+        final int targetId = index.getEdgeTarget(edge);
+        if (forceInherit || getDescriptor(clsId).isInherit()) {
+            if (isExcluded(pkgExclusions, sourceId, targetId)) {
+                return;
             }
         }
+        if (isExcluded(classExclusions[clsId], sourceId, targetId)) {
+            return;
+        }
 
-        if (cls.containingPackage() == pkg) {
-            Set<Edge> directEdges = edges.get(cls);
-            nodesToRender.put(cls.qualifiedName(), cls);
-            for (Edge edge : directEdges) {
-                if (!useSee && edge.getType() == EdgeType.SEE_ALSO) {
-                    continue;
-                }
+        final boolean sourceHidden = useHidden && getDescriptor(sourceId).isHidden();
+        final boolean targetHidden = useHidden && getDescriptor(targetId).isHidden();
+        if (!sourceHidden && !targetHidden) {
+            edgesToRender.set(edge);
+        }
+        if (!sourceHidden) {
+            nodesToRender.set(sourceId);
+        }
+        if (!targetHidden) {
+            nodesToRender.set(targetId);
+        }
+    }
 
-                ClassDoc source = (ClassDoc) edge.getSource();
-                ClassDoc target = (ClassDoc) edge.getTarget();
-
-                boolean excluded = false;
-                if (forceInherit || cls.tags(JavaDocTag.INHERIT.toString()).length > 0) {
-                    for (Tag t : pkg.tags(JavaDocTag.EXCLUDE.toString())) {
-                        if (t.text() == null || t.text().trim().length() == 0) {
-                            continue;
-                        }
-
-                        Pattern p = Pattern.compile(t.text().trim());
-
-                        if (p.matcher(source.qualifiedName()).find()) {
-                            excluded = true;
-                            break;
-                        }
-                        if (p.matcher(target.qualifiedName()).find()) {
-                            excluded = true;
-                            break;
-                        }
-                    }
-                    if (excluded) {
-                        continue;
-                    }
-                }
+    private boolean isExcluded(final ExclusionMatcher exclusions, final int source, final int target) {
+        return exclusions.isExcluded(source, index.getQualifiedName(source))
+                || exclusions.isExcluded(target, index.getQualifiedName(target));
+    }
 
-                for (Tag t : cls.tags(JavaDocTag.EXCLUDE.toString())) {
-                    if (t.text() == null || t.text().trim().length() == 0) {
-                        continue;
-                    }
+    private ExclusionMatcher getPackageExclusions(final PackageDoc pkg) {
 
-                    Pattern p = Pattern.compile(t.text().trim());
+        // Classes without a containing package have no package exclusions.
+        if (pkg == null) {
+            return ExclusionMatcher.NONE;
+        }
 
-                    if (p.matcher(source.qualifiedName()).find()) {
-                        excluded = true;
-                        break;
-                    }
-                    if (p.matcher(target.qualifiedName()).find()) {
-                        excluded = true;
-                        break;
-                    }
-                }
-                if (excluded) {
-                    continue;
-                }
+        ExclusionMatcher toReturn = packageExclusions.get(pkg);
+        if (toReturn == null) {
+            toReturn = new ExclusionMatcher(getDescriptor(pkg).getExcludePatterns(), index.getNumNodes());
 
-                if (!useHidden || !isHidden(source) && !isHidden(target)) {
-                    edgesToRender.add(edge);
-                }
-                if (!useHidden || !isHidden(source)) {
-                    nodesToRender.put(source.qualifiedName(), source);
-                }
-                if (!useHidden || !isHidden(target)) {
-                    nodesToRender.put(target.qualifiedName(), target);
-                }
+            final ExclusionMatcher existing = packageExclusions.putIfAbsent(pkg, toReturn);
+            if (existing != null) {
+                toReturn = existing;
             }
+        }
 
-            Set<Edge> reversedDirectEdges = reversedEdges.get(cls);
-            if (reversedDirectEdges != null) {
-                for (Edge edge : reversedDirectEdges) {
-                    if (!useSee && edge.getType() == EdgeType.SEE_ALSO) {
-                        continue;
-                    }
+        return toReturn;
+    }
 
-                    if (cls.tags(JavaDocTag.EXCLUDE_SUBTYPES.toString()).length > 0
-                            && (edge.getType() == EdgeType.GENERALIZATION
-                            || edge.getType() == EdgeType.REALIZATION)) {
-                        continue;
-                    }
+    /**
+     * Retrieves the diagram of the supplied class and its related classes, shown in its class documentation.
+     *
+     * @param cls The class.
+     * @return The DiagramSource of the class diagram.
+     */
+    public DiagramSource getClassDiagram(final ClassDoc cls) {
+        final int clsId = index.getNodeId(cls);
+        final PackageDoc pkg = index.getPackage(clsId);
 
-                    ClassDoc source = (ClassDoc) edge.getSource();
-                    ClassDoc target = (ClassDoc) edge.getTarget();
-
-                    boolean excluded = false;
-                    if (forceInherit || cls.tags(JavaDocTag.INHERIT.toString()).length > 0) {
-                        for (Tag t : pkg.tags(JavaDocTag.EXCLUDE.toString())) {
-                            if (t.text() == null || t.text().trim().length() == 0) {
-                                continue;
-                            }
-
-                            Pattern p = Pattern.compile(t.text().trim());
-
-                            if (p.matcher(source.qualifiedName()).find()) {
-                                excluded = true;
-                                break;
-                            }
-                            if (p.matcher(target.qualifiedName()).find()) {
-                                excluded = true;
-                                break;
-                            }
-                        }
-                        if (excluded) {
-                            continue;
-                        }
-                    }
+        final BitSet nodesToRender = new BitSet(index.getNumNodes());
+        final BitSet edgesToRender = new BitSet(index.getNumEdges());
 
-                    for (Tag t : cls.tags(JavaDocTag.EXCLUDE.toString())) {
-                        if (t.text() == null || t.text().trim().length() == 0) {
-                            continue;
-                        }
-
-                        Pattern p = Pattern.compile(t.text().trim());
-
-                        if (p.matcher(source.qualifiedName()).find()) {
-                            excluded = true;
-                            break;
-                        }
-                        if (p.matcher(target.qualifiedName()).find()) {
-                            excluded = true;
-                            break;
-                        }
-                    }
-                    if (excluded) {
-                        continue;
-                    }
+        final List<FanOutCap.Summary> summaries = fetchClassSubgraph(clsId, nodesToRender, edgesToRender);
 
-                    if (!useHidden || !isHidden(source) && !isHidden(target)) {
-                        edgesToRender.add(edge);
-                    }
-                    if (!useHidden || !isHidden(source)) {
-                        nodesToRender.put(source.qualifiedName(), source);
-                    }
-                    if (!useHidden || !isHidden(target)) {
-                        nodesToRender.put(target.qualifiedName(), target);
-                    }
+        // Determine the graph orientation automatically.
+        final boolean portrait = isPortrait(clsId, edgesToRender, summaries);
+        final List<Integer> nodeOrder = sortForRendering(nodesToRender, portrait);
+        final int numNodes = nodeOrder.size() + summaries.size();
+        final int numEdges = edgesToRender.cardinality() + summaries.size();
+        final LayoutPolicy.Tier tier = layoutPolicy.choose(numNodes, numEdges);
+        return new DiagramSource() {
+            public void writeTo(final Writer out) throws IOException {
+                out.write("digraph APIVIZ {" + NEWLINE);
+
+                if (!portrait) {
+                    // Landscape looks better usually up to 5.
+                    // There are just a few subtypes and supertypes.
+                    out.write("rankdir=TB;" + NEWLINE
+                            + "ranksep=0.4;" + NEWLINE
+                            + "nodesep=0.3;" + NEWLINE);
+                } else {
+                    // Portrait looks better.
+                    // There are too many subtypes or supertypes.
+                    out.write("rankdir=LR;" + NEWLINE
+                            + "ranksep=1.0;" + NEWLINE
+                            + "nodesep=0.2;" + NEWLINE);
+                }
+
+                out.write("outputorder=edgesfirst;" + NEWLINE
+                        + "center=1;" + NEWLINE);
+                LayoutPolicy.writeAttributes(out, tier, 128, numNodes, numEdges);
+                out.write("edge [fontsize=10, fontname=\"" + NORMAL_FONT + "\", "
+                        + "style=\"setlinewidth(0.6)\"]; " + NEWLINE
+                        + "node [shape=box, fontsize=10, fontname=\"" + NORMAL_FONT + "\", "
+                        + "width=0.1, height=0.1, style=\"setlinewidth(0.6)\"]; " + NEWLINE);
+
+                renderSubgraph(pkg, clsId, out, nodeOrder, edgesToRender);
+                for (FanOutCap.Summary current : summaries) {
+                    renderSummary(clsId, out, current);
                 }
+
+                out.write("}" + NEWLINE);
             }
-        }
+        };
     }
 
-    public String getClassDiagram(final ClassDoc cls) {
-        PackageDoc pkg = cls.containingPackage();
+    private List<FanOutCap.Summary> fetchClassSubgraph(final int clsId,
+            final BitSet nodesToRender,
+            final BitSet edgesToRender) {
 
-        StringBuilder buf = new StringBuilder(16384);
-        Map<String, ClassDoc> nodesToRender = new TreeMap<String, ClassDoc>();
-        Set<Edge> edgesToRender = new TreeSet<Edge>();
+        final PackageDoc pkg = index.getPackage(clsId);
+        fetchSubgraph(pkg, clsId, nodesToRender, edgesToRender, false, true, false);
 
-        fetchSubgraph(pkg, cls, nodesToRender, edgesToRender, false, true, false);
+        // Collapse the least relevant neighbours of hub types.
+        return FanOutCap.apply(index, clsId, model.getDiagramFanOut(), nodesToRender, edgesToRender);
+    }
 
-        buf.append("digraph APIVIZ {" + NEWLINE);
+    private boolean isPortrait(final int clsId,
+            final BitSet edgesToRender,
+            final List<FanOutCap.Summary> summaries) {
 
-        // Determine the graph orientation automatically.
         int nodesAbove = 0;
         int nodesBelow = 0;
-        for (Edge e : edgesToRender) {
-            if (e.getType().isReversed()) {
-                if (e.getSource() == cls) {
+        for (int e = edgesToRender.nextSetBit(0); e >= 0; e = edgesToRender.nextSetBit(e + 1)) {
+            if (index.getEdgeType(e).isReversed()) {
+                if (index.getEdgeSource(e) == clsId) {
                     nodesAbove++;
                 } else {
                     nodesBelow++;
                 }
             } else {
-                if (e.getSource() == cls) {
+                if (index.getEdgeSource(e) == clsId) {
                     nodesBelow++;
                 } else {
                     nodesAbove++;
                 }
             }
         }
+        for (FanOutCap.Summary current : summaries) {
+            if (current.getType().isReversed() == current.isOutgoing()) {
+                nodesAbove++;
+            } else {
+                nodesBelow++;
+            }
+        }
 
-        boolean portrait;
-        if (Math.max(nodesAbove, nodesBelow) <= 5) {
-            // Landscape looks better usually up to 5.
-            // There are just a few subtypes and supertypes.
-            buf.append("rankdir=TB;" + NEWLINE
-                    + "ranksep=0.4;" + NEWLINE
-                    + "nodesep=0.3;" + NEWLINE);
-            portrait = false;
-        } else {
-            // Portrait looks better.
-            // There are too many subtypes or supertypes.
-            buf.append("rankdir=LR;" + NEWLINE
-                    + "ranksep=1.0;" + NEWLINE
-                    + "nodesep=0.2;" + NEWLINE);
-            portrait = true;
-        }
-
-        buf.append("mclimit=128;" + NEWLINE
-                + "outputorder=edgesfirst;" + NEWLINE
-                + "center=1;" + NEWLINE
-                + "remincross=true;" + NEWLINE
-                + "searchsize=65536;" + NEWLINE
-                + "splines=polyline;" + NEWLINE
-                + "edge [fontsize=10, fontname=\"" + NORMAL_FONT + "\", "
-                + "style=\"setlinewidth(0.6)\"]; " + NEWLINE
-                + "node [shape=box, fontsize=10, fontname=\"" + NORMAL_FONT + "\", "
-                + "width=0.1, height=0.1, style=\"setlinewidth(0.6)\"]; " + NEWLINE);
-
-        renderSubgraph(pkg, cls, buf, nodesToRender, edgesToRender, portrait);
-
-        buf.append("}" + NEWLINE);
-
-        return buf.toString();
+        return Math.max(nodesAbove, nodesBelow) > 5;
     }
 
-    private void renderSubgraph(final PackageDoc pkg,
-            final ClassDoc cls,
-            final StringBuilder buf,
-            final Map<String, ClassDoc> nodesToRender,
-            final Set<Edge> edgesToRender,
+    /**
+     * Retrieves the LayoutPolicy choosing the layout attributes of the diagrams of this ClassDocGraph,
+     * which counts the layout tier of every diagram retrieved so far.
+     *
+     * @return The LayoutPolicy of this ClassDocGraph.
+     */
+    public LayoutPolicy getLayoutPolicy() {
+        return layoutPolicy;
+    }
+
+    /**
+     * Exports all nodes and edges of this ClassDocGraph to the supplied GraphSnapshot.
+     * Requires the DocletModel of this ClassDocGraph to be incremental.
+     *
+     * @param snapshot The GraphSnapshot of the current doclet run.
+     */
+    public void exportTo(final GraphSnapshot snapshot) {
+        for (int node = 0; node < index.getNumNodes(); node++) {
+            if (index.isMember(node)) {
+                snapshot.putNode(index.getQualifiedName(node), getNodeFingerprint(node), getDescriptor(node).isHidden());
+            }
+        }
+        for (int edge = 0; edge < index.getNumEdges(); edge++) {
+            snapshot.putEdge(getEdgeKey(edge));
+        }
+    }
+
+    /**
+     * Calculates the fingerprint of the subgraph rendered by {@link #getClassDiagram(ClassDoc)}.
+     * The fingerprint changes whenever the rendered diagram would change.
+     *
+     * @param cls The class of the class diagram.
+     * @return The fingerprint of the class diagram subgraph.
+     */
+    public String getClassDiagramFingerprint(final ClassDoc cls) {
+        final int clsId = index.getNodeId(cls);
+        final PackageDoc pkg = index.getPackage(clsId);
+        BitSet nodesToRender = new BitSet(index.getNumNodes());
+        BitSet edgesToRender = new BitSet(index.getNumEdges());
+
+        final List<FanOutCap.Summary> summaries = fetchClassSubgraph(clsId, nodesToRender, edgesToRender);
+
+        return getSubgraphFingerprint("class:" + cls.qualifiedName(), pkg, clsId, nodesToRender, edgesToRender,
+                summaries, isPortrait(clsId, edgesToRender, summaries));
+    }
+
+    /**
+     * Calculates the fingerprint of the subgraph rendered by {@link #getPackageSummaryDiagram(PackageDoc)}.
+     * The fingerprint changes whenever the rendered diagram would change.
+     *
+     * @param pkg The package of the package summary diagram.
+     * @return The fingerprint of the package summary subgraph.
+     */
+    public String getPackageSummaryFingerprint(final PackageDoc pkg) {
+        BitSet nodesToRender = new BitSet(index.getNumNodes());
+        BitSet edgesToRender = new BitSet(index.getNumEdges());
+
+        fetchPackageSubgraph(pkg, nodesToRender, edgesToRender);
+
+        return getSubgraphFingerprint("package:" + pkg.name(), pkg, -1, nodesToRender, edgesToRender,
+                Collections.<FanOutCap.Summary>emptyList(), true);
+    }
+
+    private String getSubgraphFingerprint(final String diagramId,
+            final PackageDoc pkg,
+            final int clsId,
+            final BitSet nodesToRender,
+            final BitSet edgesToRender,
+            final List<FanOutCap.Summary> summaries,
             final boolean portrait) {
 
-        List<ClassDoc> nodesToRenderCopy = new ArrayList<ClassDoc>(nodesToRender.values());
-        Collections.sort(nodesToRenderCopy, new ClassDocComparator(portrait));
+        final MessageDigest digest = GraphSnapshot.newFingerprintDigest();
+        GraphSnapshot.update(digest, diagramId);
+        GraphSnapshot.update(digest, String.valueOf(portrait));
 
-        for (ClassDoc node : nodesToRenderCopy) {
-            renderClass(pkg, cls, buf, node);
+        // Visit the nodes in rendering order.
+        for (int nodeId : sortForRendering(nodesToRender, portrait)) {
+            final Category category = getCategory(getDescriptor(nodeId));
+
+            GraphSnapshot.update(digest, index.getQualifiedName(nodeId));
+            GraphSnapshot.update(digest, getNodeFingerprint(nodeId));
+            GraphSnapshot.update(digest, String.valueOf(index.getPackage(nodeId) == pkg));
+            GraphSnapshot.update(digest, String.valueOf(nodeId == clsId));
+            GraphSnapshot.update(digest, category == null
+                    ? null
+                    : category.getFillColor().getRgbValue() + category.getLineColor().getRgbValue());
         }
 
-        for (Edge edge : edgesToRender) {
-            renderEdge(pkg, buf, edge);
+        for (int edge = edgesToRender.nextSetBit(0); edge >= 0; edge = edgesToRender.nextSetBit(edge + 1)) {
+            GraphSnapshot.update(digest, getEdgeKey(edge));
+        }
+        for (FanOutCap.Summary current : summaries) {
+            GraphSnapshot.update(digest, current.getDotId());
+            for (String name : current.getNames()) {
+                GraphSnapshot.update(digest, name);
+            }
         }
+
+        return FileUtil.toHex(digest.digest());
     }
 
-    private void renderPackage(final StringBuilder buf,
+    private String getNodeFingerprint(final int nodeId) {
+
+        final String toReturn = nodeFingerprints[nodeId];
+        if (toReturn == null) {
+            throw new IllegalStateException("Nodes are only fingerprinted for incremental runs.");
+        }
+        return toReturn;
+    }
+
+    private String calculateNodeFingerprint(final int nodeId) {
+
+        final ClassDoc node = index.getNode(nodeId);
+        final PackageDoc pkg = index.getPackage(nodeId);
+        final MessageDigest digest = GraphSnapshot.newFingerprintDigest();
+        GraphSnapshot.update(digest, node.qualifiedName());
+        GraphSnapshot.update(digest, node.name());
+        GraphSnapshot.update(digest, pkg == null ? null : pkg.name());
+        GraphSnapshot.update(digest, "" + node.isInterface() + node.isAbstract() + node.isEnum()
+                + node.isAnnotationType() + node.isException() + node.isError() + node.isIncluded()
+                + classDescriptors[nodeId].isStaticType() + getDescriptor(nodeId).isHidden());
+        for (Tag current : node.tags()) {
+            GraphSnapshot.update(digest, current.name());
+            GraphSnapshot.update(digest, current.text());
+        }
+
+        return FileUtil.toHex(digest.digest());
+    }
+
+    private String getEdgeKey(final int edge) {
+        return index.getEdgeType(edge) + " " + index.getDotId(index.getEdgeSource(edge))
+                + " " + index.getDotId(index.getEdgeTarget(edge)) + " " + index.isOneway(edge)
+                + " " + index.getSourceLabel(edge) + " " + index.getTargetLabel(edge)
+                + " " + index.getEdgeLabel(edge);
+    }
+
+    private void renderSubgraph(final PackageDoc pkg,
+            final int clsId,
+            final Writer out,
+            final List<Integer> nodeOrder,
+            final BitSet edgesToRender) throws IOException {
+
+        for (int node : nodeOrder) {
+            renderClass(pkg, clsId, out, node);
+        }
+
+        for (int edge = edgesToRender.nextSetBit(0); edge >= 0; edge = edgesToRender.nextSetBit(edge + 1)) {
+            renderEdge(pkg, out, edge);
+        }
+    }
+
+    private List<Integer> sortForRendering(final BitSet nodesToRender, final boolean portrait) {
+
+        final List<Integer> toReturn = new ArrayList<Integer>(nodesToRender.cardinality());
+        for (int node = nodesToRender.nextSetBit(0); node >= 0; node = nodesToRender.nextSetBit(node + 1)) {
+            toReturn.add(node);
+        }
+
+        final ClassDocComparator comparator = new ClassDocComparator(portrait);
+        Collections.sort(toReturn, new Comparator<Integer>() {
+            public int compare(final Integer left, final Integer right) {
+                return comparator.compare(classDescriptors[left], classDescriptors[right]);
+            }
+        });
+
+        return toReturn;
+    }
+
+    private void renderSummary(final int clsId,
+            final Writer out,
+            final FanOutCap.Summary summary) throws IOException {
+
+        final String lineColor = greyOut("#000000");
+        out.append(summary.getDotId());
+        out.append(" [label=\"");
+        out.append(summary.getLabel());
+        out.append("\", tooltip=\"");
+        out.append(escape(summary.getTooltip()));
+        out.append("\", style=\"filled,dashed\", color=\"");
+        out.append(lineColor);
+        out.append("\", fontcolor=\"gray30\", fillcolor=\"");
+        out.append(Color.white.getRgbValue());
+
+        // Link to the page listing all uses of the class, provided that it is generated.
+        if (model.isUsePages()) {
+            out.append("\", href=\"class-use/");
+            out.append(classDescriptors[clsId].getName());
+            out.append(".html");
+        }
+
+        out.append("\"];");
+        out.append(NEWLINE);
+
+        final String dotId = index.getDotId(clsId);
+        renderEdge(out,
+                summary.getType(),
+                summary.isOutgoing() ? dotId : summary.getDotId(),
+                summary.isOutgoing() ? summary.getDotId() : dotId,
+                true,
+                "",
+                "",
+                "",
+                lineColor,
+                "gray30");
+    }
+
+    private void renderPackage(final Writer out,
             final PackageDoc pkg,
-            final int prefixLen) {
+            final int prefixLen) throws IOException {
 
-        checkCategoryExistence(pkg);
+        final DocDescriptor descriptor = getDescriptor(pkg);
 
         String href = pkg.name().replace('.', '/') + "/package-summary.html";
-        buf.append(getNodeId(pkg));
-        buf.append(" [label=\"");
-        buf.append(pkg.name().substring(prefixLen));
-        buf.append("\", style=\"filled");
-        if (pkg.tags("@deprecated").length > 0) {
-            buf.append(",dotted");
-        }
-        buf.append("\", fillcolor=\"");
-        buf.append(getFillColor(pkg));
-        buf.append("\", href=\"");
-        buf.append(href);
-        buf.append("\"];");
-        buf.append(NEWLINE);
+        out.append(getNodeId(pkg));
+        out.append(" [label=\"");
+        out.append(pkg.name().substring(prefixLen));
+        out.append("\", style=\"filled");
+        if (descriptor.isDeprecated()) {
+            out.append(",dotted");
+        }
+        out.append("\", fillcolor=\"");
+        out.append(getFillColor(pkg));
+        out.append("\", href=\"");
+        out.append(href);
+        out.append("\"];");
+        out.append(NEWLINE);
     }
 
     private void renderClass(final PackageDoc pkg,
-            final ClassDoc cls,
-            final StringBuilder buf,
-            final ClassDoc node) {
-
-        checkCategoryExistence(node);
-
-        String fillColor = getFillColor(pkg, cls, node);
-        String lineColor = getLineColor(pkg, cls, node);
-        String fontColor = getFontColor(pkg, node);
-        String href = getPath(pkg, node);
-
-        buf.append(getNodeId(node));
-        buf.append(" [label=\"");
-        buf.append(getNodeLabel(pkg, node));
-        buf.append("\", tooltip=\"");
-        buf.append(escape(getNodeLabel(pkg, node)));
-        buf.append("\"");
-        if (node.isAbstract() && !node.isInterface()) {
-            buf.append(", fontname=\"");
-            buf.append(ITALIC_FONT);
-            buf.append("\"");
-        }
-        buf.append(", style=\"filled");
-        if (node.tags("@deprecated").length > 0) {
-            buf.append(",dotted");
-        }
-        buf.append("\", color=\"");
-        buf.append(lineColor);
-        buf.append("\", fontcolor=\"");
-        buf.append(fontColor);
-        buf.append("\", fillcolor=\"");
-        buf.append(fillColor);
+            final int clsId,
+            final Writer out,
+            final int nodeId) throws IOException {
+
+        final DocDescriptor descriptor = getDescriptor(nodeId);
+        final NodeDescriptor classDescriptor = classDescriptors[nodeId];
+        final boolean samePackage = index.getPackage(nodeId) == pkg;
+
+        String fillColor = getFillColor(pkg, clsId, nodeId, descriptor);
+        String lineColor = getLineColor(pkg, clsId, nodeId, descriptor);
+        String fontColor = getFontColor(pkg, nodeId);
+        String href = classDescriptor.getHref(getPackagePath(pkg));
+
+        out.append(index.getDotId(nodeId));
+        out.append(" [label=\"");
+        out.append(classDescriptor.getLabel(samePackage));
+        out.append("\", tooltip=\"");
+        out.append(classDescriptor.getTooltip(samePackage));
+        out.append("\"");
+        if (classDescriptor.isAbstractClass()) {
+            out.append(", fontname=\"");
+            out.append(ITALIC_FONT);
+            out.append("\"");
+        }
+        out.append(", style=\"filled");
+        if (descriptor.isDeprecated()) {
+            out.append(",dotted");
+        }
+        out.append("\", color=\"");
+        out.append(lineColor);
+        out.append("\", fontcolor=\"");
+        out.append(fontColor);
+        out.append("\", fillcolor=\"");
+        out.append(fillColor);
 
         if (href != null) {
-            buf.append("\", href=\"");
-            buf.append(href);
+            out.append("\", href=\"");
+            out.append(href);
         }
 
-        buf.append("\"];");
-        buf.append(NEWLINE);
+        out.append("\"];");
+        out.append(NEWLINE);
     }
 
     private void renderEdge(final PackageDoc pkg,
-            final StringBuilder buf,
-            final Edge edge) {
+            final Writer out,
+            final Edge edge) throws IOException {
+
+        renderEdge(out,
+                edge.getType(),
+                getNodeId(edge.getSource()),
+                getNodeId(edge.getTarget()),
+                edge.isOneway(),
+                edge.getSourceLabel(),
+                edge.getTargetLabel(),
+                edge.getEdgeLabel(),
+                getLineColor(pkg, edge),
+                getFontColor(pkg, edge));
+    }
+
+    private void renderEdge(final PackageDoc pkg,
+            final Writer out,
+            final int edge) throws IOException {
+
+        final int source = index.getEdgeSource(edge);
+        final int target = index.getEdgeTarget(edge);
+
+        renderEdge(out,
+                index.getEdgeType(edge),
+                index.getDotId(index.getEdgeSource(edge)),
+                index.getDotId(index.getEdgeTarget(edge)),
+                index.isOneway(edge),
+                index.getSourceLabel(edge),
+                index.getTargetLabel(edge),
+                index.getEdgeLabel(edge),
+                getLineColor(pkg, source, target, getDescriptor(target)),
+                getFontColor(pkg, target));
+    }
 
-        EdgeType type = edge.getType();
-        String lineColor = getLineColor(pkg, edge);
-        String fontColor = getFontColor(pkg, edge);
+    private static void renderEdge(final Writer out,
+            final EdgeType type,
+            final String sourceId,
+            final String targetId,
+            final boolean oneway,
+            final String sourceLabel,
+            final String targetLabel,
+            final String edgeLabel,
+            final String lineColor,
+            final String fontColor) throws IOException {
 
         // Graphviz lays out nodes upside down - adjust for
         // important relationships.
-        boolean reverse = edge.getType().isReversed();
+        boolean reverse = type.isReversed();
 
         if (reverse) {
-            buf.append(getNodeId(edge.getTarget()));
-            buf.append(" -> ");
-            buf.append(getNodeId(edge.getSource()));
-            buf.append(" [arrowhead=\"");
-            buf.append(type.getArrowTail());
-            buf.append("\", arrowtail=\"");
-            buf.append(type.getArrowHead() == null ? (edge.isOneway() ? "open" : "none") : type.getArrowHead());
+            out.append(targetId);
+            out.append(" -> ");
+            out.append(sourceId);
+            out.append(" [arrowhead=\"");
+            out.append(type.getArrowTail());
+            out.append("\", arrowtail=\"");
+            out.append(type.getArrowHead() == null ? (oneway ? "open" : "none") : type.getArrowHead());
         } else {
-            buf.append(getNodeId(edge.getSource()));
-            buf.append(" -> ");
-            buf.append(getNodeId(edge.getTarget()));
-            buf.append(" [arrowhead=\"");
-            buf.append(type.getArrowHead() == null ? (edge.isOneway() ? "open" : "none") : type.getArrowHead());
-            buf.append("\", arrowtail=\"");
-            buf.append(type.getArrowTail());
-        }
-
-        buf.append("\", style=\"" + type.getStyle());
-        buf.append("\", dir=\"both");
-        buf.append("\", color=\"");
-        buf.append(lineColor);
-        buf.append("\", fontcolor=\"");
-        buf.append(fontColor);
-        buf.append("\", label=\"");
-        buf.append(escape(edge.getEdgeLabel()));
-        buf.append("\", headlabel=\"");
-        buf.append(escape(edge.getTargetLabel()));
-        buf.append("\", taillabel=\"");
-        buf.append(escape(edge.getSourceLabel()));
-        buf.append("\" ];");
-        buf.append(NEWLINE);
+            out.append(sourceId);
+            out.append(" -> ");
+            out.append(targetId);
+            out.append(" [arrowhead=\"");
+            out.append(type.getArrowHead() == null ? (oneway ? "open" : "none") : type.getArrowHead());
+            out.append("\", arrowtail=\"");
+            out.append(type.getArrowTail());
+        }
+
+        out.append("\", style=\"" + type.getStyle());
+        out.append("\", dir=\"both");
+        out.append("\", color=\"");
+        out.append(lineColor);
+        out.append("\", fontcolor=\"");
+        out.append(fontColor);
+        out.append("\", label=\"");
+        out.append(escape(edgeLabel));
+        out.append("\", headlabel=\"");
+        out.append(escape(targetLabel));
+        out.append("\", taillabel=\"");
+        out.append(escape(sourceLabel));
+        out.append("\" ];");
+        out.append(NEWLINE);
     }
 
-    private static String getStereotype(final ClassDoc node) {
-        String stereotype = node.isInterface() ? "interface" : null;
-        if (node.isException() || node.isError()) {
-            stereotype = "exception";
-        } else if (node.isAnnotationType()) {
-            stereotype = "annotation";
-        } else if (node.isEnum()) {
-            stereotype = "enum";
-        } else if (isStaticType(node)) {
-            stereotype = "static";
-        }
-
-        if (node.tags(JavaDocTag.STEREOTYPE.toString()).length > 0) {
-            stereotype = node.tags(JavaDocTag.STEREOTYPE.toString())[0].text();
-        }
-
-        return escape(stereotype);
+    private Category getCategory(final DocDescriptor descriptor) {
+        return categories.get(descriptor.getCategory());
     }
 
-    static boolean isStaticType(final ClassDoc node) {
-        boolean staticType = true;
-        int methods = 0;
-        for (MethodDoc m : node.methods()) {
-            if (m.isConstructor()) {
-                continue;
-            }
-            methods++;
-            if (!m.isStatic()) {
-                staticType = false;
-                break;
-            }
-        }
-
-        return staticType && methods > 0;
-    }
-
-    private Color getFillColor(final PackageDoc pkg) {
+    private String getFillColor(final PackageDoc pkg) {
 
         // Does the current PackageDoc have a Category defined?
-        final List<String> categoryNames = getTextsForTag(JavaDocTag.CATEGORY, pkg);
-        final String categoryName = categoryNames.isEmpty()
-                ? null
-                : categoryNames.get(0);
-
-        final Category existingCategory = categoryName == null
-                ? null
-                : name2CategoryMap.get(categoryName);
+        final DocDescriptor descriptor = getDescriptor(pkg);
+        final Category existingCategory = getCategory(descriptor);
 
         // Default fill color
-        Color toReturn = Color.white;
+        String toReturn = Color.white.getRgbValue();
 
         if (existingCategory != null) {
 
             // We have an existing Category. Use its fill color
-            toReturn = existingCategory.getFillColor();
+            toReturn = existingCategory.getFillColor().getRgbValue();
         }
-        if (pkg.tags(JavaDocTag.LANDMARK.toString()).length > 0) {
+        if (descriptor.isLandmark()) {
 
             // Landmark tags imply Khaki1...
-            toReturn = Color.khaki1;
+            toReturn = Color.khaki1.getRgbValue();
         }
 
         // All Done.
         return toReturn;
     }
 
-    private Color getFillColor(final PackageDoc pkg, final ClassDoc cls, final ClassDoc node) {
+    private String getFillColor(final PackageDoc pkg,
+            final int clsId,
+            final int nodeId,
+            final DocDescriptor descriptor) {
 
-        Color toReturn = Color.white;
+        String toReturn = Color.white.getRgbValue();
 
         // Investigate if we have an existing Category
-        final List<String> textsForTag = getTextsForTag(JavaDocTag.CATEGORY, node);
-        final String categoryName = textsForTag.isEmpty()
-                ? null
-                : textsForTag.get(0);
-
-        final Category existingCategory = categoryName == null
-                ? null
-                : name2CategoryMap.get(categoryName);
+        final Category existingCategory = getCategory(descriptor);
 
-        if (cls == null) {
+        if (clsId < 0) {
 
             // We are rendering for a package summary since there is no Class
             // See if the node has a fillColor
             if (existingCategory != null) {
-                toReturn = existingCategory.getFillColor();
+                toReturn = existingCategory.getFillColor().getRgbValue();
             }
 
             // Override previous values if a Landmark is set
-            if (node.containingPackage() == pkg && node.tags(JavaDocTag.LANDMARK.toString()).length > 0) {
-                toReturn = Color.khaki1;
+            if (index.getPackage(nodeId) == pkg && descriptor.isLandmark()) {
+                toReturn = Color.khaki1.getRgbValue();
             }
 
-        } else if (cls == node) {
+        } else if (clsId == nodeId) {
             // this is class we are rending the class diagram for
-            toReturn = Color.khaki1;
+            toReturn = Color.khaki1.getRgbValue();
 
         } else if (existingCategory != null) {
 
             // not the class for the class diagram so use its fill color
-            toReturn = existingCategory.getFillColor();
+            toReturn = existingCategory.getFillColor().getRgbValue();
 
-            if (node.containingPackage() != pkg && toReturn.matches("^[!@#$%^&*+=][0-9A-Fa-f]{6}$")) {
+            if (index.getPackage(nodeId) != pkg && toReturn.matches(Color.COLOR_REGEXP)) {
 
                 //grey out the fill color
-                final StringBuffer sb = new StringBuffer("#");
-                sb.append(shiftColor(toReturn.substring(1, 3)));
-                sb.append(shiftColor(toReturn.substring(3, 5)));
-                sb.append(shiftColor(toReturn.substring(5, 7)));
-                toReturn = sb.toString();
+                toReturn = greyOut(toReturn);
             }
         }
         return toReturn;
     }
 
+    /**
+     * Shifts the supplied RGB color to achieve a "gray-out" effect.
+     *
+     * @param color An RGB color, on the form {@code #rrggbb}.
+     * @return The greyed-out RGB color.
+     */
+    private static String greyOut(final String color) {
+        final StringBuilder sb = new StringBuilder("#");
+        sb.append(shiftColor(color.substring(1, 3)));
+        sb.append(shiftColor(color.substring(3, 5)));
+        sb.append(shiftColor(color.substring(5, 7)));
+        return sb.toString();
+    }
+
     /**
      * Shifts the supplied Color to achieve a "gray-out" effect.
      *
@@ -940,60 +1130,45 @@ public class ClassDocGraph {
     }
 
     private String getLineColor(final PackageDoc pkg,
-            final ClassDoc cls,
-            final ClassDoc node) {
+            final int clsId,
+            final int nodeId,
+            final DocDescriptor descriptor) {
 
         String color = "#000000";
-        if (cls != node && node.tags(JavaDocTag.LANDMARK.toString()).length <= 0
-                && node.tags(JavaDocTag.CATEGORY.toString()).length > 0
-                && name2CategoryMap.containsKey(node.tags(JavaDocTag.CATEGORY.toString())[0].text())) {
-            color = name2CategoryMap.get(node.tags(JavaDocTag.CATEGORY.toString())[0].text()).getLineColor();
+        final Category existingCategory = getCategory(descriptor);
+        if (clsId != nodeId && !descriptor.isLandmark() && existingCategory != null) {
+            color = existingCategory.getLineColor().getRgbValue();
         }
 
-        if (node.containingPackage() != pkg) {
+        if (index.getPackage(nodeId) != pkg) {
             //grey out the fill color
-            final StringBuffer sb = new StringBuffer("#");
-            sb.append(shiftColor(color.substring(1, 3)));
-            sb.append(shiftColor(color.substring(3, 5)));
-            sb.append(shiftColor(color.substring(5, 7)));
-            color = sb.toString();
+            color = greyOut(color);
         }
         return color;
     }
 
     private String getLineColor(final PackageDoc pkg, final Edge edge) {
 
-        if (edge.getTarget() instanceof ClassDoc) {
-            //we have a class
-            return getLineColor(pkg, (ClassDoc) edge.getSource(), (ClassDoc) edge.getTarget());
-
-        } else {
-            //not a class (a package or something)
-            String color = "#000000";
+        //not a class (a package or something)
+        String color = "#000000";
 
-            if (pkg != null
-                    && pkg.tags(JavaDocTag.CATEGORY.toString()).length > 0
-                    && name2CategoryMap.containsKey(pkg.tags(JavaDocTag.CATEGORY.toString())[0].text())) {
-                color = name2CategoryMap.get(pkg.tags(JavaDocTag.CATEGORY.toString())[0].text()).getLineColor();
-            }
-            return color;
+        final Category existingCategory = pkg == null ? null : getCategory(getDescriptor(pkg));
+        if (existingCategory != null) {
+            color = existingCategory.getLineColor().getRgbValue();
         }
+        return color;
     }
 
-    private static String getFontColor(final PackageDoc pkg, final ClassDoc doc) {
+    private String getFontColor(final PackageDoc pkg, final int nodeId) {
         String color = "black";
-        if (!(doc.containingPackage() == pkg)) {
+        if (!(index.getPackage(nodeId) == pkg)) {
             color = "gray30";
         }
         return color;
     }
 
     private static String getFontColor(final PackageDoc pkg, final Edge edge) {
-        if (edge.getTarget() instanceof ClassDoc) {
-            return getFontColor(pkg, (ClassDoc) edge.getTarget());
-        } else {
-            return "black";
-        }
+        return "black";
     }
 
     private static String getNodeId(final Doc node) {
@@ -1006,37 +1181,7 @@ public class ClassDocGraph {
         return name.replace('.', '_');
     }
 
-    private static String getNodeLabel(final PackageDoc pkg, final ClassDoc node) {
-        StringBuilder buf = new StringBuilder(256);
-        String stereotype = getStereotype(node);
-        if (stereotype != null) {
-            //TODO - we should have an option to use "<<" and ">>" for systems
-            // where the encoding is messed up
-            buf.append("&#171;");
-            buf.append(stereotype);
-            buf.append("&#187;\\n");
-        }
-
-        if (node.containingPackage() == pkg) {
-            //we are in the same package
-            buf.append(node.name());
-        } else {
-            //in a different package
-            if (node.containingPackage() == null) {
-                //if the class does not have a package
-                buf.append(node.name());
-            } else {
-                //it does, so append the package name
-                buf.append(node.name());
-                buf.append("\\n(");
-                buf.append(node.containingPackage().name());
-                buf.append(')');
-            }
-        }
-        return buf.toString();
-    }
-
-    private static String escape(final String text) {
+    static String escape(final String text) {
 
         // Escape some characters to prevent syntax errors.
         if (text != null) {
@@ -1046,35 +1191,19 @@ public class ClassDocGraph {
         return text;
     }
 
-    private static String getPath(final PackageDoc pkg, final ClassDoc node) {
-        if (!node.isIncluded()) {
-            return null;
-        }
-
-        String sourcePath = pkg.name().replace('.', '/');
-        String targetPath =
-                node.containingPackage().name().replace('.', '/') + '/' + node.name() + ".html";
-        String[] sourcePathElements = sourcePath.split("[\\/\\\\]+");
-        String[] targetPathElements = targetPath.split("[\\/\\\\]+");
-
-        int maxCommonLength = Math.min(sourcePathElements.length, targetPathElements.length);
-        int commonLength;
-        for (commonLength = 0; commonLength < maxCommonLength; commonLength++) {
-            if (!sourcePathElements[commonLength].equals(targetPathElements[commonLength])) {
-                break;
-            }
-        }
+    private String[] getPackagePath(final PackageDoc pkg) {
 
-        StringBuilder buf = new StringBuilder();
-        for (int i = 0; i < sourcePathElements.length - commonLength; i++) {
-            buf.append("/..");
+        // Classes without a containing package are documented like those of the unnamed package.
+        if (pkg == null) {
+            return NodeDescriptor.splitPackageName("");
         }
 
-        for (int i = commonLength; i < targetPathElements.length; i++) {
-            buf.append('/');
-            buf.append(targetPathElements[i]);
+        String[] toReturn = packagePaths.get(pkg);
+        if (toReturn == null) {
+            toReturn = NodeDescriptor.splitPackageName(pkg.name());
+            packagePaths.put(pkg, toReturn);
         }
-        return buf.substring(1);
+        return toReturn;
     }
 
     protected class CategoryOptions {
@@ -1104,22 +1233,4 @@ public class ClassDocGraph {
         }
 
     }
-
-    private static List<String> getTextsForTag(final JavaDocTag expectedTag, final Doc aDoc) {
-
-        final List<String> toReturn = new ArrayList<>();
-
-        if(expectedTag != null && aDoc != null) {
-
-            final Tag[] tags = aDoc.tags(expectedTag.toString());
-            if(tags != null && tags.length > 0) {
-                for(Tag current : tags) {
-                    toReturn.add(current.text());
-                }
-            }
-        }
-
-        // All Done.
-        return toReturn;
-    }
 }
@@ -0,0 +1,385 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Cache of the packages referenced by each class file scanned by the {@link ClassFileScanner}, persisted
+ * between two doclet runs, such that only new and changed class files are parsed again.</p>
+ * <p>Each class file is keyed by its path, and validated by its size, modification time and CRC-32 checksum.
+ * A class file whose size and modification time are unchanged is not read at all. A class file which was
+ * merely touched (or rebuilt to identical content) is read, but not parsed, as its checksum is unchanged.
+ * The checksum of a class file within a jar file is read from the jar's central directory.</p>
+ * <p>The cache file is an append-only log of records: new package names are written once and referred to by
+ * index thereafter, and a later record for a path replaces any earlier one. Writing the cache hence appends only
+ * the records of new or changed class files, until the log holds more stale records than live ones, whereupon
+ * it is rewritten compactly.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class ClassFileCache {
+
+    /**
+     * The name of the cache file, written to the root of the output directory.
+     */
+    public static final String FILENAME = "apiviz-classfiles.dat";
+
+    private static final int MAGIC = 0x41504346;
+    private static final int FORMAT_VERSION = 1;
+
+    // Record types
+    private static final int STRING_RECORD = 1;
+    private static final int ENTRY_RECORD = 2;
+
+    // Internal state
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final Map<String, Entry> addedEntries = new ConcurrentHashMap<String, Entry>();
+    private final Set<String> usedPaths = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<String> strings = new ArrayList<String>();
+    private final Map<String, Integer> stringIndices = new HashMap<String, Integer>();
+    private int numRecords;
+    private boolean damaged;
+    private int numHits;
+    private int numParsed;
+
+    /**
+     * Creates a new ClassFileCache, reading the records of the supplied cache file. A missing, damaged or
+     * incompatible cache file yields an empty ClassFileCache, which replaces the file when written.
+     *
+     * @param file The cache file.
+     */
+    public ClassFileCache(final File file) {
+
+        // Check sanity
+        if (file == null) {
+            throw new NullPointerException("Cannot handle null 'file' argument.");
+        }
+
+        // Assign internal state
+        this.file = file;
+        read();
+    }
+
+    /**
+     * Retrieves the cached entry of a class file, provided that its size and modification time are unchanged.
+     * May be invoked concurrently by scanning threads.
+     *
+     * @param path         The path of the class file.
+     * @param size         The current size of the class file.
+     * @param lastModified The current modification time of the class file.
+     * @return The cached Entry, or {@code null} if the class file must be read.
+     */
+    Entry get(final String path, final long size, final long lastModified) {
+
+        final Entry toReturn = entries.get(path);
+        if (toReturn == null || toReturn.size != size || toReturn.lastModified != lastModified) {
+            return null;
+        }
+
+        usedPaths.add(path);
+        synchronized (this) {
+            numHits++;
+        }
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the cached entry of a class file, provided that its size and content are unchanged. The entry
+     * is recorded anew using the supplied modification time. May be invoked concurrently by scanning threads.
+     *
+     * @param path         The path of the class file.
+     * @param size         The current size of the class file.
+     * @param lastModified The current modification time of the class file.
+     * @param checksum     The current CRC-32 checksum of the class file.
+     * @return The cached Entry, or {@code null} if the class file must be parsed.
+     */
+    Entry get(final String path, final long size, final long lastModified, final long checksum) {
+
+        final Entry cached = entries.get(path);
+        if (cached == null || cached.size != size || cached.checksum != checksum) {
+            return null;
+        }
+
+        synchronized (this) {
+            numHits++;
+        }
+        return record(path, new Entry(size, lastModified, checksum, cached.className, cached.referencedPackages));
+    }
+
+    /**
+     * Records the entry of a newly parsed class file. May be invoked concurrently by scanning threads.
+     *
+     * @param path  The path of the class file.
+     * @param entry The Entry of the class file.
+     * @return The supplied Entry.
+     */
+    Entry put(final String path, final Entry entry) {
+        synchronized (this) {
+            numParsed++;
+        }
+        return record(path, entry);
+    }
+
+    /**
+     * Calculates the CRC-32 checksum of the remaining content of the supplied buffer, without changing its
+     * position.
+     *
+     * @param content A buffer holding a class file.
+     * @return The CRC-32 checksum of the class file.
+     */
+    static long checksum(final ByteBuffer content) {
+        final CRC32 toReturn = new CRC32();
+        toReturn.update(content.duplicate());
+        return toReturn.getValue();
+    }
+
+    /**
+     * Writes the new and changed entries to the cache file. Entries of class files which were not found by the
+     * current run are retained, unless the cache file is compacted.
+     *
+     * @throws IOException if the cache file could not be written.
+     */
+    public synchronized void write() throws IOException {
+
+        // Compact the log if it is damaged, or mostly holds stale records.
+        if (damaged || !file.isFile() || numRecords + addedEntries.size() > 2 * Math.max(usedPaths.size(), 64)) {
+            rewrite();
+        } else if (!addedEntries.isEmpty()) {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file, true)))) {
+                writeEntries(out, new TreeMap<String, Entry>(addedEntries));
+            }
+        }
+        addedEntries.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized String toString() {
+        return "Class file cache: " + numHits + " unchanged, " + numParsed + " parsed class file(s).";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private Entry record(final String path, final Entry entry) {
+        entries.put(path, entry);
+        addedEntries.put(path, entry);
+        usedPaths.add(path);
+        return entry;
+    }
+
+    private void rewrite() throws IOException {
+
+        // Only the entries of class files found by the current run are retained.
+        final SortedMap<String, Entry> liveEntries = new TreeMap<String, Entry>();
+        for (String current : usedPaths) {
+            liveEntries.put(current, entries.get(current));
+        }
+
+        strings.clear();
+        stringIndices.clear();
+        numRecords = 0;
+
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeEntries(out, liveEntries);
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        damaged = false;
+    }
+
+    private void writeEntries(final DataOutputStream out, final SortedMap<String, Entry> toWrite)
+            throws IOException {
+
+        for (Map.Entry<String, Entry> current : toWrite.entrySet()) {
+            final Entry entry = current.getValue();
+            final int[] packageIndices = new int[entry.referencedPackages.size()];
+            int i = 0;
+            for (String packageName : entry.referencedPackages) {
+                packageIndices[i++] = getStringIndex(out, packageName);
+            }
+
+            out.writeByte(ENTRY_RECORD);
+            out.writeUTF(current.getKey());
+            out.writeLong(entry.size);
+            out.writeLong(entry.lastModified);
+            out.writeInt((int) entry.checksum);
+            out.writeUTF(entry.className);
+            writeVarInt(out, packageIndices.length);
+            for (int index : packageIndices) {
+                writeVarInt(out, index);
+            }
+            numRecords++;
+        }
+    }
+
+    private int getStringIndex(final DataOutputStream out, final String value) throws IOException {
+
+        Integer toReturn = stringIndices.get(value);
+        if (toReturn == null) {
+            toReturn = strings.size();
+            strings.add(value);
+            stringIndices.put(value, toReturn);
+
+            out.writeByte(STRING_RECORD);
+            out.writeUTF(value);
+        }
+        return toReturn;
+    }
+
+    private void read() {
+
+        if (!file.isFile()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                damaged = true;
+                return;
+            }
+
+            for (int type = in.read(); type >= 0; type = in.read()) {
+                if (type == STRING_RECORD) {
+                    final String value = in.readUTF();
+                    stringIndices.put(value, strings.size());
+                    strings.add(value);
+                } else if (type == ENTRY_RECORD) {
+                    final String path = in.readUTF();
+                    final long size = in.readLong();
+                    final long lastModified = in.readLong();
+                    final long checksum = in.readInt() & 0xFFFFFFFFL;
+                    final String className = in.readUTF();
+                    final Set<String> referencedPackages = new TreeSet<String>();
+                    for (int i = readVarInt(in); i > 0; i--) {
+                        referencedPackages.add(strings.get(readVarInt(in)));
+                    }
+                    entries.put(path, new Entry(size, lastModified, checksum, className, referencedPackages));
+                    numRecords++;
+                } else {
+                    throw new IOException("Unknown record type " + type);
+                }
+            }
+        } catch (EOFException | IndexOutOfBoundsException e) {
+
+            // A truncated tail, such as one left by an interrupted run; keep the complete records.
+            damaged = true;
+        } catch (IOException e) {
+
+            // Damaged cache; start over.
+            entries.clear();
+            damaged = true;
+        }
+    }
+
+    private static void writeVarInt(final DataOutputStream out, final int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readVarInt(final DataInputStream in) throws IOException {
+        int toReturn = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            toReturn |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return toReturn;
+            }
+        }
+        throw new IOException("Malformed variable-length integer.");
+    }
+
+    /**
+     * The cached result of scanning a single class file.
+     */
+    static final class Entry {
+
+        final long size;
+        final long lastModified;
+        final long checksum;
+        final String className;
+        final Set<String> referencedPackages;
+
+        /**
+         * Creates a new Entry.
+         *
+         * @param size               The size of the class file.
+         * @param lastModified       The modification time of the class file.
+         * @param checksum           The CRC-32 checksum of the class file.
+         * @param className          The internal name of the class, such as {@code org/example/Outer$Inner}.
+         * @param referencedPackages The names of all other packages referred to by the class.
+         */
+        Entry(final long size,
+              final long lastModified,
+              final long checksum,
+              final String className,
+              final Set<String> referencedPackages) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+            this.className = className;
+            this.referencedPackages = referencedPackages;
+        }
+    }
+}
@@ -0,0 +1,640 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * <p>Finds the {@link PackageDependencies} between the analyzed packages within the compiled classes found in
+ * class directories and jar files.</p>
+ * <p>The dependencies of a class are read from the constant pool of its class file alone: the classes it refers
+ * to, and the descriptors and generic signatures of the fields and methods it declares or uses. The remainder of
+ * the class file is never parsed. Class files are read through memory-mapped buffers, such that only the pages
+ * holding the constant pool are read, and are scanned in parallel by the common fork/join pool. Given a
+ * {@link ClassFileCache}, only class files which are new or changed since the previous run are parsed.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class ClassFileScanner {
+
+    /**
+     * The maximum number of class files scanned by a single fork/join task.
+     */
+    static final int MAX_CLASS_FILES_PER_TASK = 32;
+
+    /**
+     * The minimum size of a class file read through a memory-mapped buffer. Smaller class files occupy a page
+     * or two, and are cheaper to read than to map.
+     */
+    static final int MIN_MAPPED_SIZE = 64 * 1024;
+
+    private static final String CLASS_SUFFIX = ".class";
+    private static final int CLASS_FILE_MAGIC = 0xCAFEBABE;
+
+    // Constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_FLOAT = 4;
+    private static final int CONSTANT_LONG = 5;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_STRING = 8;
+    private static final int CONSTANT_FIELDREF = 9;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_INTERFACE_METHODREF = 11;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_HANDLE = 15;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+    private static final int CONSTANT_DYNAMIC = 17;
+    private static final int CONSTANT_INVOKE_DYNAMIC = 18;
+    private static final int CONSTANT_MODULE = 19;
+    private static final int CONSTANT_PACKAGE = 20;
+
+    // Internal state
+    private final Set<String> packages;
+    private final ClassFileCache cache;
+
+    /**
+     * Creates a new ClassFileScanner, which parses every class file.
+     *
+     * @param packages The names of the analyzed packages. Classes outside of these packages are not scanned,
+     *                 and dependencies upon classes outside of these packages are not recorded.
+     */
+    ClassFileScanner(final Set<String> packages) {
+        this(packages, null);
+    }
+
+    /**
+     * Creates a new ClassFileScanner.
+     *
+     * @param packages The names of the analyzed packages. Classes outside of these packages are not scanned,
+     *                 and dependencies upon classes outside of these packages are not recorded.
+     * @param cache    The ClassFileCache holding the referenced packages of previously scanned class files,
+     *                 or {@code null} to parse every class file.
+     */
+    ClassFileScanner(final Set<String> packages, final ClassFileCache cache) {
+
+        // Check sanity
+        if (packages == null) {
+            throw new NullPointerException("Cannot handle null 'packages' argument.");
+        }
+
+        // Assign internal state
+        this.packages = new HashSet<String>(packages);
+        this.cache = cache;
+    }
+
+    /**
+     * Scans all class files of the analyzed packages within the supplied class directories and jar files.
+     *
+     * @param classPath The class directories and jar files to scan. Other files are ignored.
+     * @return The dependencies between the analyzed packages.
+     * @throws IOException if a class directory or jar file could not be read, or if it held a malformed class file.
+     */
+    PackageDependencies scan(final List<File> classPath) throws IOException {
+
+        final List<ClassFileSource> sources = new ArrayList<ClassFileSource>();
+        final List<ZipFile> jarFiles = new ArrayList<ZipFile>();
+        try {
+
+            // #1) Find the class files of the analyzed packages within all class directories and jar files.
+            for (File current : classPath) {
+                if (current.isDirectory()) {
+                    addClassDirectory(current.getAbsoluteFile().toPath(), sources);
+                } else if (current.isFile()) {
+                    final ZipFile jarFile = new ZipFile(current);
+                    jarFiles.add(jarFile);
+                    addJarFile(jarFile, sources);
+                }
+            }
+
+            // #2) Scan the constant pools of all class files in parallel.
+            final ScanResult result;
+            try {
+                result = ForkJoinPool.commonPool().invoke(new ScanTask(this, sources, 0, sources.size()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // All Done.
+            return new PackageDependencies(result.classNames, result.efferents);
+
+        } finally {
+            for (ZipFile current : jarFiles) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    // Ignore; the jar file was only read.
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the internal names (such as {@code org/example/Outer$Inner}) of all classes referred to by the supplied
+     * field descriptor, method descriptor or generic signature to the given collection.
+     *
+     * @param signature A descriptor or generic signature, such as {@code (Ljava/util/List<TT;>;)V}.
+     * @param toAdd     The collection to which the names of all referenced classes are added.
+     */
+    static void addReferencedClasses(final String signature, final Set<String> toAdd) {
+
+        final int length = signature.length();
+        int i = 0;
+        while (i < length) {
+
+            final char current = signature.charAt(i);
+            if (current != '.' && !Character.isJavaIdentifierStart(current)) {
+                i++;
+                continue;
+            }
+
+            // Find the end of the current class name, type variable or formal type parameter.
+            int end = i;
+            while (end < length && ";<>:".indexOf(signature.charAt(end)) < 0) {
+                end++;
+            }
+
+            if (end < length && signature.charAt(end) == ':') {
+
+                // A formal type parameter, such as the 'T' within '<T:Ljava/lang/Object;>'.
+                i = end + 1;
+            } else if (current == 'L') {
+                toAdd.add(signature.substring(i + 1, end));
+                i = end + 1;
+            } else if (current == 'T' || current == '.') {
+
+                // A type variable, or the simple name of an inner class such as '.Inner' in 'LOuter<TT;>.Inner;'.
+                i = end + 1;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void addClassDirectory(final Path classDirectory, final List<ClassFileSource> sources)
+            throws IOException {
+
+        Files.walkFileTree(classDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attributes) {
+
+                final String path = classDirectory.relativize(file).toString().replace(File.separatorChar, '/');
+                if (attributes.isRegularFile() && isAnalyzed(path)) {
+                    sources.add(new MappedClassFile(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void addJarFile(final ZipFile jarFile, final List<ClassFileSource> sources) {
+
+        final Enumeration<? extends ZipEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+            final ZipEntry current = entries.nextElement();
+            if (!current.isDirectory() && isAnalyzed(current.getName())) {
+                sources.add(new JarClassFile(jarFile, current));
+            }
+        }
+    }
+
+    private boolean isAnalyzed(final String path) {
+
+        if (!path.endsWith(CLASS_SUFFIX)) {
+            return false;
+        }
+
+        final int lastSlash = path.lastIndexOf('/');
+        return packages.contains(lastSlash < 0 ? "" : path.substring(0, lastSlash).replace('/', '.'));
+    }
+
+    private void scanClassFile(final ClassFileSource source, final ScanResult result) throws IOException {
+        try {
+            ClassFileCache.Entry entry = cache == null
+                    ? null
+                    : cache.get(source.toString(), source.size, source.lastModified);
+            if (entry == null) {
+                entry = readClassFile(source);
+            }
+            addClass(entry, result);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Malformed class file " + source, e);
+        } catch (IOException e) {
+            throw new IOException("Could not read class file " + source + ": " + e.getMessage(), e);
+        }
+    }
+
+    private ClassFileCache.Entry readClassFile(final ClassFileSource source) throws IOException {
+
+        if (cache == null) {
+            return scanConstantPool(source.read(), source, 0);
+        }
+
+        // A class file whose content is unchanged need not be parsed, even if its modification time changed.
+        final String path = source.toString();
+        long checksum = source.getChecksum();
+        ByteBuffer content = null;
+        if (checksum < 0) {
+            content = source.read();
+            checksum = ClassFileCache.checksum(content);
+        }
+
+        final ClassFileCache.Entry cached = cache.get(path, source.size, source.lastModified, checksum);
+        if (cached != null) {
+            return cached;
+        }
+        return cache.put(path, scanConstantPool(content == null ? source.read() : content, source, checksum));
+    }
+
+    private void addClass(final ClassFileCache.Entry entry, final ScanResult result) {
+
+        final String packageName = getPackageName(entry.className);
+        if (!packages.contains(packageName)) {
+            return;
+        }
+
+        // Record the class and the analyzed packages it depends upon.
+        result.addClass(packageName, entry.className.replace('/', '.'));
+        for (String current : entry.referencedPackages) {
+            if (packages.contains(current)) {
+                result.addEfferent(packageName, current);
+            }
+        }
+    }
+
+    private ClassFileCache.Entry scanConstantPool(final ByteBuffer in,
+                                                  final ClassFileSource source,
+                                                  final long checksum) throws IOException {
+
+        if (in.getInt() != CLASS_FILE_MAGIC) {
+            throw new IOException("Not a class file.");
+        }
+        in.getInt(); // minor_version, major_version
+
+        // #1) Record the position of all UTF8 constants, and the UTF8 constants referred to by Class and String
+        //     constants. Only the tag and the references are read; the UTF8 constants are decoded when needed.
+        final int poolSize = in.getShort() & 0xFFFF;
+        final int[] tags = new int[poolSize];
+        final int[] positions = new int[poolSize];
+        final int[] references = new int[poolSize];
+        for (int i = 1; i < poolSize; i++) {
+
+            tags[i] = in.get() & 0xFF;
+            switch (tags[i]) {
+                case CONSTANT_UTF8:
+                    positions[i] = in.position();
+                    in.position(in.position() + 2 + (in.getShort() & 0xFFFF));
+                    break;
+
+                case CONSTANT_CLASS:
+                case CONSTANT_STRING:
+                    references[i] = in.getShort() & 0xFFFF;
+                    break;
+
+                case CONSTANT_METHOD_TYPE:
+                case CONSTANT_MODULE:
+                case CONSTANT_PACKAGE:
+                    in.position(in.position() + 2);
+                    break;
+
+                case CONSTANT_METHOD_HANDLE:
+                    in.position(in.position() + 3);
+                    break;
+
+                case CONSTANT_INTEGER:
+                case CONSTANT_FLOAT:
+                case CONSTANT_FIELDREF:
+                case CONSTANT_METHODREF:
+                case CONSTANT_INTERFACE_METHODREF:
+                case CONSTANT_NAME_AND_TYPE:
+                case CONSTANT_DYNAMIC:
+                case CONSTANT_INVOKE_DYNAMIC:
+                    in.position(in.position() + 4);
+                    break;
+
+                case CONSTANT_LONG:
+                case CONSTANT_DOUBLE:
+
+                    // 8-byte constants occupy two entries of the constant pool.
+                    in.position(in.position() + 8);
+                    i++;
+                    break;
+
+                default:
+                    throw new IOException("Unknown constant pool tag " + tags[i] + " at entry " + i);
+            }
+        }
+
+        // #2) Identify the class, which is the only part of the class file read after the constant pool.
+        in.getShort(); // access_flags
+        final int thisClass = in.getShort() & 0xFFFF;
+        if (thisClass >= poolSize || tags[thisClass] != CONSTANT_CLASS) {
+            throw new IOException("Invalid this_class entry " + thisClass);
+        }
+        final String className = readUtf8(in, positions[references[thisClass]]);
+        final String packageName = getPackageName(className);
+
+        // #3) Find all classes referred to by Class constants, descriptors and generic signatures.
+        //     The latter are the only UTF8 constants holding ';', apart from String constants.
+        final boolean[] strings = new boolean[poolSize];
+        for (int i = 1; i < poolSize; i++) {
+            if (tags[i] == CONSTANT_STRING) {
+                strings[references[i]] = true;
+            }
+        }
+
+        final Set<String> referencedClasses = new HashSet<String>();
+        for (int i = 1; i < poolSize; i++) {
+            if (tags[i] == CONSTANT_CLASS) {
+                final String name = readUtf8(in, positions[references[i]]);
+                if (name.indexOf(';') < 0) {
+                    referencedClasses.add(name);
+                }
+            } else if (tags[i] == CONSTANT_UTF8 && !strings[i] && containsSemicolon(in, positions[i])) {
+                addReferencedClasses(readUtf8(in, positions[i]), referencedClasses);
+            }
+        }
+
+        // #4) Find the other packages referred to, which are all packages the class may depend upon.
+        final Set<String> referencedPackages = new TreeSet<String>();
+        for (String current : referencedClasses) {
+            final String referencedPackage = getPackageName(current);
+            if (!referencedPackage.equals(packageName)) {
+                referencedPackages.add(referencedPackage);
+            }
+        }
+        return new ClassFileCache.Entry(source.size, source.lastModified, checksum, className, referencedPackages);
+    }
+
+    private static String getPackageName(final String internalName) {
+        final int lastSlash = internalName.lastIndexOf('/');
+        return lastSlash < 0 ? "" : internalName.substring(0, lastSlash).replace('/', '.');
+    }
+
+    private static boolean containsSemicolon(final ByteBuffer in, final int position) {
+
+        // The bytes of multi-byte characters in modified UTF-8 are never ASCII.
+        final int end = position + 2 + (in.getShort(position) & 0xFFFF);
+        for (int i = position + 2; i < end; i++) {
+            if (in.get(i) == ';') {
+                return true;
+            }
+        }
+
+        // Nopes.
+        return false;
+    }
+
+    private static String readUtf8(final ByteBuffer in, final int position) {
+
+        // Decode the modified UTF-8 used within class files.
+        final int end = position + 2 + (in.getShort(position) & 0xFFFF);
+        final StringBuilder toReturn = new StringBuilder(end - position);
+        for (int i = position + 2; i < end; i++) {
+            final int b = in.get(i) & 0xFF;
+            if (b < 0x80) {
+                toReturn.append((char) b);
+            } else if ((b & 0xE0) == 0xC0) {
+                toReturn.append((char) (((b & 0x1F) << 6) | (in.get(++i) & 0x3F)));
+            } else {
+                final int b2 = in.get(++i) & 0x3F;
+                toReturn.append((char) (((b & 0x0F) << 12) | (b2 << 6) | (in.get(++i) & 0x3F)));
+            }
+        }
+        return toReturn.toString();
+    }
+
+    /**
+     * Fork/join task scanning a range of class files, splitting it in halves until small enough.
+     */
+    private static final class ScanTask extends RecursiveTask<ScanResult> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ClassFileScanner scanner;
+        private final List<ClassFileSource> sources;
+        private final int from;
+        private final int to;
+
+        ScanTask(final ClassFileScanner scanner, final List<ClassFileSource> sources, final int from, final int to) {
+            this.scanner = scanner;
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected ScanResult compute() {
+
+            if (to - from > MAX_CLASS_FILES_PER_TASK) {
+                final int middle = (from + to) >>> 1;
+                final ScanTask left = new ScanTask(scanner, sources, from, middle);
+                left.fork();
+                final ScanResult toReturn = new ScanTask(scanner, sources, middle, to).compute();
+                toReturn.merge(left.join());
+                return toReturn;
+            }
+
+            final ScanResult toReturn = new ScanResult();
+            for (int i = from; i < to; i++) {
+                try {
+                    scanner.scanClassFile(sources.get(i), toReturn);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return toReturn;
+        }
+    }
+
+    /**
+     * The classes and dependencies found within a range of class files.
+     */
+    private static final class ScanResult {
+
+        private final Map<String, Set<String>> classNames = new HashMap<String, Set<String>>();
+        private final Map<String, Set<String>> efferents = new HashMap<String, Set<String>>();
+
+        void addClass(final String packageName, final String binaryName) {
+            add(classNames, packageName, binaryName);
+        }
+
+        void addEfferent(final String packageName, final String efferent) {
+            add(efferents, packageName, efferent);
+        }
+
+        void merge(final ScanResult that) {
+            for (Map.Entry<String, Set<String>> current : that.classNames.entrySet()) {
+                for (String name : current.getValue()) {
+                    addClass(current.getKey(), name);
+                }
+            }
+            for (Map.Entry<String, Set<String>> current : that.efferents.entrySet()) {
+                for (String name : current.getValue()) {
+                    addEfferent(current.getKey(), name);
+                }
+            }
+        }
+
+        private static void add(final Map<String, Set<String>> map, final String key, final String value) {
+            Set<String> values = map.get(key);
+            if (values == null) {
+                values = new HashSet<String>();
+                map.put(key, values);
+            }
+            values.add(value);
+        }
+    }
+
+    /**
+     * A class file within a class directory or a jar file.
+     */
+    private abstract static class ClassFileSource {
+
+        final long size;
+        final long lastModified;
+
+        ClassFileSource(final long size, final long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return The CRC-32 checksum of the class file, if known without reading it. Otherwise -1.
+         */
+        long getChecksum() {
+            return -1;
+        }
+
+        /**
+         * @return A buffer holding the class file, positioned at its start.
+         * @throws IOException if the class file could not be read.
+         */
+        abstract ByteBuffer read() throws IOException;
+    }
+
+    /**
+     * A class file within a class directory, read through a memory-mapped buffer unless it is small.
+     */
+    private static final class MappedClassFile extends ClassFileSource {
+
+        private final Path path;
+
+        MappedClassFile(final Path path, final long size, final long lastModified) {
+            super(size, lastModified);
+            this.path = path;
+        }
+
+        @Override
+        ByteBuffer read() throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (size >= MIN_MAPPED_SIZE) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+
+                final ByteBuffer toReturn = ByteBuffer.allocate((int) channel.size());
+                while (toReturn.hasRemaining()) {
+                    if (channel.read(toReturn) < 0) {
+                        throw new EOFException("Truncated class file " + path);
+                    }
+                }
+                toReturn.flip();
+                return toReturn;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return path.toString();
+        }
+    }
+
+    /**
+     * A compressed class file within a jar file, which is inflated into a heap buffer.
+     */
+    private static final class JarClassFile extends ClassFileSource {
+
+        private final ZipFile jarFile;
+        private final ZipEntry entry;
+
+        JarClassFile(final ZipFile jarFile, final ZipEntry entry) {
+            super(entry.getSize(), entry.getTime());
+            this.jarFile = jarFile;
+            this.entry = entry;
+        }
+
+        @Override
+        long getChecksum() {
+            return entry.getCrc();
+        }
+
+        @Override
+        ByteBuffer read() throws IOException {
+            final ByteArrayOutputStream toReturn = new ByteArrayOutputStream(
+                    entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+            final byte[] buffer = new byte[8192];
+            try (InputStream in = jarFile.getInputStream(entry)) {
+                for (int numRead = in.read(buffer); numRead >= 0; numRead = in.read(buffer)) {
+                    toReturn.write(buffer, 0, numRead);
+                }
+            }
+            return ByteBuffer.wrap(toReturn.toByteArray());
+        }
+
+        @Override
+        public String toString() {
+            return jarFile.getName() + "!/" + entry.getName();
+        }
+    }
+}
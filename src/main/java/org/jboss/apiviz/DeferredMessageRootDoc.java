@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.SourcePosition;
+import se.jguru.javadoc.apiviz.AbstractRootDocWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>RootDoc wrapper which queues all messages printed through it until they are {@link #release() released}.</p>
+ * <p>Javadoc prints its messages using an unsynchronized Messager, which the standard doclet uses while it
+ * writes the HTML pages. Hence, the diagrams generated concurrently report their messages through a
+ * DeferredMessageRootDoc, which prints them in their original order once the standard doclet is done.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class DeferredMessageRootDoc extends AbstractRootDocWrapper {
+
+    // Internal state
+    private final List<Runnable> pendingMessages = new ArrayList<Runnable>();
+    private boolean released;
+
+    /**
+     * Creates a new DeferredMessageRootDoc around the supplied RootDoc, queuing all messages until released.
+     *
+     * @param wrappedRootDoc The non-null RootDoc which eventually prints the messages.
+     */
+    DeferredMessageRootDoc(final RootDoc wrappedRootDoc) {
+        super(wrappedRootDoc);
+    }
+
+    /**
+     * Prints all queued messages on the calling thread. Messages printed after this DeferredMessageRootDoc
+     * is released are printed immediately.
+     */
+    synchronized void release() {
+
+        released = true;
+        for (Runnable current : pendingMessages) {
+            current.run();
+        }
+        pendingMessages.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printError(final String msg) {
+        print(new Runnable() {
+            public void run() {
+                wrappedRootDoc.printError(msg);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printError(final SourcePosition pos, final String msg) {
+        print(new Runnable() {
+            public void run() {
+                wrappedRootDoc.printError(pos, msg);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printWarning(final String msg) {
+        print(new Runnable() {
+            public void run() {
+                wrappedRootDoc.printWarning(msg);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printWarning(final SourcePosition pos, final String msg) {
+        print(new Runnable() {
+            public void run() {
+                wrappedRootDoc.printWarning(pos, msg);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printNotice(final String msg) {
+        print(new Runnable() {
+            public void run() {
+                wrappedRootDoc.printNotice(msg);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void printNotice(final SourcePosition pos, final String msg) {
+        print(new Runnable() {
+            public void run() {
+                wrappedRootDoc.printNotice(pos, msg);
+            }
+        });
+    }
+
+    //
+    // Private helpers
+    //
+
+    private synchronized void print(final Runnable message) {
+        if (released) {
+            message.run();
+        } else {
+            pendingMessages.add(message);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.RootDoc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>Batch of diagrams rendered by a single Graphviz process, as most diagrams are so small that launching
+ * the process would otherwise cost more than laying them out.</p>
+ * <p>Diagrams found within the {@link RenderCache} are restored rather than rendered. Should Graphviz fail
+ * to render the batch - for instance due to a single broken diagram - its diagrams are rendered one by one,
+ * so that only the broken diagram fails. Once its images are written, the {@link Completion} of each diagram
+ * is invoked with its markup. For reproducible output, the metadata Graphviz embeds within the images and
+ * markup of the rendered diagrams is stripped before they are cached or completed.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class DiagramBatch implements Callable<List<Throwable>> {
+
+    /**
+     * The default maximum number of diagrams within a DiagramBatch.
+     */
+    public static final int DEFAULT_SIZE = 16;
+
+    /**
+     * Task invoked once a diagram within a DiagramBatch is rendered.
+     */
+    public interface Completion {
+
+        /**
+         * Completes a diagram whose images were written.
+         *
+         * @param markup The markup of the diagram, i.e. its HTML image map or SVG image.
+         * @throws IOException if the diagram could not be completed.
+         */
+        void complete(String markup) throws IOException;
+    }
+
+    // Internal state
+    private final RootDoc root;
+    private final DiagramFormat format;
+    private final File outputDirectory;
+    private final RenderCache renderCache;
+    private final boolean reproducible;
+    private final List<String> descriptions = new ArrayList<>();
+    private final List<DiagramSource> diagrams = new ArrayList<>();
+    private final List<String> filenames = new ArrayList<>();
+    private final List<Completion> completions = new ArrayList<>();
+
+    /**
+     * Creates a new, empty DiagramBatch.
+     *
+     * @param root            The active {@link RootDoc} instance.
+     * @param format          The format in which the diagrams are rendered.
+     * @param outputDirectory The directory where the image files are written.
+     * @param renderCache     The RenderCache holding previously rendered diagrams, or {@code null}
+     *                        if diagrams should not be cached.
+     * @param reproducible    {@code true} to strip the metadata embedded by Graphviz from the rendered diagrams.
+     */
+    public DiagramBatch(final RootDoc root,
+            final DiagramFormat format,
+            final File outputDirectory,
+            final RenderCache renderCache,
+            final boolean reproducible) {
+
+        // Check sanity
+        if (root == null) {
+            throw new NullPointerException("Cannot handle null 'root' argument.");
+        }
+        if (format == null) {
+            throw new NullPointerException("Cannot handle null 'format' argument.");
+        }
+        if (outputDirectory == null) {
+            throw new NullPointerException("Cannot handle null 'outputDirectory' argument.");
+        }
+
+        // Assign internal state
+        this.root = root;
+        this.format = format;
+        this.outputDirectory = outputDirectory;
+        this.renderCache = renderCache;
+        this.reproducible = reproducible;
+    }
+
+    /**
+     * Adds a diagram to this DiagramBatch.
+     *
+     * @param description A description of the diagram, used when reporting a rendering failure.
+     * @param diagram     The diagram to render.
+     * @param filename    The filename of the image files of the diagram excluding their suffix, relative to
+     *                    the output directory.
+     * @param completion  The task invoked once the image files of the diagram are written.
+     */
+    public void add(final String description,
+            final DiagramSource diagram,
+            final String filename,
+            final Completion completion) {
+
+        descriptions.add(description);
+        diagrams.add(diagram);
+        filenames.add(filename);
+        completions.add(completion);
+    }
+
+    /**
+     * @return The number of diagrams within this DiagramBatch.
+     */
+    public int size() {
+        return diagrams.size();
+    }
+
+    /**
+     * @return The descriptions of the diagrams within this DiagramBatch, in the order they were added.
+     */
+    public List<String> getDescriptions() {
+        return Collections.unmodifiableList(descriptions);
+    }
+
+    /**
+     * Renders all diagrams within this DiagramBatch, and invokes their completion tasks.
+     *
+     * @return The failure of each diagram in the order they were added, or {@code null} for each diagram
+     * which was successfully rendered and completed.
+     */
+    public List<Throwable> call() {
+
+        final Throwable[] failures = new Throwable[size()];
+        final String[] keys = new String[size()];
+        final String[] markup = new String[size()];
+        final List<Integer> toRender = new ArrayList<>();
+
+        // #1) Restore the diagrams which were rendered before. The directories of the image files are created
+        //     here, as the standard doclet may not have written the HTML pages next to them yet.
+        for (int i = 0; i < size(); i++) {
+            try {
+                Files.createDirectories(new File(outputDirectory, filenames.get(i)).getParentFile().toPath());
+                if (renderCache == null) {
+                    toRender.add(i);
+                    continue;
+                }
+
+                keys[i] = renderCache.getKey(diagrams.get(i));
+                markup[i] = renderCache.restore(keys[i], getImageFiles(i));
+                if (markup[i] == null) {
+                    toRender.add(i);
+                }
+            } catch (Exception e) {
+                failures[i] = e;
+            }
+        }
+
+        // #2) Render the remaining diagrams, and cache the results.
+        render(toRender, markup, failures);
+        for (int i : toRender) {
+            if (failures[i] == null && (reproducible || renderCache != null)) {
+                try {
+                    if (reproducible) {
+                        markup[i] = ReproducibleOutput.strip(getImageFiles(i), markup[i]);
+                    }
+                    if (renderCache != null) {
+                        renderCache.store(keys[i], getImageFiles(i), markup[i]);
+                    }
+                } catch (Exception e) {
+                    failures[i] = e;
+                }
+            }
+        }
+
+        // #3) Complete all diagrams.
+        for (int i = 0; i < size(); i++) {
+            if (failures[i] == null) {
+                try {
+                    completions.get(i).complete(markup[i]);
+                } catch (Exception e) {
+                    failures[i] = e;
+                }
+            }
+        }
+
+        // All Done.
+        return Arrays.asList(failures);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void render(final List<Integer> toRender, final String[] markup, final Throwable[] failures) {
+
+        if (toRender.isEmpty()) {
+            return;
+        }
+
+        final List<DiagramSource> batchDiagrams = new ArrayList<>();
+        final List<String> batchFilenames = new ArrayList<>();
+        for (int i : toRender) {
+            batchDiagrams.add(diagrams.get(i));
+            batchFilenames.add(filenames.get(i));
+        }
+
+        try {
+            final List<String> batchMarkup = Graphviz.writeImagesAndMaps(root, format, batchDiagrams,
+                    outputDirectory, batchFilenames);
+            for (int i = 0; i < toRender.size(); i++) {
+                markup[toRender.get(i)] = batchMarkup.get(i);
+            }
+            return;
+        } catch (Exception e) {
+            if (toRender.size() == 1) {
+                failures[toRender.get(0)] = e;
+                return;
+            }
+        }
+
+        // Render the diagrams one by one, to isolate the failing ones.
+        for (int i : toRender) {
+            try {
+                markup[i] = Graphviz.writeImageAndMap(root, format, diagrams.get(i), outputDirectory,
+                        filenames.get(i));
+            } catch (Exception e) {
+                failures[i] = e;
+            }
+        }
+    }
+
+    private List<File> getImageFiles(final int diagram) {
+
+        final List<File> toReturn = new ArrayList<>();
+        for (String current : format.getImageSuffixes()) {
+            toReturn.add(new File(outputDirectory, filenames.get(diagram) + current));
+        }
+        return toReturn;
+    }
+}
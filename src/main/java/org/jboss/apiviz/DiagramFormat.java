@@ -0,0 +1,185 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Enumeration of the formats in which APIviz renders diagrams, as selected by the
+ * {@code -diagramformat} option.</p>
+ * <p>Each diagram is rendered into zero or more image files written next to its HTML page, along with the
+ * markup embedded into that page: an HTML image map referring to the PNG image, or the SVG image itself
+ * whose nodes link to the documented classes and packages natively.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public enum DiagramFormat {
+
+    /**
+     * Renders a PNG image, embedded into the HTML page along with an HTML image map.
+     */
+    PNG("png", "cmapx", "</map>", ".png"),
+
+    /**
+     * Renders an SVG image, inlined into the HTML page. No image files are written.
+     */
+    SVG("svg", "svg", "</svg>"),
+
+    /**
+     * Renders a PNG image embedded into the HTML page along with an HTML image map, as {@link #PNG},
+     * and writes a standalone SVG image next to it.
+     */
+    BOTH("both", "cmapx", "</map>", ".png", ".svg");
+
+    /**
+     * The suffix of PNG image files.
+     */
+    public static final String PNG_SUFFIX = ".png";
+
+    /**
+     * The suffix of SVG image files.
+     */
+    public static final String SVG_SUFFIX = ".svg";
+
+    // Internal state
+    private final String option;
+    private final String markupFormat;
+    private final String markupEndTag;
+    private final List<String> imageSuffixes;
+
+    DiagramFormat(final String option,
+            final String markupFormat,
+            final String markupEndTag,
+            final String... imageSuffixes) {
+
+        this.option = option;
+        this.markupFormat = markupFormat;
+        this.markupEndTag = markupEndTag;
+        this.imageSuffixes = Collections.unmodifiableList(Arrays.asList(imageSuffixes));
+    }
+
+    /**
+     * Retrieves the argument of the {@code -diagramformat} option selecting this DiagramFormat.
+     *
+     * @return the argument of the {@code -diagramformat} option selecting this DiagramFormat.
+     */
+    public String getOption() {
+        return option;
+    }
+
+    /**
+     * Retrieves a description of the Graphviz output formats rendered, used to tell cached diagrams
+     * of different DiagramFormats apart.
+     *
+     * @return a description of the Graphviz output formats rendered, such as {@code cmapx,png}.
+     */
+    public String getOutputFormats() {
+
+        final StringBuilder toReturn = new StringBuilder(markupFormat);
+        for (String current : imageSuffixes) {
+            toReturn.append(',').append(getGraphvizFormat(current));
+        }
+        return toReturn.toString();
+    }
+
+    /**
+     * Retrieves the Graphviz output format of the markup of each diagram.
+     *
+     * @return the Graphviz output format of the markup of each diagram, i.e. {@code cmapx} or {@code svg}.
+     */
+    public String getMarkupFormat() {
+        return markupFormat;
+    }
+
+    /**
+     * Retrieves the tag ending the markup of each diagram, which Graphviz writes to its standard output.
+     *
+     * @return the tag ending the markup of each diagram.
+     */
+    public String getMarkupEndTag() {
+        return markupEndTag;
+    }
+
+    /**
+     * Retrieves the suffixes of the image files written for each diagram, in the order they are rendered.
+     *
+     * @return the suffixes of the image files written for each diagram. May be empty.
+     */
+    public List<String> getImageSuffixes() {
+        return imageSuffixes;
+    }
+
+    /**
+     * @return {@code true} if this DiagramFormat renders a PNG image and HTML image map.
+     */
+    public boolean rendersPng() {
+        return imageSuffixes.contains(PNG_SUFFIX);
+    }
+
+    /**
+     * @return {@code true} if this DiagramFormat writes an SVG image file.
+     */
+    public boolean writesSvgFile() {
+        return imageSuffixes.contains(SVG_SUFFIX);
+    }
+
+    /**
+     * Retrieves the Graphviz output format rendering image files with the supplied suffix.
+     *
+     * @param imageSuffix An image file suffix, such as {@code .png}.
+     * @return The Graphviz output format, such as {@code png}.
+     */
+    public static String getGraphvizFormat(final String imageSuffix) {
+        return imageSuffix.substring(1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return option;
+    }
+
+    /**
+     * Retrieves the DiagramFormat selected by the supplied {@code -diagramformat} argument.
+     *
+     * @param option The argument of the {@code -diagramformat} option. Case insensitive.
+     * @return The DiagramFormat selected by the supplied argument, or {@code null} if no DiagramFormat matched.
+     */
+    public static DiagramFormat parse(final String option) {
+
+        if (option != null) {
+            for (DiagramFormat current : values()) {
+                if (current.option.equalsIgnoreCase(option.trim())) {
+                    return current;
+                }
+            }
+        }
+
+        // Nopes.
+        return null;
+    }
+}
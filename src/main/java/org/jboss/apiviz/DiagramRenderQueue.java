@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.DocErrorReporter;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Renders diagrams on a bounded pool of worker threads, each of which runs its own Graphviz process.</p>
+ * <p>Diagrams are harvested in the order they were submitted, and all messages are reported on the submitting
+ * thread. The number of submitted but not yet rendered diagrams is bounded, to prevent the diagram sources from
+ * piling up in memory when they are generated faster than Graphviz can render them.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class DiagramRenderQueue {
+
+    /**
+     * The number of diagrams which may be queued per worker thread, in addition to the one being rendered.
+     */
+    public static final int QUEUED_DIAGRAMS_PER_THREAD = 2;
+
+    // Internal state
+    private final DocErrorReporter reporter;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Deque<PendingDiagram> pendingDiagrams = new ArrayDeque<>();
+    private int numFailures;
+
+    /**
+     * Creates a new DiagramRenderQueue rendering at most {@code numThreads} diagrams concurrently.
+     *
+     * @param reporter   The non-null DocErrorReporter used to report rendering failures.
+     * @param numThreads The number of worker threads. Must be positive.
+     */
+    public DiagramRenderQueue(final DocErrorReporter reporter, final int numThreads) {
+
+        // Check sanity
+        if (reporter == null) {
+            throw new NullPointerException("Cannot handle null 'reporter' argument.");
+        }
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Cannot handle non-positive 'numThreads' argument. (Got: "
+                    + numThreads + ")");
+        }
+
+        // Assign internal state
+        this.reporter = reporter;
+        this.permits = new Semaphore(numThreads * (1 + QUEUED_DIAGRAMS_PER_THREAD));
+        this.executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+
+            private final AtomicInteger threadIndex = new AtomicInteger();
+
+            public Thread newThread(final Runnable runnable) {
+                final Thread toReturn = new Thread(runnable, "apiviz-graphviz-" + threadIndex.incrementAndGet());
+                toReturn.setDaemon(true);
+                return toReturn;
+            }
+        });
+    }
+
+    /**
+     * Submits a rendering task. Blocks while the maximum number of diagrams are already queued.
+     *
+     * @param description A description of the diagram, used when reporting a rendering failure.
+     * @param task        The task rendering the diagram.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for a free queue slot.
+     */
+    public void submit(final String description, final Callable<?> task) throws InterruptedException {
+        enqueue(Collections.singletonList(description), false, task);
+    }
+
+    /**
+     * Submits a task rendering several diagrams at once, such as a {@link DiagramBatch}. Blocks while the
+     * maximum number of tasks are already queued. Failures are still reported per diagram.
+     *
+     * @param descriptions The descriptions of the diagrams, used when reporting rendering failures.
+     * @param task         The task rendering the diagrams. Returns the failure of each diagram in the order of
+     *                     the descriptions, holding {@code null} for each diagram rendered successfully. All
+     *                     diagrams are considered failed if the task itself fails.
+     * @throws InterruptedException if the calling thread was interrupted while waiting for a free queue slot.
+     */
+    public void submitBatch(final List<String> descriptions, final Callable<List<Throwable>> task)
+            throws InterruptedException {
+        enqueue(descriptions, true, task);
+    }
+
+    /**
+     * Waits until all submitted diagrams are rendered, reporting each failed diagram, and shuts down
+     * the worker threads of this DiagramRenderQueue.
+     *
+     * @return The total number of diagrams which could not be rendered.
+     */
+    public int awaitCompletion() {
+
+        try {
+            harvest(true);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // All Done.
+        return numFailures;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void enqueue(final List<String> descriptions,
+            final boolean batch,
+            final Callable<?> task) throws InterruptedException {
+
+        // Harvest the already rendered diagrams, to keep the pending queue short.
+        harvest(false);
+
+        permits.acquire();
+        try {
+            final Future<?> result = executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    try {
+                        return task.call();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+
+            pendingDiagrams.addLast(new PendingDiagram(descriptions, batch, result));
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void harvest(final boolean waitForCompletion) {
+
+        while (!pendingDiagrams.isEmpty()) {
+
+            final PendingDiagram current = pendingDiagrams.peekFirst();
+            if (!waitForCompletion && !current.result.isDone()) {
+                return;
+            }
+
+            try {
+                final Object result = getUninterruptibly(current.result);
+                if (current.batch) {
+                    final List<?> failures = (List<?>) result;
+                    for (int i = 0; i < current.descriptions.size(); i++) {
+                        if (failures.get(i) != null) {
+                            reportFailure(current.descriptions.get(i), (Throwable) failures.get(i));
+                        }
+                    }
+                }
+            } catch (ExecutionException e) {
+                for (String description : current.descriptions) {
+                    reportFailure(description, e.getCause());
+                }
+            }
+
+            pendingDiagrams.removeFirst();
+        }
+    }
+
+    private void reportFailure(final String description, final Throwable cause) {
+        numFailures++;
+        reporter.printError("Failed to generate the diagram for " + description + ": " + cause);
+    }
+
+    private static Object getUninterruptibly(final Future<?> future) throws ExecutionException {
+
+        boolean interrupted = false;
+        try {
+            for (; ; ) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Holder of the submitted diagram(s) of a task, and its future result.
+     */
+    private static final class PendingDiagram {
+
+        private final List<String> descriptions;
+        private final boolean batch;
+        private final Future<?> result;
+
+        PendingDiagram(final List<String> descriptions, final boolean batch, final Future<?> result) {
+            this.descriptions = descriptions;
+            this.batch = batch;
+            this.result = result;
+        }
+    }
+}
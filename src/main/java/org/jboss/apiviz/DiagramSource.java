@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>Source of a single diagram (i.e. digraph), written to a sink on demand rather than held in memory.</p>
+ * <p>A DiagramSource holds the subgraph of a diagram, and emits its node and edge declarations in the DOT
+ * language directly to the supplied Writer - which could be the standard input of a Graphviz process,
+ * a file, or a digest calculating a cache key. A DiagramSource may be written several times, and
+ * always writes the same diagram.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public interface DiagramSource {
+
+    /**
+     * Writes the DOT source of this diagram to the supplied Writer. The Writer is neither flushed nor closed.
+     *
+     * @param out The non-null Writer receiving the DOT source.
+     * @throws IOException if the DOT source could not be written.
+     */
+    void writeTo(Writer out) throws IOException;
+}
@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.Tag;
+import se.jguru.javadoc.apiviz.JavaDocTag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * <p>Read-only summary of the APIviz tags of a single ClassDoc or PackageDoc.</p>
+ * <p>The tags of the Doc are scanned once, when the DocDescriptor is created, implying that the
+ * rendering code never needs to search the tags of a Doc again. Tags are matched by their kind,
+ * just like {@link Doc#tags(String)} does.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class DocDescriptor {
+
+    private static final String HIDDEN = JavaDocTag.HIDDEN.toString();
+    private static final String EXCLUDE = JavaDocTag.EXCLUDE.toString();
+    private static final String LANDMARK = JavaDocTag.LANDMARK.toString();
+    private static final String INHERIT = JavaDocTag.INHERIT.toString();
+    private static final String EXCLUDE_SUBTYPES = JavaDocTag.EXCLUDE_SUBTYPES.toString();
+    private static final String CATEGORY = JavaDocTag.CATEGORY.toString();
+    private static final String STEREOTYPE = JavaDocTag.STEREOTYPE.toString();
+    private static final String DEPRECATED = "@deprecated";
+
+    // Internal state
+    private final boolean hidden;
+    private final boolean landmark;
+    private final boolean inherit;
+    private final boolean excludeSubtypes;
+    private final boolean deprecated;
+    private final String category;
+    private final String stereotype;
+    private final List<String> excludePatterns;
+
+    /**
+     * Creates a new DocDescriptor by scanning the tags of the supplied Doc.
+     *
+     * @param doc The non-null ClassDoc or PackageDoc to describe.
+     */
+    DocDescriptor(final Doc doc) {
+
+        boolean hidden = false;
+        boolean landmark = false;
+        boolean inherit = false;
+        boolean excludeSubtypes = false;
+        boolean deprecated = false;
+        String category = null;
+        String stereotype = null;
+        List<String> excludePatterns = null;
+
+        final Tag[] tags = doc.tags();
+        if (tags != null) {
+            for (Tag t : tags) {
+
+                final String kind = t.kind();
+                if (HIDDEN.equals(kind)) {
+                    hidden = true;
+                } else if (EXCLUDE.equals(kind)) {
+
+                    // An exclude tag without a pattern hides its Doc.
+                    if (t.text() == null || t.text().trim().length() == 0) {
+                        hidden = true;
+                    } else {
+                        if (excludePatterns == null) {
+                            excludePatterns = new ArrayList<String>();
+                        }
+                        excludePatterns.add(t.text().trim());
+                    }
+                } else if (LANDMARK.equals(kind)) {
+                    landmark = true;
+                } else if (INHERIT.equals(kind)) {
+                    inherit = true;
+                } else if (EXCLUDE_SUBTYPES.equals(kind)) {
+                    excludeSubtypes = true;
+                } else if (CATEGORY.equals(kind)) {
+                    if (category == null) {
+                        category = t.text();
+                    }
+                } else if (STEREOTYPE.equals(kind)) {
+                    if (stereotype == null) {
+                        stereotype = t.text();
+                    }
+                } else if (DEPRECATED.equals(kind)) {
+                    deprecated = true;
+                }
+            }
+        }
+
+        // Assign internal state
+        this.hidden = hidden;
+        this.landmark = landmark;
+        this.inherit = inherit;
+        this.excludeSubtypes = excludeSubtypes;
+        this.deprecated = deprecated;
+        this.category = category;
+        this.stereotype = stereotype;
+        this.excludePatterns = excludePatterns == null
+                ? Collections.<String>emptyList()
+                : Collections.unmodifiableList(excludePatterns);
+    }
+
+    /**
+     * @return {@code true} if the Doc is tagged {@code @apiviz.hidden}, or holds an {@code @apiviz.exclude}
+     * tag without a pattern.
+     */
+    boolean isHidden() {
+        return hidden;
+    }
+
+    /**
+     * @return {@code true} if the Doc is tagged {@code @apiviz.landmark}.
+     */
+    boolean isLandmark() {
+        return landmark;
+    }
+
+    /**
+     * @return {@code true} if the Doc is tagged {@code @apiviz.inherit}.
+     */
+    boolean isInherit() {
+        return inherit;
+    }
+
+    /**
+     * @return {@code true} if the Doc is tagged {@code @apiviz.excludeSubtypes}.
+     */
+    boolean isExcludeSubtypes() {
+        return excludeSubtypes;
+    }
+
+    /**
+     * @return {@code true} if the Doc is tagged {@code @deprecated}.
+     */
+    boolean isDeprecated() {
+        return deprecated;
+    }
+
+    /**
+     * @return The text of the first {@code @apiviz.category} tag, or {@code null} if the Doc has no category.
+     */
+    String getCategory() {
+        return category;
+    }
+
+    /**
+     * @return The text of the first {@code @apiviz.stereotype} tag, or {@code null} if the Doc has no
+     * explicit stereotype.
+     */
+    String getStereotype() {
+        return stereotype;
+    }
+
+    /**
+     * @return The trimmed patterns of all {@code @apiviz.exclude} tags having a pattern.
+     */
+    List<String> getExcludePatterns() {
+        return excludePatterns;
+    }
+}
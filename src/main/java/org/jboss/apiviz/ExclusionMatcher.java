@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import se.jguru.javadoc.apiviz.JavaDocTag;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Matches the qualified names of graph nodes against the {@link JavaDocTag#EXCLUDE} rules of a single
+ * package or class.</p>
+ * <p>The rules are compiled once, when the ExclusionMatcher is created. The verdict for each node is
+ * memoized by node id, so each qualified name is matched against the rules at most once per context.
+ * Memoized verdicts are idempotent, so concurrent matching is safe without locking.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class ExclusionMatcher {
+
+    /**
+     * ExclusionMatcher which excludes nothing.
+     */
+    static final ExclusionMatcher NONE = new ExclusionMatcher(Collections.<String>emptyList(), 0);
+
+    private static final byte UNKNOWN = 0;
+    private static final byte INCLUDED = 1;
+    private static final byte EXCLUDED = 2;
+
+    // Internal state
+    private final Pattern[] patterns;
+    private final byte[] verdicts;
+
+    /**
+     * Compiles the supplied exclude patterns into a new ExclusionMatcher.
+     *
+     * @param excludePatterns The patterns of the {@link JavaDocTag#EXCLUDE} tags of a package or class,
+     *                        as found by {@link DocDescriptor#getExcludePatterns()}.
+     * @param numNodes        The number of nodes within the {@link GraphIndex}, i.e. the number of
+     *                        verdicts to memoize.
+     */
+    ExclusionMatcher(final List<String> excludePatterns, final int numNodes) {
+
+        final Pattern[] tmp = new Pattern[excludePatterns.size()];
+        for (int i = 0; i < tmp.length; i++) {
+            tmp[i] = Pattern.compile(excludePatterns.get(i));
+        }
+
+        // Assign internal state
+        this.patterns = tmp;
+        this.verdicts = patterns.length == 0 ? null : new byte[numNodes];
+    }
+
+    /**
+     * @return {@code true} if this ExclusionMatcher holds no exclude rules.
+     */
+    boolean isEmpty() {
+        return patterns.length == 0;
+    }
+
+    /**
+     * Checks if any exclude rule is found within the supplied qualified name.
+     *
+     * @param node          The id of the node within the {@link GraphIndex}.
+     * @param qualifiedName The qualified name of the node.
+     * @return {@code true} if the node is excluded.
+     */
+    boolean isExcluded(final int node, final String qualifiedName) {
+
+        // Fail fast
+        if (patterns.length == 0) {
+            return false;
+        }
+
+        byte verdict = verdicts[node];
+        if (verdict == UNKNOWN) {
+            verdict = INCLUDED;
+            for (Pattern current : patterns) {
+                if (current.matcher(qualifiedName).find()) {
+                    verdict = EXCLUDED;
+                    break;
+                }
+            }
+            verdicts[node] = verdict;
+        }
+
+        return verdict == EXCLUDED;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Caps the number of neighbours shown around the class of a class diagram.</p>
+ * <p>A hub type, such as a core interface with hundreds of implementations, would otherwise yield a class
+ * diagram holding every one of them - unreadable, and costly to lay out. Only the most relevant neighbours
+ * are kept within the budget: those the class itself refers to (such as its supertypes) before those
+ * referring to it, then those within the same package, then documented ones. The remaining neighbours are
+ * collapsed into a single {@link Summary} node per edge type and direction.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class FanOutCap {
+
+    /**
+     * The default maximum number of neighbours shown within a class diagram.
+     */
+    public static final int DEFAULT_BUDGET = 40;
+
+    /**
+     * The maximum number of collapsed class names listed within the tooltip of a Summary node.
+     */
+    static final int MAX_TOOLTIP_NAMES = 20;
+
+    /**
+     * Summary node standing in for the collapsed neighbours connected to the class by one edge type,
+     * in one direction.
+     */
+    static final class Summary {
+
+        // Internal state
+        private final EdgeType type;
+        private final boolean outgoing;
+        private final SortedSet<String> names = new TreeSet<String>();
+
+        private Summary(final EdgeType type, final boolean outgoing) {
+            this.type = type;
+            this.outgoing = outgoing;
+        }
+
+        /**
+         * @return The type of the edges collapsed into this Summary.
+         */
+        EdgeType getType() {
+            return type;
+        }
+
+        /**
+         * @return {@code true} if the class is the source of the collapsed edges.
+         */
+        boolean isOutgoing() {
+            return outgoing;
+        }
+
+        /**
+         * @return The sorted, distinct qualified names of the collapsed neighbours.
+         */
+        List<String> getNames() {
+            return new ArrayList<String>(names);
+        }
+
+        /**
+         * @return The Graphviz id of this Summary node.
+         */
+        String getDotId() {
+            return "apivizMore_" + type.name() + (outgoing ? "_out" : "_in");
+        }
+
+        /**
+         * @return The label of this Summary node, such as {@code +17 more}.
+         */
+        String getLabel() {
+            return "+" + names.size() + " more";
+        }
+
+        /**
+         * @return The tooltip of this Summary node, listing the first collapsed neighbours.
+         */
+        String getTooltip() {
+
+            final StringBuilder builder = new StringBuilder();
+            int numListed = 0;
+            for (Iterator<String> it = names.iterator(); it.hasNext() && numListed < MAX_TOOLTIP_NAMES; ) {
+                builder.append(numListed++ == 0 ? "" : ", ").append(it.next());
+            }
+            if (names.size() > MAX_TOOLTIP_NAMES) {
+                builder.append(", ...");
+            }
+            return builder.toString();
+        }
+    }
+
+    /*
+     * Hide constructor for utility classes.
+     */
+    private FanOutCap() {
+        // Unused
+    }
+
+    /**
+     * Removes the least relevant neighbours of the supplied class from the subgraph of its class diagram,
+     * if it holds more neighbours than the supplied budget.
+     *
+     * @param index         The GraphIndex of the graph.
+     * @param clsId         The id of the class of the class diagram.
+     * @param budget        The maximum number of neighbours kept.
+     * @param nodesToRender The nodes of the class diagram; the collapsed neighbours are removed.
+     * @param edgesToRender The edges of the class diagram; the edges of the collapsed neighbours are removed.
+     * @return The Summary nodes of the collapsed neighbours, ordered by edge type and direction.
+     * Empty if the subgraph was within the budget.
+     */
+    static List<Summary> apply(final GraphIndex index,
+            final int clsId,
+            final int budget,
+            final BitSet nodesToRender,
+            final BitSet edgesToRender) {
+
+        // Check sanity
+        final int numNeighbours = nodesToRender.cardinality() - (nodesToRender.get(clsId) ? 1 : 0);
+        if (numNeighbours <= budget) {
+            return Collections.emptyList();
+        }
+
+        // #1) Find the neighbours the class refers to itself.
+        final BitSet referenced = new BitSet(index.getNumNodes());
+        for (int e = edgesToRender.nextSetBit(0); e >= 0; e = edgesToRender.nextSetBit(e + 1)) {
+            if (index.getEdgeSource(e) == clsId) {
+                referenced.set(index.getEdgeTarget(e));
+            }
+        }
+
+        // #2) Rank the neighbours by relevance, and collapse those beyond the budget.
+        final List<Integer> neighbours = new ArrayList<Integer>(numNeighbours);
+        for (int node = nodesToRender.nextSetBit(0); node >= 0; node = nodesToRender.nextSetBit(node + 1)) {
+            if (node != clsId) {
+                neighbours.add(node);
+            }
+        }
+
+        Collections.sort(neighbours, new Comparator<Integer>() {
+            public int compare(final Integer left, final Integer right) {
+
+                int toReturn = Boolean.compare(referenced.get(right), referenced.get(left));
+                if (toReturn == 0) {
+                    toReturn = Boolean.compare(index.getPackage(right) == index.getPackage(clsId),
+                            index.getPackage(left) == index.getPackage(clsId));
+                }
+                if (toReturn == 0) {
+                    toReturn = Boolean.compare(index.isIncluded(right), index.isIncluded(left));
+                }
+                return toReturn != 0
+                        ? toReturn
+                        : index.getQualifiedName(left).compareTo(index.getQualifiedName(right));
+            }
+        });
+
+        final BitSet collapsed = new BitSet(index.getNumNodes());
+        for (int current : neighbours.subList(budget, neighbours.size())) {
+            collapsed.set(current);
+        }
+        nodesToRender.andNot(collapsed);
+
+        // #3) Move the edges of the collapsed neighbours into one Summary per edge type and direction.
+        final Map<String, Summary> summaries = new TreeMap<String, Summary>();
+        for (int e = edgesToRender.nextSetBit(0); e >= 0; e = edgesToRender.nextSetBit(e + 1)) {
+
+            final boolean outgoing = index.getEdgeSource(e) == clsId;
+            final int neighbour = outgoing ? index.getEdgeTarget(e) : index.getEdgeSource(e);
+            if (!collapsed.get(neighbour)) {
+                continue;
+            }
+
+            edgesToRender.clear(e);
+            final EdgeType type = index.getEdgeType(e);
+            final String key = String.format("%03d-%b", type.ordinal(), outgoing);
+            Summary summary = summaries.get(key);
+            if (summary == null) {
+                summary = new Summary(type, outgoing);
+                summaries.put(key, summary);
+            }
+            summary.names.add(index.getQualifiedName(neighbour));
+        }
+
+        // All Done.
+        return new ArrayList<Summary>(summaries.values());
+    }
+}
@@ -42,6 +42,8 @@ public class FileUtil {
      */
     public static final String DEFAULT_CHARSET = "ISO-8859-1";
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * Reads and returns all content within the supplied file.
      *
@@ -80,6 +82,22 @@ public class FileUtil {
         }
     }
 
+    /**
+     * Converts the supplied bytes (typically a digest) to a lowercase hexadecimal string.
+     *
+     * @param bytes a non-null byte array.
+     * @return the hexadecimal representation of the supplied bytes.
+     */
+    public static String toHex(final byte[] bytes) {
+
+        final char[] toReturn = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            toReturn[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+            toReturn[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+        }
+        return new String(toReturn);
+    }
+
     private FileUtil() {
         // Unused
     }
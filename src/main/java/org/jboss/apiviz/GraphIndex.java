@@ -0,0 +1,409 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.PackageDoc;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Compact, immutable index of the class graph held by a {@link ClassDocGraph}.</p>
+ * <p>Every class is interned to an integer node id, assigned in qualified name order. Every distinct edge
+ * is assigned an integer edge id in the {@link Edge#compareTo(Edge) natural order of Edges}, and its
+ * attributes are held in parallel arrays. The outgoing and incoming edges of each node are held in
+ * compressed sparse row form, i.e. as a slice of a single primitive array, in edge id order. Hence,
+ * iterating node or edge ids in ascending order yields the same order as the sorted collections of
+ * ClassDocs and Edges they replace.</p>
+ * <p>The member nodes of each package are likewise held as a slice of a single primitive array, such that
+ * the diagram of a package need only visit its own members. The containing package of every node, and whether
+ * it is included in the documentation, are captured when the index is built, such that the diagrams never need
+ * to query the javadoc model for them.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class GraphIndex {
+
+    // Nodes
+    private final ClassDoc[] nodes;
+    private final PackageDoc[] packages;
+    private final String[] qualifiedNames;
+    private final String[] dotIds;
+    private final boolean[] members;
+    private final boolean[] included;
+    private final Map<String, Integer> nodeIds;
+
+    // Package members, in compressed sparse row form.
+    private final Map<String, Integer> packageIds;
+    private final int[] memberOffsets;
+    private final int[] memberNodes;
+
+    // Edges
+    private final EdgeType[] edgeTypes;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    private final boolean[] onewayEdges;
+    private final String[] sourceLabels;
+    private final String[] targetLabels;
+    private final String[] edgeLabels;
+
+    // Adjacency, in compressed sparse row form.
+    private final int[] outgoingOffsets;
+    private final int[] outgoingEdges;
+    private final int[] incomingOffsets;
+    private final int[] incomingEdges;
+
+    /**
+     * Creates a new GraphIndex from the supplied member classes and edges.
+     *
+     * @param memberClasses The classes added to the graph. Endpoints of the supplied edges which are not
+     *                      members are indexed as well, but are not reported as members.
+     * @param edges         The edges of the graph, in any order and possibly containing duplicates.
+     */
+    GraphIndex(final Collection<ClassDoc> memberClasses, final List<Edge> edges) {
+
+        // #1) Intern all nodes, in qualified name order. Like the sorted map of nodes this index replaces,
+        //     the first class added under a qualified name wins; members take precedence over endpoints.
+        final Map<String, ClassDoc> name2Node = new HashMap<String, ClassDoc>();
+        for (ClassDoc current : memberClasses) {
+            addNode(name2Node, current);
+        }
+        for (Edge current : edges) {
+            addNode(name2Node, (ClassDoc) current.getSource());
+            addNode(name2Node, (ClassDoc) current.getTarget());
+        }
+
+        qualifiedNames = name2Node.keySet().toArray(new String[name2Node.size()]);
+        Arrays.sort(qualifiedNames);
+
+        nodes = new ClassDoc[qualifiedNames.length];
+        packages = new PackageDoc[qualifiedNames.length];
+        dotIds = new String[qualifiedNames.length];
+        members = new boolean[qualifiedNames.length];
+        included = new boolean[qualifiedNames.length];
+        nodeIds = new HashMap<String, Integer>(qualifiedNames.length * 2);
+        for (int i = 0; i < qualifiedNames.length; i++) {
+            nodes[i] = name2Node.get(qualifiedNames[i]);
+            dotIds[i] = qualifiedNames[i].replace('.', '_');
+            nodeIds.put(qualifiedNames[i], i);
+        }
+        for (ClassDoc current : memberClasses) {
+            members[nodeIds.get(current.qualifiedName())] = true;
+        }
+
+        // #2) Group the member nodes by package, in package name order.
+        final String[] packageNames = new String[qualifiedNames.length];
+        final Map<String, Integer> memberCounts = new HashMap<String, Integer>();
+        for (int i = 0; i < qualifiedNames.length; i++) {
+            packages[i] = nodes[i].containingPackage();
+            included[i] = nodes[i].isIncluded();
+            if (members[i] && packages[i] != null) {
+                packageNames[i] = packages[i].name();
+                final Integer count = memberCounts.get(packageNames[i]);
+                memberCounts.put(packageNames[i], count == null ? 1 : count + 1);
+            }
+        }
+
+        final String[] sortedPackageNames = memberCounts.keySet().toArray(new String[memberCounts.size()]);
+        Arrays.sort(sortedPackageNames);
+        packageIds = new HashMap<String, Integer>(sortedPackageNames.length * 2);
+        memberOffsets = new int[sortedPackageNames.length + 1];
+        for (int i = 0; i < sortedPackageNames.length; i++) {
+            packageIds.put(sortedPackageNames[i], i);
+            memberOffsets[i + 1] = memberOffsets[i] + memberCounts.get(sortedPackageNames[i]);
+        }
+
+        memberNodes = new int[memberOffsets[sortedPackageNames.length]];
+        final int[] nextMember = Arrays.copyOf(memberOffsets, sortedPackageNames.length);
+        for (int i = 0; i < qualifiedNames.length; i++) {
+            if (packageNames[i] != null) {
+                memberNodes[nextMember[packageIds.get(packageNames[i])]++] = i;
+            }
+        }
+
+        // #3) Sort the edges in their natural order, comparing node ids rather than names.
+        final int[] sources = new int[edges.size()];
+        final int[] targets = new int[edges.size()];
+        final Integer[] order = new Integer[edges.size()];
+        for (int i = 0; i < order.length; i++) {
+            final Edge current = edges.get(i);
+            sources[i] = nodeIds.get(((ClassDoc) current.getSource()).qualifiedName());
+            targets[i] = nodeIds.get(((ClassDoc) current.getTarget()).qualifiedName());
+            order[i] = i;
+        }
+
+        final Comparator<Integer> edgeOrder = new Comparator<Integer>() {
+            public int compare(final Integer left, final Integer right) {
+                final Edge l = edges.get(left);
+                final Edge r = edges.get(right);
+
+                int v = l.getType().compareTo(r.getType());
+                if (v == 0) {
+                    v = Integer.compare(sources[left], sources[right]);
+                }
+                if (v == 0) {
+                    v = Integer.compare(targets[left], targets[right]);
+                }
+                if (v == 0) {
+                    v = Boolean.compare(l.isOneway(), r.isOneway());
+                }
+                if (v == 0) {
+                    v = l.getEdgeLabel().compareTo(r.getEdgeLabel());
+                }
+                if (v == 0) {
+                    v = l.getSourceLabel().compareTo(r.getSourceLabel());
+                }
+                if (v == 0) {
+                    v = l.getTargetLabel().compareTo(r.getTargetLabel());
+                }
+                return v;
+            }
+        };
+        Arrays.sort(order, edgeOrder);
+
+        // #4) Copy the distinct edges into the parallel attribute arrays.
+        int numEdges = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == 0 || edgeOrder.compare(order[i - 1], order[i]) != 0) {
+                order[numEdges++] = order[i];
+            }
+        }
+
+        edgeTypes = new EdgeType[numEdges];
+        edgeSources = new int[numEdges];
+        edgeTargets = new int[numEdges];
+        onewayEdges = new boolean[numEdges];
+        sourceLabels = new String[numEdges];
+        targetLabels = new String[numEdges];
+        edgeLabels = new String[numEdges];
+        for (int i = 0; i < numEdges; i++) {
+            final Edge current = edges.get(order[i]);
+            edgeTypes[i] = current.getType();
+            edgeSources[i] = sources[order[i]];
+            edgeTargets[i] = targets[order[i]];
+            onewayEdges[i] = current.isOneway();
+            sourceLabels[i] = current.getSourceLabel();
+            targetLabels[i] = current.getTargetLabel();
+            edgeLabels[i] = current.getEdgeLabel();
+        }
+
+        // #5) Build the outgoing and incoming adjacency.
+        outgoingOffsets = new int[nodes.length + 1];
+        outgoingEdges = new int[numEdges];
+        buildAdjacency(edgeSources, outgoingOffsets, outgoingEdges);
+
+        incomingOffsets = new int[nodes.length + 1];
+        incomingEdges = new int[numEdges];
+        buildAdjacency(edgeTargets, incomingOffsets, incomingEdges);
+    }
+
+    /**
+     * @return The number of nodes within this GraphIndex.
+     */
+    int getNumNodes() {
+        return nodes.length;
+    }
+
+    /**
+     * @return The number of distinct edges within this GraphIndex.
+     */
+    int getNumEdges() {
+        return edgeTypes.length;
+    }
+
+    /**
+     * Retrieves the id of the node with the supplied qualified name.
+     *
+     * @param qualifiedName The qualified name of a class.
+     * @return The id of the node, or {@code -1} if the class is not indexed.
+     */
+    int getNodeId(final String qualifiedName) {
+        final Integer toReturn = nodeIds.get(qualifiedName);
+        return toReturn == null ? -1 : toReturn;
+    }
+
+    /**
+     * Retrieves the id of the node of the supplied class.
+     *
+     * @param node A class.
+     * @return The id of the node, or {@code -1} if the class is not indexed.
+     */
+    int getNodeId(final ClassDoc node) {
+        return getNodeId(node.qualifiedName());
+    }
+
+    ClassDoc getNode(final int node) {
+        return nodes[node];
+    }
+
+    /**
+     * Retrieves the containing package of the supplied node.
+     *
+     * @param node A node id.
+     * @return The containing package of the node, or {@code null} if it has none.
+     */
+    PackageDoc getPackage(final int node) {
+        return packages[node];
+    }
+
+    /**
+     * Checks if the supplied node is included in the documentation generated by javadoc.
+     *
+     * @param node A node id.
+     * @return {@code true} if the class of the node is included in the documentation.
+     */
+    boolean isIncluded(final int node) {
+        return included[node];
+    }
+
+    String getQualifiedName(final int node) {
+        return qualifiedNames[node];
+    }
+
+    /**
+     * @param node A node id.
+     * @return The identifier of the node within a Graphviz digraph.
+     */
+    String getDotId(final int node) {
+        return dotIds[node];
+    }
+
+    /**
+     * @param node A node id.
+     * @return {@code true} if the node was added to the graph as a member, and {@code false} if it is
+     * only the endpoint of some edge.
+     */
+    boolean isMember(final int node) {
+        return members[node];
+    }
+
+    /**
+     * Retrieves the id of the package with the supplied name.
+     *
+     * @param packageName The name of a package.
+     * @return The id of the package, or {@code -1} if the package holds no member nodes.
+     */
+    int getPackageId(final String packageName) {
+        final Integer toReturn = packageIds.get(packageName);
+        return toReturn == null ? -1 : toReturn;
+    }
+
+    int getNumPackageMembers(final int pkg) {
+        return memberOffsets[pkg + 1] - memberOffsets[pkg];
+    }
+
+    /**
+     * @param pkg   A package id.
+     * @param index The index of the member among the member nodes of the package.
+     * @return The id of the member node, in ascending node id order.
+     */
+    int getPackageMember(final int pkg, final int index) {
+        return memberNodes[memberOffsets[pkg] + index];
+    }
+
+    int getNumOutgoingEdges(final int node) {
+        return outgoingOffsets[node + 1] - outgoingOffsets[node];
+    }
+
+    /**
+     * @param node  A node id.
+     * @param index The index of the edge among the outgoing edges of the node.
+     * @return The id of the outgoing edge.
+     */
+    int getOutgoingEdge(final int node, final int index) {
+        return outgoingEdges[outgoingOffsets[node] + index];
+    }
+
+    int getNumIncomingEdges(final int node) {
+        return incomingOffsets[node + 1] - incomingOffsets[node];
+    }
+
+    /**
+     * @param node  A node id.
+     * @param index The index of the edge among the incoming edges of the node.
+     * @return The id of the incoming edge.
+     */
+    int getIncomingEdge(final int node, final int index) {
+        return incomingEdges[incomingOffsets[node] + index];
+    }
+
+    EdgeType getEdgeType(final int edge) {
+        return edgeTypes[edge];
+    }
+
+    int getEdgeSource(final int edge) {
+        return edgeSources[edge];
+    }
+
+    int getEdgeTarget(final int edge) {
+        return edgeTargets[edge];
+    }
+
+    boolean isOneway(final int edge) {
+        return onewayEdges[edge];
+    }
+
+    String getSourceLabel(final int edge) {
+        return sourceLabels[edge];
+    }
+
+    String getTargetLabel(final int edge) {
+        return targetLabels[edge];
+    }
+
+    String getEdgeLabel(final int edge) {
+        return edgeLabels[edge];
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void addNode(final Map<String, ClassDoc> name2Node, final ClassDoc node) {
+        if (!name2Node.containsKey(node.qualifiedName())) {
+            name2Node.put(node.qualifiedName(), node);
+        }
+    }
+
+    private static void buildAdjacency(final int[] endpoints, final int[] offsets, final int[] adjacentEdges) {
+
+        // Count the edges of each node, and convert the counts to offsets.
+        for (int endpoint : endpoints) {
+            offsets[endpoint + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+
+        // Place the edges in ascending edge id order within each node.
+        final int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int edge = 0; edge < endpoints.length; edge++) {
+            adjacentEdges[next[endpoints[edge]]++] = edge;
+        }
+    }
+}
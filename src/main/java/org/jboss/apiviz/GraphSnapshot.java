@@ -0,0 +1,341 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Snapshot of a {@link ClassDocGraph} and its rendered diagrams, persisted between two doclet runs.</p>
+ * <p>The snapshot holds the fingerprint (i.e. a digest of all tags and flags) and visibility of every node,
+ * the key of every edge, and - for every rendered diagram - the fingerprint of the subgraph it was rendered
+ * from along with its markup (i.e. its HTML image map or SVG image). A diagram whose subgraph fingerprint is
+ * unchanged since the previous run need not be rendered again; its images are still present in the output
+ * directory, and its markup is read from the snapshot.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class GraphSnapshot {
+
+    /**
+     * The name of the snapshot file, written to the root of the output directory.
+     */
+    public static final String FILENAME = "apiviz-snapshot.dat";
+
+    /**
+     * The algorithm used to calculate node and subgraph fingerprints.
+     */
+    public static final String FINGERPRINT_ALGORITHM = "SHA-256";
+
+    private static final int MAGIC = 0x41505653;
+    private static final int FORMAT_VERSION = 1;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int MAX_STRING_LENGTH = 16 * 1024 * 1024;
+
+    // Internal state
+    private final String salt;
+    private final Map<String, String> nodeFingerprints = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> hiddenNodes = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> edgeKeys = new ConcurrentHashMap<>();
+    private final Map<String, String> diagramFingerprints = new ConcurrentHashMap<>();
+    private final Map<String, String> imageMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new, empty GraphSnapshot.
+     *
+     * @param salt A string describing everything outside of the graph which affects the rendered diagrams,
+     *             such as the Graphviz version and the doclet options. Snapshots with different salts
+     *             never share diagrams.
+     */
+    public GraphSnapshot(final String salt) {
+
+        // Check sanity
+        if (salt == null) {
+            throw new NullPointerException("Cannot handle null 'salt' argument.");
+        }
+
+        // Assign internal state
+        this.salt = salt;
+    }
+
+    /**
+     * Records a node of the graph.
+     *
+     * @param qualifiedName The qualified name of the node.
+     * @param fingerprint   The fingerprint of the node's tags and flags.
+     * @param hidden        {@code true} if the node is hidden.
+     */
+    public void putNode(final String qualifiedName, final String fingerprint, final boolean hidden) {
+        nodeFingerprints.put(qualifiedName, fingerprint);
+        hiddenNodes.put(qualifiedName, hidden);
+    }
+
+    /**
+     * Records an edge of the graph.
+     *
+     * @param edgeKey A string uniquely identifying the edge, including its type and labels.
+     */
+    public void putEdge(final String edgeKey) {
+        edgeKeys.put(edgeKey, Boolean.TRUE);
+    }
+
+    /**
+     * Records a rendered diagram. May be invoked concurrently by diagram rendering threads.
+     *
+     * @param diagramId   The identifier of the diagram, i.e. its filename relative to the output directory.
+     * @param fingerprint The fingerprint of the subgraph from which the diagram was rendered.
+     * @param imageMap    The markup of the rendered diagram, i.e. its HTML image map or SVG image.
+     */
+    public void putDiagram(final String diagramId, final String fingerprint, final String imageMap) {
+        diagramFingerprints.put(diagramId, fingerprint);
+        imageMaps.put(diagramId, imageMap);
+    }
+
+    /**
+     * Retrieves the markup of a previously rendered diagram, provided that it was rendered from a subgraph
+     * with the supplied fingerprint.
+     *
+     * @param diagramId   The identifier of the diagram.
+     * @param fingerprint The fingerprint of the current subgraph of the diagram.
+     * @return The markup of the diagram, or {@code null} if the diagram must be rendered again.
+     */
+    public String getImageMap(final String diagramId, final String fingerprint) {
+        return fingerprint.equals(diagramFingerprints.get(diagramId)) ? imageMaps.get(diagramId) : null;
+    }
+
+    /**
+     * Counts the nodes which were added, removed or changed (in fingerprint or visibility) in the supplied
+     * snapshot compared to this one.
+     *
+     * @param that The GraphSnapshot of the current graph.
+     * @return The number of nodes which differ between this and the supplied GraphSnapshot.
+     */
+    public int countChangedNodes(final GraphSnapshot that) {
+
+        int toReturn = 0;
+        for (Map.Entry<String, String> current : that.nodeFingerprints.entrySet()) {
+            final String name = current.getKey();
+            if (!current.getValue().equals(nodeFingerprints.get(name))
+                    || !that.hiddenNodes.get(name).equals(hiddenNodes.get(name))) {
+                toReturn++;
+            }
+        }
+        for (String name : nodeFingerprints.keySet()) {
+            if (!that.nodeFingerprints.containsKey(name)) {
+                toReturn++;
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Counts the edges which were added or removed in the supplied snapshot compared to this one.
+     *
+     * @param that The GraphSnapshot of the current graph.
+     * @return The number of edges which differ between this and the supplied GraphSnapshot.
+     */
+    public int countChangedEdges(final GraphSnapshot that) {
+
+        int toReturn = 0;
+        for (String current : that.edgeKeys.keySet()) {
+            if (!edgeKeys.containsKey(current)) {
+                toReturn++;
+            }
+        }
+        for (String current : edgeKeys.keySet()) {
+            if (!that.edgeKeys.containsKey(current)) {
+                toReturn++;
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * @return The number of nodes within this GraphSnapshot.
+     */
+    public int getNumNodes() {
+        return nodeFingerprints.size();
+    }
+
+    /**
+     * Reads a GraphSnapshot from the supplied file. A missing, unreadable, damaged or incompatible snapshot
+     * file, or one written using another salt, yields an empty GraphSnapshot.
+     *
+     * @param file The snapshot file.
+     * @param salt The salt of the current run.
+     * @return The GraphSnapshot read from the supplied file, or an empty GraphSnapshot.
+     */
+    public static GraphSnapshot read(final File file, final String salt) {
+
+        final GraphSnapshot toReturn = new GraphSnapshot(salt);
+        if (!file.isFile()) {
+            return toReturn;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file))))) {
+
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !salt.equals(readString(in))) {
+                return toReturn;
+            }
+
+            for (int i = in.readInt(); i > 0; i--) {
+                final String name = readString(in);
+                toReturn.putNode(name, readString(in), in.readBoolean());
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                toReturn.putEdge(readString(in));
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                final String diagramId = readString(in);
+                toReturn.putDiagram(diagramId, readString(in), readString(in));
+            }
+        } catch (IOException | RuntimeException e) {
+
+            // Damaged snapshot; start over.
+            return new GraphSnapshot(salt);
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Writes this GraphSnapshot to the supplied file. The file is replaced atomically, so a failed
+     * doclet run never leaves a damaged snapshot behind.
+     *
+     * @param file The snapshot file.
+     * @throws IOException if the snapshot could not be written.
+     */
+    public void write(final File file) throws IOException {
+
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, salt);
+
+            final SortedMap<String, String> sortedNodes = new TreeMap<>(nodeFingerprints);
+            out.writeInt(sortedNodes.size());
+            for (Map.Entry<String, String> current : sortedNodes.entrySet()) {
+                writeString(out, current.getKey());
+                writeString(out, current.getValue());
+                out.writeBoolean(hiddenNodes.get(current.getKey()));
+            }
+
+            final SortedSet<String> sortedEdges = new TreeSet<>(edgeKeys.keySet());
+            out.writeInt(sortedEdges.size());
+            for (String current : sortedEdges) {
+                writeString(out, current);
+            }
+
+            final SortedMap<String, String> sortedDiagrams = new TreeMap<>(diagramFingerprints);
+            out.writeInt(sortedDiagrams.size());
+            for (Map.Entry<String, String> current : sortedDiagrams.entrySet()) {
+                writeString(out, current.getKey());
+                writeString(out, current.getValue());
+                writeString(out, imageMaps.get(current.getKey()));
+            }
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Creates a new MessageDigest used to calculate fingerprints.
+     *
+     * @return A new MessageDigest using the {@link #FINGERPRINT_ALGORITHM}.
+     */
+    public static MessageDigest newFingerprintDigest() {
+        try {
+            return MessageDigest.getInstance(FINGERPRINT_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Required digest algorithm " + FINGERPRINT_ALGORITHM
+                    + " is not available.", e);
+        }
+    }
+
+    /**
+     * Adds the supplied value, followed by a separator, to the given fingerprint digest.
+     *
+     * @param digest The fingerprint digest.
+     * @param value  The value to add. May be null.
+     */
+    public static void update(final MessageDigest digest, final String value) {
+        if (value != null) {
+            digest.update(value.getBytes(CHARSET));
+        }
+        digest.update((byte) 0);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(CHARSET);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final int length = in.readInt();
+        if (length < 0 || length > MAX_STRING_LENGTH) {
+            throw new IOException("Damaged snapshot: invalid string length " + length);
+        }
+
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, CHARSET);
+    }
+}
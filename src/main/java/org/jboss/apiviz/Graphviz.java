@@ -24,13 +24,29 @@ package org.jboss.apiviz;
 
 import com.sun.javadoc.RootDoc;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Utility class to wrap Graphviz operations, by launching and handling the "dot" executable.
@@ -60,8 +76,12 @@ public final class Graphviz {
      */
     public static final String DOT_STANDARD_CHARSET = "UTF-8";
 
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int PNG_IEND_CHUNK = 0x49454E44;
+
     private static boolean homeDetermined;
     private static File home;
+    private static volatile String version;
 
     /*
      * Hide constructor for utility classes.
@@ -109,6 +129,7 @@ public final class Graphviz {
             while ((line = in.readLine()) != null) {
                 if (line.matches(GRAPHVIZ_EXECUTABLE_FIRST_LINE_CHECK)) {
                     root.printNotice("Graphviz Version: " + line);
+                    version = line.trim();
                     return true;
                 } else {
                     root.printWarning("Unknown Graphviz output: " + line);
@@ -143,57 +164,257 @@ public final class Graphviz {
     }
 
     /**
-     * <p>Creates and writes PNG and HTML imagemap files by executing 'dot', with the following arguments:</p>
+     * Retrieves the version line reported by the Graphviz executable, as detected by
+     * {@link #isAvailable(RootDoc)}.
+     *
+     * @return the Graphviz version line, or {@code null} if Graphviz has not (yet) been detected.
+     */
+    public static String getVersion() {
+        return version;
+    }
+
+    /**
+     * <p>Renders a diagram by executing 'dot', with the following arguments in the default {@link DiagramFormat}
+     * (i.e. {@link DiagramFormat#PNG}):</p>
      * <pre>
      *     <code>
-     *         dot -Tcmapx -o [outputDir/filename].map -Tpng -o [outputDir/filename].png
+     *         dot -Tpng -o [outputDir/filename].png -Tcmapx
      *     </code>
      * </pre>
-     * <p>The {@code diagram} string is fed to the dot process.</p>
+     * <p>One {@code -T[format] -o [outputDir/filename][suffix]} pair is given per image suffix of the
+     * {@link DiagramFormat}, followed by the {@link DiagramFormat#getMarkupFormat() markup format} which has no
+     * output file. The {@code diagram} is streamed to the standard input of the dot process as it is written,
+     * and the markup - an HTML imagemap or an SVG image - is captured from its standard output.</p>
      *
      * @param root            The active {@link RootDoc} instance.
-     * @param diagram         The diagram (i.e. digraph) data to feed into the dot program. Source of the graphs.
+     * @param format          The format in which the diagram is rendered.
+     * @param diagram         The diagram (i.e. digraph) to feed into the dot program. Source of the graphs.
      * @param outputDirectory The directory where the result should be sent.
-     * @param filename        The filename of the PNG and MAP files generated.
+     * @param filename        The filename of the image files generated, excluding their suffix.
+     * @return The markup of the diagram, to be embedded into its HTML page.
      * @throws IOException If the files could not be properly generated.
      */
-    public static void writeImageAndMap(final RootDoc root,
-            final String diagram,
+    public static String writeImageAndMap(final RootDoc root,
+            final DiagramFormat format,
+            final DiagramSource diagram,
             final File outputDirectory,
             final String filename) throws IOException {
 
         // TODO: Check inbound arguments for sanity? (nulls, existence etc)
 
-        // #1) Ensure that the PNG and MAP files can be written to.
-        final File pngFile = new File(outputDirectory, filename + ".png");
-        final File mapFile = new File(outputDirectory, filename + ".map");
-        pngFile.delete();
-        mapFile.delete();
-
-        // #2) Compile the arguments used to launch Graphviz.
-        final String dot = Graphviz.getExecutable(root);
-        final ProcessBuilder pb = new ProcessBuilder(
-                dot,
-                "-Tcmapx", "-o", mapFile.getAbsolutePath(),
-                "-Tpng", "-o", pngFile.getAbsolutePath());
-        pb.redirectErrorStream(true);
+        // #1) Ensure that the image files can be written to.
+        final List<File> imageFiles = new ArrayList<File>();
+        for (String current : format.getImageSuffixes()) {
+            final File imageFile = new File(outputDirectory, filename + current);
+            imageFile.delete();
+            imageFiles.add(imageFile);
+        }
+
+        // #2) Launch Graphviz.
+        return runDot(root, format, Collections.singletonList(diagram), imageFiles);
+    }
+
+    /**
+     * <p>Renders several diagrams using a single 'dot' process, which saves launching one process per diagram.
+     * Graphviz renders all images of each image suffix into a single temporary batch file, and the markup of all
+     * diagrams to its standard output, in input order; the batch files and the markup are then split into the
+     * image files and markup of the individual diagrams.</p>
+     *
+     * @param root            The active {@link RootDoc} instance.
+     * @param format          The format in which the diagrams are rendered.
+     * @param diagrams        The diagrams to feed into the dot program.
+     * @param outputDirectory The directory where the result should be sent.
+     * @param filenames       The filenames of the image files generated excluding their suffix, in the order of
+     *                        the diagrams.
+     * @return The markup of the diagrams, in the order of the diagrams.
+     * @throws IOException If the files could not be properly generated, or if the Graphviz output could not
+     *                     be split into the images and markup of each diagram.
+     */
+    public static List<String> writeImagesAndMaps(final RootDoc root,
+            final DiagramFormat format,
+            final List<DiagramSource> diagrams,
+            final File outputDirectory,
+            final List<String> filenames) throws IOException {
+
+        // Check sanity
+        if (diagrams.size() != filenames.size()) {
+            throw new IllegalArgumentException("Expected one filename per diagram. (Got " + diagrams.size()
+                    + " diagrams and " + filenames.size() + " filenames)");
+        }
+        if (diagrams.size() == 1) {
+            return Collections.singletonList(writeImageAndMap(root, format, diagrams.get(0), outputDirectory,
+                    filenames.get(0)));
+        }
+
+        // #1) Render all diagrams, writing the images to temporary batch files outside the output directory.
+        final List<File> batchFiles = new ArrayList<File>();
+        try {
+            for (String current : format.getImageSuffixes()) {
+                batchFiles.add(File.createTempFile("apiviz-batch", current));
+            }
+            final String markup = runDot(root, format, diagrams, batchFiles);
+
+            // #2) Split the batch files and markup into those of each diagram.
+            for (int i = 0; i < batchFiles.size(); i++) {
+
+                final String suffix = format.getImageSuffixes().get(i);
+                final List<File> imageFiles = new ArrayList<File>();
+                for (String current : filenames) {
+                    imageFiles.add(new File(outputDirectory, current + suffix));
+                }
+
+                if (DiagramFormat.PNG_SUFFIX.equals(suffix)) {
+                    splitImages(batchFiles.get(i), imageFiles);
+                } else {
+                    final List<String> images = splitMarkup(FileUtil.readFile(batchFiles.get(i)),
+                            DiagramFormat.SVG.getMarkupEndTag(),
+                            imageFiles.size());
+                    for (int j = 0; j < imageFiles.size(); j++) {
+                        FileUtil.writeFile(imageFiles.get(j), images.get(j));
+                    }
+                }
+            }
+            return splitMarkup(markup, format.getMarkupEndTag(), diagrams.size());
+        } finally {
+            for (File current : batchFiles) {
+                current.delete();
+            }
+        }
+    }
+    /**
+     * Splits a file holding concatenated PNG images into one file per image.
+     *
+     * @param batchFile The file holding the concatenated PNG images.
+     * @param pngFiles  The files to write, one per image within the batch file.
+     * @throws IOException if the batch file could not be read, or did not hold exactly one PNG image per file.
+     */
+    static void splitImages(final File batchFile, final List<File> pngFiles) throws IOException {
+
+        final byte[] buffer = new byte[8192];
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(batchFile)))) {
+            for (File current : pngFiles) {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(current)))) {
+
+                    final long signature = in.readLong();
+                    if (signature != PNG_SIGNATURE) {
+                        throw new IOException("Graphviz output is not a PNG image: " + current);
+                    }
+                    out.writeLong(signature);
+
+                    // Copy chunks up to, and including, the IEND chunk.
+                    int chunkType;
+                    do {
+                        final int length = in.readInt();
+                        chunkType = in.readInt();
+                        out.writeInt(length);
+                        out.writeInt(chunkType);
+
+                        // The chunk data is followed by a 4-byte CRC.
+                        for (long remaining = (length & 0xFFFFFFFFL) + 4; remaining > 0; ) {
+                            final int numRead = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                            if (numRead < 0) {
+                                throw new EOFException("Truncated Graphviz output for " + current);
+                            }
+                            out.write(buffer, 0, numRead);
+                            remaining -= numRead;
+                        }
+                    } while (chunkType != PNG_IEND_CHUNK);
+                }
+            }
+
+            if (in.read() >= 0) {
+                throw new IOException("Graphviz rendered more images than the " + pngFiles.size() + " expected.");
+            }
+        } catch (EOFException e) {
+            throw new IOException("Graphviz rendered fewer images than the " + pngFiles.size() + " expected.", e);
+        }
+    }
+
+    /**
+     * Splits concatenated HTML image maps or SVG images. Each of them ends with the line holding the
+     * supplied end tag, such as {@code </map>}.
+     *
+     * @param markup         The concatenated image maps or SVG images.
+     * @param endTag         The closing tag of each image map or SVG image.
+     * @param expectedMarkup The number of image maps or SVG images expected.
+     * @return The individual image maps or SVG images.
+     * @throws IOException if the supplied markup did not hold exactly the expected number of image maps
+     *                     or SVG images.
+     */
+    static List<String> splitMarkup(final String markup, final String endTag, final int expectedMarkup)
+            throws IOException {
+
+        final List<String> toReturn = new ArrayList<String>(expectedMarkup);
+        int start = 0;
+        for (int end = markup.indexOf(endTag); end >= 0; end = markup.indexOf(endTag, start)) {
+
+            // Include the rest of the line holding the end tag.
+            final int endOfLine = markup.indexOf('\n', end);
+            final int next = endOfLine < 0 ? markup.length() : endOfLine + 1;
+            toReturn.add(markup.substring(start, next));
+            start = next;
+        }
+
+        if (toReturn.size() != expectedMarkup || start != markup.length()) {
+            throw new IOException("Graphviz rendered " + toReturn.size() + " " + endTag + " documents instead "
+                    + "of the " + expectedMarkup + " expected.");
+        }
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static String runDot(final RootDoc root,
+            final DiagramFormat format,
+            final List<DiagramSource> diagrams,
+            final List<File> imageFiles) throws IOException {
+
+        // #1) Compile the arguments used to launch Graphviz.
+        //     The markup job has no output file, so the markup is written to the standard output.
+        final List<String> command = new ArrayList<String>();
+        command.add(Graphviz.getExecutable(root));
+        for (int i = 0; i < imageFiles.size(); i++) {
+            command.add("-T" + DiagramFormat.getGraphvizFormat(format.getImageSuffixes().get(i)));
+            command.add("-o");
+            command.add(imageFiles.get(i).getAbsolutePath());
+        }
+        command.add("-T" + format.getMarkupFormat());
+
+        final ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectError(ProcessBuilder.Redirect.INHERIT);
         File home = Graphviz.getHome(root);
         if (home != null) {
             pb.directory(home);
         }
 
-        // #3) Launch Graphviz. Harvest output.
+        // #2) Launch Graphviz. Harvest the markup on a separate thread, since Graphviz renders each
+        //     diagram of a batch as soon as it is read, and would block on a full output pipe.
         final Process p = pb.start();
-        final BufferedReader in = new BufferedReader(new InputStreamReader(p.getInputStream()));
-        final Writer out = new OutputStreamWriter(p.getOutputStream(), DOT_STANDARD_CHARSET);
-        try {
-            out.write(diagram);
-            out.close();
+        final FutureTask<byte[]> markup = new FutureTask<byte[]>(new Callable<byte[]>() {
+            public byte[] call() throws IOException {
+                final ByteArrayOutputStream toReturn = new ByteArrayOutputStream(4096);
+                final byte[] buffer = new byte[4096];
+                try (InputStream in = p.getInputStream()) {
+                    for (int numRead = in.read(buffer); numRead >= 0; numRead = in.read(buffer)) {
+                        toReturn.write(buffer, 0, numRead);
+                    }
+                }
+                return toReturn.toByteArray();
+            }
+        });
+        final Thread markupReader = new Thread(markup, "apiviz-graphviz-output");
+        markupReader.setDaemon(true);
+        markupReader.start();
 
-            String line = null;
-            while ((line = in.readLine()) != null) {
-                System.err.println(line);
+        final Writer out = new BufferedWriter(new OutputStreamWriter(p.getOutputStream(), DOT_STANDARD_CHARSET));
+        try {
+            for (DiagramSource current : diagrams) {
+                current.writeTo(out);
             }
+            out.close();
         } finally {
             try {
                 out.close();
@@ -201,12 +422,6 @@ public final class Graphviz {
                 // Shouldn't happen.
             }
 
-            try {
-                in.close();
-            } catch (IOException e) {
-                // Shouldn't happen.
-            }
-
             for (; ; ) {
                 try {
                     int result = p.waitFor();
@@ -219,11 +434,18 @@ public final class Graphviz {
                 }
             }
         }
-    }
 
-    //
-    // Private helpers
-    //
+        // #3) The standard output is closed once Graphviz has exited.
+        for (; ; ) {
+            try {
+                return new String(markup.get(), FileUtil.DEFAULT_CHARSET);
+            } catch (ExecutionException e) {
+                throw new IOException("Could not read the markup rendered by Graphviz", e.getCause());
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+    }
 
     private static String getExecutable(final RootDoc root) {
 
@@ -243,7 +465,7 @@ public final class Graphviz {
         return command;
     }
 
-    private static File getHome(final RootDoc root) {
+    private static synchronized File getHome(final RootDoc root) {
 
         // Already done?
         if (homeDetermined) {
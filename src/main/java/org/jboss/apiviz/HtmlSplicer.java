@@ -0,0 +1,233 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * <p>Inserts content into an HTML page generated by the standard doclet, without decoding the page.</p>
+ * <p>The insertion point is the first match of the regular expression</p>
+ * <pre>
+ *     <code>((&lt;/PRE&gt;)(?=\s*(&lt;P&gt;|&lt;div[^&gt;]*block))|(?=&lt;TABLE BORDER="1")|(&lt;div[^&gt;]*contentContainer[^&gt;]*&gt;))</code>
+ * </pre>
+ * <p>matched case-insensitively, i.e. just after the class signature of older doclets, before the first
+ * table of package summaries, or just after the opening content container tag of newer doclets. The page is
+ * scanned through a fixed-size window of bytes only up to the insertion point; all pattern characters are
+ * ASCII, so the bytes need not be decoded. The head and tail of the page are then copied around the inserted
+ * content using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, so the
+ * memory used does not depend on the size of the page.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class HtmlSplicer {
+
+    /**
+     * The size of the window through which pages are scanned, in bytes.
+     */
+    static final int WINDOW_SIZE = 8192;
+
+    // Internal state
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer window;
+    private long windowStart;
+    private int windowLength;
+
+    private HtmlSplicer(final FileChannel channel, final int windowSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = ByteBuffer.allocate(windowSize);
+    }
+
+    /**
+     * Inserts the supplied content into the supplied HTML file. The file is replaced once the content was
+     * inserted, so a failure never leaves a partially written page behind.
+     *
+     * @param htmlFile The HTML file.
+     * @param content  The bytes to insert.
+     * @throws IOException           if the HTML file could not be read or written.
+     * @throws IllegalStateException if the HTML file held no insertion point.
+     */
+    static void splice(final File htmlFile, final byte[] content) throws IOException {
+
+        final File tempFile = new File(htmlFile.getPath() + ".tmp");
+        try {
+            try (FileChannel in = FileChannel.open(htmlFile.toPath(), StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(tempFile.toPath(), StandardOpenOption.CREATE,
+                         StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+                final long insertionPoint = findInsertionPoint(in, WINDOW_SIZE);
+                if (insertionPoint < 0) {
+                    throw new IllegalStateException("Failed to find an insertion point: " + htmlFile);
+                }
+
+                transferFully(in, 0, insertionPoint, out);
+                final ByteBuffer buffer = ByteBuffer.wrap(content);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                transferFully(in, insertionPoint, in.size() - insertionPoint, out);
+            }
+
+            try {
+                Files.move(tempFile.toPath(), htmlFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), htmlFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+    }
+
+    /**
+     * Finds the insertion point within the supplied page.
+     *
+     * @param channel    The FileChannel of the page.
+     * @param windowSize The size of the window through which the page is scanned, in bytes.
+     * @return The position at which content should be inserted, or {@code -1} if the page held no insertion point.
+     * @throws IOException if the page could not be read.
+     */
+    static long findInsertionPoint(final FileChannel channel, final int windowSize) throws IOException {
+
+        final HtmlSplicer splicer = new HtmlSplicer(channel, windowSize);
+        for (long position = 0; position < splicer.size; position++) {
+            if (splicer.byteAt(position) == '<') {
+                final long toReturn = splicer.matchAt(position);
+                if (toReturn >= 0) {
+                    return toReturn;
+                }
+            }
+        }
+
+        // Nopes.
+        return -1;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private long matchAt(final long position) throws IOException {
+
+        // (</PRE>)(?=\s*(<P>|<div[^>]*block))
+        if (matches(position, "</pre>")) {
+            long next = position + 6;
+            while (isWhitespace(byteAt(next))) {
+                next++;
+            }
+            if (matches(next, "<p>") || (matches(next, "<div") && findWithinTag(next + 4, "block") >= 0)) {
+                return position + 6;
+            }
+        }
+
+        // (?=<TABLE BORDER="1")
+        if (matches(position, "<table border=\"1\"")) {
+            return position;
+        }
+
+        // (<div[^>]*contentContainer[^>]*>)
+        if (matches(position, "<div")) {
+            final long found = findWithinTag(position + 4, "contentcontainer");
+            if (found >= 0) {
+                final long tagEnd = findWithinTag(found, ">");
+                if (tagEnd >= 0 && byteAt(tagEnd) == '>') {
+                    return tagEnd + 1;
+                }
+            }
+        }
+
+        // Nopes.
+        return -1;
+    }
+
+    /**
+     * Finds the supplied lowercase text, at or after the supplied position but before the end of the current
+     * tag (i.e. the next '&gt;'). Finds '&gt;' itself if so requested.
+     */
+    private long findWithinTag(final long from, final String text) throws IOException {
+        for (long position = from; position < size; position++) {
+            if (matches(position, text)) {
+                return position;
+            }
+            if (byteAt(position) == '>') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(final long position, final String lowerCaseText) throws IOException {
+        for (int i = 0; i < lowerCaseText.length(); i++) {
+            int current = byteAt(position + i);
+            if (current >= 'A' && current <= 'Z') {
+                current += 'a' - 'A';
+            }
+            if (current != lowerCaseText.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(final int value) {
+        return value == ' ' || value == '\t' || value == '\n' || value == 0x0B || value == '\f' || value == '\r';
+    }
+
+    private int byteAt(final long position) throws IOException {
+
+        if (position < 0 || position >= size) {
+            return -1;
+        }
+
+        if (position < windowStart || position >= windowStart + windowLength) {
+
+            // Move the window to start at the requested position.
+            window.clear();
+            while (window.hasRemaining() && channel.read(window, position + window.position()) >= 0) {
+                // Keep reading until the window is full or the end of the page is reached.
+            }
+            windowStart = position;
+            windowLength = window.position();
+        }
+
+        return window.get((int) (position - windowStart)) & 0xFF;
+    }
+
+    private static void transferFully(final FileChannel source,
+            final long position,
+            final long count,
+            final FileChannel target) throws IOException {
+
+        long transferred = 0;
+        while (transferred < count) {
+            transferred += source.transferTo(position + transferred, count - transferred, target);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.jboss.apiviz.FileUtil.NEWLINE;
+
+/**
+ * <p>Chooses the Graphviz layout attributes of each diagram from the size of the subgraph it shows.</p>
+ * <p>The crossing minimization and network simplex settings which give small diagrams their tidy layout
+ * cost next to nothing on a handful of nodes, but may keep dot busy for minutes on a package summary of
+ * several hundred nodes. Diagrams are therefore sorted into size {@link Tier}s, each trading layout quality
+ * for speed a bit further. A single tier may be forced for all diagrams using the {@code -diagramlayout}
+ * option. The tier of each diagram is recorded as a comment within its DOT source, and counted.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class LayoutPolicy {
+
+    /**
+     * Layout tiers, ordered by increasing diagram size.
+     */
+    public enum Tier {
+
+        /**
+         * Diagrams of at most 40 nodes and 80 edges, laid out with exhaustive crossing minimization.
+         */
+        SMALL(40, 80),
+
+        /**
+         * Diagrams of at most 150 nodes and 400 edges, laid out with bounded crossing minimization.
+         */
+        MEDIUM(150, 400),
+
+        /**
+         * All larger diagrams, laid out with minimal crossing minimization and straight edges.
+         */
+        LARGE(Integer.MAX_VALUE, Integer.MAX_VALUE);
+
+        // Internal state
+        private final int maxNodes;
+        private final int maxEdges;
+
+        Tier(final int maxNodes, final int maxEdges) {
+            this.maxNodes = maxNodes;
+            this.maxEdges = maxEdges;
+        }
+
+        /**
+         * @return The lowercase name of this Tier, as given to the {@code -diagramlayout} option.
+         */
+        public String getName() {
+            return name().toLowerCase();
+        }
+
+        /**
+         * Retrieves the smallest Tier fitting a diagram of the supplied size.
+         *
+         * @param numNodes The number of nodes within the diagram.
+         * @param numEdges The number of edges within the diagram.
+         * @return The smallest Tier whose limits are not exceeded by the supplied diagram size.
+         */
+        public static Tier of(final int numNodes, final int numEdges) {
+
+            for (Tier current : values()) {
+                if (numNodes <= current.maxNodes && numEdges <= current.maxEdges) {
+                    return current;
+                }
+            }
+
+            // All Done.
+            return LARGE;
+        }
+
+        /**
+         * Retrieves the Tier with the supplied name.
+         *
+         * @param name The name of a Tier. Case insensitive.
+         * @return The Tier with the supplied name, or {@code null} if no Tier matched.
+         */
+        public static Tier parse(final String name) {
+
+            if (name != null) {
+                for (Tier current : values()) {
+                    if (current.name().equalsIgnoreCase(name.trim())) {
+                        return current;
+                    }
+                }
+            }
+
+            // Nopes.
+            return null;
+        }
+    }
+
+    /**
+     * The argument of the {@code -diagramlayout} option choosing the tier of each diagram from its size.
+     */
+    public static final String AUTOMATIC = "auto";
+
+    // Internal state
+    private final Tier forcedTier;
+    private final AtomicLongArray usage = new AtomicLongArray(Tier.values().length);
+
+    /**
+     * Creates a new LayoutPolicy.
+     *
+     * @param forcedTier The Tier used for all diagrams, or {@code null} to choose the tier of each diagram
+     *                   from its size.
+     */
+    public LayoutPolicy(final Tier forcedTier) {
+        this.forcedTier = forcedTier;
+    }
+
+    /**
+     * Chooses the Tier of a diagram, and counts its use.
+     *
+     * @param numNodes The number of nodes within the diagram.
+     * @param numEdges The number of edges within the diagram.
+     * @return The Tier of the diagram.
+     */
+    public Tier choose(final int numNodes, final int numEdges) {
+
+        final Tier toReturn = forcedTier != null ? forcedTier : Tier.of(numNodes, numEdges);
+        usage.incrementAndGet(toReturn.ordinal());
+        return toReturn;
+    }
+
+    /**
+     * Writes the graph attributes controlling the cost of laying out a diagram in the supplied Tier,
+     * preceded by a comment recording the tier.
+     *
+     * @param out      The Writer receiving the DOT source of the diagram.
+     * @param tier     The Tier of the diagram, as chosen by {@link #choose(int, int)}.
+     * @param mclimit  The crossing minimization limit of small diagrams of this kind.
+     * @param numNodes The number of nodes within the diagram.
+     * @param numEdges The number of edges within the diagram.
+     * @throws IOException if the attributes could not be written.
+     */
+    public static void writeAttributes(final Writer out,
+            final Tier tier,
+            final int mclimit,
+            final int numNodes,
+            final int numEdges) throws IOException {
+
+        out.write("/* APIviz layout tier: " + tier.getName() + " (" + numNodes + " nodes, "
+                + numEdges + " edges) */" + NEWLINE);
+
+        switch (tier) {
+            case SMALL:
+                out.write("mclimit=" + mclimit + ";" + NEWLINE
+                        + "remincross=true;" + NEWLINE
+                        + "searchsize=65536;" + NEWLINE
+                        + "splines=polyline;" + NEWLINE);
+                break;
+
+            case MEDIUM:
+                out.write("mclimit=" + Math.max(1, mclimit / 64) + ";" + NEWLINE
+                        + "searchsize=1024;" + NEWLINE
+                        + "splines=polyline;" + NEWLINE);
+                break;
+
+            default:
+                out.write("mclimit=1;" + NEWLINE
+                        + "nslimit=4;" + NEWLINE
+                        + "nslimit1=4;" + NEWLINE
+                        + "splines=line;" + NEWLINE);
+                break;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+
+        final StringBuilder builder = new StringBuilder("Diagram layout tiers:");
+        for (Tier current : Tier.values()) {
+            builder.append(' ').append(usage.get(current.ordinal())).append(' ').append(current.getName());
+            builder.append(current.ordinal() < Tier.values().length - 1 ? "," : "");
+        }
+        return builder.toString() + (forcedTier == null ? "" : " (forced)");
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+
+/**
+ * <p>Read-only summary of everything the diagrams show of a single node of a {@link ClassDocGraph}: its
+ * stereotype, its natural sort rank, its labels and the path of its documentation page.</p>
+ * <p>The NodeDescriptor is computed once per node, when the graph is built, implying that sorting and rendering
+ * a node which appears within many diagrams never needs to query its ClassDoc again.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class NodeDescriptor {
+
+    // Internal state
+    private final String name;
+    private final String stereotype;
+    private final int sortRank;
+    private final boolean staticType;
+    private final boolean abstractClass;
+    private final String label;
+    private final String qualifiedLabel;
+    private final String tooltip;
+    private final String qualifiedTooltip;
+    private final String[] pagePath;
+
+    /**
+     * Creates a new NodeDescriptor for the supplied class.
+     *
+     * @param node       The non-null ClassDoc to describe.
+     * @param descriptor The DocDescriptor of the supplied class.
+     */
+    NodeDescriptor(final ClassDoc node, final DocDescriptor descriptor) {
+
+        final PackageDoc pkg = node.containingPackage();
+
+        // Assign internal state
+        this.name = node.name();
+        this.staticType = isStaticType(node);
+        this.abstractClass = node.isAbstract() && !node.isInterface();
+        this.sortRank = getNaturalSortOrder(node, staticType);
+        this.stereotype = getStereotype(node, descriptor, staticType);
+
+        final StringBuilder labelBuilder = new StringBuilder(64);
+        if (stereotype != null) {
+            //TODO - we should have an option to use "<<" and ">>" for systems
+            // where the encoding is messed up
+            labelBuilder.append("&#171;");
+            labelBuilder.append(stereotype);
+            labelBuilder.append("&#187;\\n");
+        }
+        labelBuilder.append(name);
+        this.label = labelBuilder.toString();
+        this.qualifiedLabel = pkg == null ? label : label + "\\n(" + pkg.name() + ')';
+        this.tooltip = ClassDocGraph.escape(label);
+        this.qualifiedTooltip = ClassDocGraph.escape(qualifiedLabel);
+
+        // Only classes which are documented have a page to link to.
+        if (node.isIncluded() && pkg != null) {
+            final String[] packagePath = splitPackageName(pkg.name());
+            pagePath = new String[packagePath.length + 1];
+            System.arraycopy(packagePath, 0, pagePath, 0, packagePath.length);
+            pagePath[packagePath.length] = name + ".html";
+        } else {
+            pagePath = null;
+        }
+    }
+
+    /**
+     * @return The simple name of the class, such as {@code Outer.Inner}.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return The escaped stereotype shown above the name of the class, or {@code null} if it has none.
+     */
+    String getStereotype() {
+        return stereotype;
+    }
+
+    /**
+     * Retrieves the natural sort rank of the class, which orders classes as follows:
+     *
+     * <ol>
+     *     <li>Annotations</li>
+     *     <li>Enums</li>
+     *     <li>Static Classes</li>
+     *     <li>Interfaces</li>
+     *     <li>Abstract types</li>
+     *     <li>All other types</li>
+     *     <li>Errors / Exceptions</li>
+     * </ol>
+     *
+     * @return The natural sort rank of the class.
+     */
+    int getSortRank() {
+        return sortRank;
+    }
+
+    /**
+     * @return {@code true} if the class declares methods, all of which are static.
+     */
+    boolean isStaticType() {
+        return staticType;
+    }
+
+    /**
+     * @return {@code true} if the class is an abstract class, rather than an interface.
+     */
+    boolean isAbstractClass() {
+        return abstractClass;
+    }
+
+    /**
+     * Retrieves the label of the class, as shown within a diagram of the supplied package.
+     *
+     * @param samePackage {@code true} if the diagram belongs to the package of the class.
+     * @return The label of the class, holding the name of its package unless in the same package.
+     */
+    String getLabel(final boolean samePackage) {
+        return samePackage ? label : qualifiedLabel;
+    }
+
+    /**
+     * Retrieves the tooltip of the class, i.e. its escaped label.
+     *
+     * @param samePackage {@code true} if the diagram belongs to the package of the class.
+     * @return The tooltip of the class.
+     */
+    String getTooltip(final boolean samePackage) {
+        return samePackage ? tooltip : qualifiedTooltip;
+    }
+
+    /**
+     * Retrieves the path of the documentation page of the class, relative to the directory of a package.
+     *
+     * @param fromPackagePath The path elements of the package, as returned by {@link #splitPackageName(String)}.
+     * @return The relative path of the documentation page, or {@code null} if the class is not documented.
+     */
+    String getHref(final String[] fromPackagePath) {
+
+        if (pagePath == null) {
+            return null;
+        }
+
+        final int maxCommonLength = Math.min(fromPackagePath.length, pagePath.length);
+        int commonLength;
+        for (commonLength = 0; commonLength < maxCommonLength; commonLength++) {
+            if (!fromPackagePath[commonLength].equals(pagePath[commonLength])) {
+                break;
+            }
+        }
+
+        final StringBuilder buf = new StringBuilder(64);
+        for (int i = 0; i < fromPackagePath.length - commonLength; i++) {
+            buf.append("/..");
+        }
+        for (int i = commonLength; i < pagePath.length; i++) {
+            buf.append('/');
+            buf.append(pagePath[i]);
+        }
+        return buf.substring(1);
+    }
+
+    /**
+     * Splits the supplied package name into the elements of its directory path.
+     *
+     * @param packageName The name of a package, such as {@code org.example}. The unnamed package is {@code ""}.
+     * @return The elements of the directory path of the package, such as {@code ["org", "example"]}.
+     */
+    static String[] splitPackageName(final String packageName) {
+
+        if (packageName.isEmpty()) {
+            return new String[]{""};
+        }
+
+        int numElements = 1;
+        for (int i = 0; i < packageName.length(); i++) {
+            if (packageName.charAt(i) == '.') {
+                numElements++;
+            }
+        }
+
+        final String[] toReturn = new String[numElements];
+        int start = 0;
+        for (int i = 0; i < numElements; i++) {
+            int end = packageName.indexOf('.', start);
+            if (end < 0) {
+                end = packageName.length();
+            }
+            toReturn[i] = packageName.substring(start, end);
+            start = end + 1;
+        }
+        return toReturn;
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static boolean isStaticType(final ClassDoc node) {
+        boolean staticType = true;
+        int methods = 0;
+        for (MethodDoc m : node.methods()) {
+            if (m.isConstructor()) {
+                continue;
+            }
+            methods++;
+            if (!m.isStatic()) {
+                staticType = false;
+                break;
+            }
+        }
+
+        return staticType && methods > 0;
+    }
+
+    private static int getNaturalSortOrder(final ClassDoc classDoc, final boolean staticType) {
+
+        if (classDoc.isAnnotationType()) {
+            return 0;
+        }
+
+        if (classDoc.isEnum()) {
+            return 1;
+        }
+
+        if (staticType) {
+            return 2;
+        }
+
+        if (classDoc.isInterface()) {
+            return 3;
+        }
+
+        if (classDoc.isAbstract()) {
+            return 4;
+        }
+
+        if (classDoc.isError() || classDoc.isException()) {
+            return 100;
+        }
+
+        return 50;
+    }
+
+    private static String getStereotype(final ClassDoc node,
+                                        final DocDescriptor descriptor,
+                                        final boolean staticType) {
+        String stereotype = node.isInterface() ? "interface" : null;
+        if (node.isException() || node.isError()) {
+            stereotype = "exception";
+        } else if (node.isAnnotationType()) {
+            stereotype = "annotation";
+        } else if (node.isEnum()) {
+            stereotype = "enum";
+        } else if (staticType) {
+            stereotype = "static";
+        }
+
+        if (descriptor.getStereotype() != null) {
+            stereotype = descriptor.getStereotype();
+        }
+
+        return ClassDocGraph.escape(stereotype);
+    }
+}
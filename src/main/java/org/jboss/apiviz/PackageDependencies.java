@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * <p>Immutable map of the dependencies between packages, as found by the {@link ClassFileScanner} within the
+ * compiled classes of the documented packages.</p>
+ * <p>A package depends upon (i.e. has an efferent coupling to) another package if any of its classes refers to
+ * a class within the other package. Only dependencies between the analyzed packages are recorded, and no package
+ * depends upon itself.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class PackageDependencies {
+
+    // Internal state
+    private final SortedMap<String, SortedSet<String>> classNames;
+    private final SortedMap<String, SortedSet<String>> efferents;
+    private final int numClasses;
+
+    /**
+     * Creates a new PackageDependencies instance.
+     *
+     * @param classNames The binary names (such as {@code org.example.Outer$Inner}) of the classes found within
+     *                   each analyzed package, keyed by package name.
+     * @param efferents  The names of the packages upon which each analyzed package depends, keyed by package name.
+     */
+    public PackageDependencies(final Map<String, ? extends Set<String>> classNames,
+            final Map<String, ? extends Set<String>> efferents) {
+
+        // Check sanity
+        if (classNames == null) {
+            throw new NullPointerException("Cannot handle null 'classNames' argument.");
+        }
+        if (efferents == null) {
+            throw new NullPointerException("Cannot handle null 'efferents' argument.");
+        }
+
+        // Assign internal state
+        this.classNames = freeze(classNames);
+        this.efferents = freeze(efferents);
+
+        int count = 0;
+        for (Set<String> current : this.classNames.values()) {
+            count += current.size();
+        }
+        this.numClasses = count;
+    }
+
+    /**
+     * @return The total number of classes found within the analyzed packages.
+     */
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    /**
+     * Checks if any classes were found within the supplied package.
+     *
+     * @param packageName The name of the package.
+     * @return {@code true} if the supplied package holds any compiled classes.
+     */
+    public boolean containsPackage(final String packageName) {
+        return classNames.containsKey(packageName);
+    }
+
+    /**
+     * Checks if the compiled class with the supplied binary name was found.
+     *
+     * @param packageName The name of the package of the class.
+     * @param binaryName  The binary name of the class, such as {@code org.example.Outer$Inner}.
+     * @return {@code true} if the compiled class was found.
+     */
+    public boolean containsClass(final String packageName, final String binaryName) {
+        final SortedSet<String> names = classNames.get(packageName);
+        return names != null && names.contains(binaryName);
+    }
+
+    /**
+     * Retrieves the packages upon which the supplied package depends.
+     *
+     * @param packageName The name of the package.
+     * @return The sorted names of the packages upon which the supplied package depends. Never null.
+     */
+    public SortedSet<String> getEfferents(final String packageName) {
+        final SortedSet<String> toReturn = efferents.get(packageName);
+        return toReturn == null ? Collections.<String>emptySortedSet() : toReturn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "PackageDependencies [" + classNames.size() + " packages, " + numClasses + " classes]";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static SortedMap<String, SortedSet<String>> freeze(final Map<String, ? extends Set<String>> map) {
+
+        final SortedMap<String, SortedSet<String>> toReturn = new TreeMap<String, SortedSet<String>>();
+        for (Map.Entry<String, ? extends Set<String>> current : map.entrySet()) {
+            toReturn.put(current.getKey(), Collections.unmodifiableSortedSet(new TreeSet<String>(current.getValue())));
+        }
+        return Collections.unmodifiableSortedMap(toReturn);
+    }
+}
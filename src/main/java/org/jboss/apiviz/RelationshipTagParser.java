@@ -0,0 +1,283 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.Tag;
+import se.jguru.javadoc.apiviz.JavaDocTag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Parses the relationship tags ({@code @apiviz.uses}, {@code @apiviz.has}, {@code @apiviz.owns} and
+ * {@code @apiviz.composedOf}) of the documented classes into {@link Edge}s.</p>
+ * <p>Each tag is tokenized once, and its target is resolved in the following order:</p>
+ * <ol>
+ *     <li>By qualified name, within an index of the documented classes which memoizes every class
+ *     (or absence thereof) looked up in the {@link RootDoc}.</li>
+ *     <li>Within the context of the tagged class, i.e. its nested classes, its package and its imports.</li>
+ *     <li>By simple name, provided that exactly one documented class bears that name.</li>
+ * </ol>
+ * <p>Targets which cannot be resolved are represented by an {@link UnresolvedClassNode}, interned per
+ * RelationshipTagParser. A RelationshipTagParser is meant to be used by a single thread while a
+ * {@link ClassDocGraph} is built.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class RelationshipTagParser {
+
+    private static final Map<String, JavaDocTag> RELATIONSHIP_TAGS = new HashMap<String, JavaDocTag>();
+    private static final Map<String, EdgeType> EDGE_TYPES = new HashMap<String, EdgeType>();
+
+    static {
+        addRelationshipTag(JavaDocTag.USES, EdgeType.DEPENDENCY);
+        addRelationshipTag(JavaDocTag.HAS, EdgeType.NAVIGABILITY);
+        addRelationshipTag(JavaDocTag.OWNS, EdgeType.AGGREGATION);
+        addRelationshipTag(JavaDocTag.COMPOSED_OF, EdgeType.COMPOSITION);
+    }
+
+    // Internal state
+    private final RootDoc root;
+    private final Map<String, ClassDoc> qualifiedNames = new HashMap<String, ClassDoc>();
+    private final Map<String, ClassDoc> simpleNames = new HashMap<String, ClassDoc>();
+    private final UnresolvedClassNode.Registry unresolvedClasses = new UnresolvedClassNode.Registry();
+
+    /**
+     * Creates a new RelationshipTagParser, indexing the classes to be documented.
+     *
+     * @param root The RootDoc holding the classes to be documented.
+     */
+    RelationshipTagParser(final RootDoc root) {
+
+        // Check sanity
+        if (root == null) {
+            throw new NullPointerException("Cannot handle null 'root' RootDoc argument.");
+        }
+
+        // Assign internal state
+        this.root = root;
+
+        final Set<String> ambiguousNames = new HashSet<String>();
+        for (ClassDoc current : root.classes()) {
+            qualifiedNames.put(current.qualifiedName(), current);
+            if (simpleNames.put(current.name(), current) != null) {
+                ambiguousNames.add(current.name());
+            }
+        }
+        simpleNames.keySet().removeAll(ambiguousNames);
+    }
+
+    /**
+     * Retrieves the type of the Edges described by the supplied tag.
+     *
+     * @param tagName The name of a javadoc tag, such as {@code @apiviz.uses}.
+     * @return The EdgeType of the supplied relationship tag, or {@code null} if the tag is no relationship tag.
+     */
+    static EdgeType getEdgeType(final String tagName) {
+        return EDGE_TYPES.get(tagName);
+    }
+
+    /**
+     * Parses the supplied relationship tag of a documented class. Should the tag be malformed, a warning
+     * stating its position and expected syntax is printed.
+     *
+     * @param source The class holding the tag.
+     * @param tag    A relationship tag, for which {@link #getEdgeType(String)} is non-null.
+     * @return The Edge described by the supplied tag, or {@code null} if the tag is malformed.
+     */
+    Edge parse(final ClassDoc source, final Tag tag) {
+
+        try {
+            return parse(getEdgeType(tag.name()), source, tag.text());
+        } catch (IllegalArgumentException e) {
+            root.printWarning(tag.position(), e.getMessage()
+                    + " - expected: " + RELATIONSHIP_TAGS.get(tag.name()).getTagUsage());
+            return null;
+        }
+    }
+
+    /**
+     * Parses the supplied relationship specification.
+     *
+     * @param type   The type of the Edge.
+     * @param source The Doc holding the relationship.
+     * @param spec   The text of the relationship tag.
+     * @return The Edge described by the supplied specification.
+     * @throws IllegalArgumentException if the specification is malformed, or if a labelled relationship
+     *                                  refers to a class which cannot be found.
+     */
+    Edge parse(final EdgeType type, final Doc source, final String spec) throws IllegalArgumentException {
+
+        final String[] tokens = tokenize(spec);
+        checkSyntax(spec, tokens);
+        return toEdge(type, source, spec, tokens, resolve(source, tokens[0]), unresolvedClasses);
+    }
+
+    /**
+     * Parses the supplied relationship specification, resolving its target by qualified name only.
+     *
+     * @param rootDoc The RootDoc used to look up the target by its qualified name.
+     * @param type    The type of the Edge.
+     * @param source  The Doc holding the relationship.
+     * @param spec    The text of the relationship tag.
+     * @return The Edge described by the supplied specification.
+     * @throws IllegalArgumentException if the specification is malformed, or if a labelled relationship
+     *                                  refers to a class which cannot be found.
+     */
+    static Edge parse(final RootDoc rootDoc, final EdgeType type, final Doc source, final String spec)
+            throws IllegalArgumentException {
+
+        final String[] tokens = tokenize(spec);
+        checkSyntax(spec, tokens);
+        return toEdge(type, source, spec, tokens, rootDoc.classNamed(tokens[0]), new UnresolvedClassNode.Registry());
+    }
+
+    /**
+     * Resolves the class referred to by a relationship tag.
+     *
+     * @param source The Doc holding the relationship tag.
+     * @param name   The qualified or simple name of the referenced class.
+     * @return The referenced class, or {@code null} if it cannot be found.
+     */
+    ClassDoc resolve(final Doc source, final String name) {
+
+        // #1) Resolve the name as a qualified name, memoizing the result.
+        ClassDoc toReturn = qualifiedNames.get(name);
+        if (toReturn == null && !qualifiedNames.containsKey(name)) {
+            toReturn = root.classNamed(name);
+            qualifiedNames.put(name, toReturn);
+        }
+
+        // #2) Resolve the name within the context of the source; i.e. its nested classes, package and imports.
+        if (toReturn == null && source instanceof ClassDoc) {
+            toReturn = ((ClassDoc) source).findClass(name);
+        }
+
+        // #3) Resolve the name as the unique simple name of a documented class.
+        if (toReturn == null) {
+            toReturn = simpleNames.get(name);
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Splits the supplied relationship specification into its whitespace-separated tokens, replacing
+     * the {@code -} placeholders of omitted labels by empty labels.
+     *
+     * @param spec The text of a relationship tag, or {@code null}.
+     * @return The tokens of the supplied specification; empty if it holds nothing but whitespace.
+     */
+    static String[] tokenize(final String spec) {
+
+        final List<String> tokens = new ArrayList<String>(4);
+        if (spec != null) {
+            int start = -1;
+            for (int i = 0; i <= spec.length(); i++) {
+                if (i == spec.length() || isWhitespace(spec.charAt(i))) {
+                    if (start >= 0) {
+                        tokens.add(spec.substring(start, i));
+                        start = -1;
+                    }
+                } else if (start < 0) {
+                    start = i;
+                }
+            }
+        }
+
+        // Only the labels may be omitted.
+        for (int i = 1; i < Math.min(4, tokens.size()); i++) {
+            if (tokens.get(i).equals("-")) {
+                tokens.set(i, "");
+            }
+        }
+
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void addRelationshipTag(final JavaDocTag tag, final EdgeType type) {
+        RELATIONSHIP_TAGS.put(tag.toString(), tag);
+        EDGE_TYPES.put(tag.toString(), type);
+    }
+
+    private static boolean isWhitespace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static void checkSyntax(final String spec, final String[] tokens) {
+        if (tokens.length != 1 && tokens.length < 3) {
+            throw new IllegalArgumentException("Invalid relationship syntax: " + spec);
+        }
+    }
+
+    private static Edge toEdge(final EdgeType type,
+                               final Doc source,
+                               final String spec,
+                               final String[] tokens,
+                               final ClassDoc target,
+                               final UnresolvedClassNode.Registry unresolvedClasses) {
+
+        if (tokens.length == 1) {
+
+            // The referenced class is not within the classpath; refer to its placeholder node instead.
+            // This happens when doing a non-aggregating javadoc in maven, since the sibling
+            // project's packages are not included.
+            return new Edge(type, source, target == null ? unresolvedClasses.forName(tokens[0]) : target,
+                    "", "", "", true);
+        }
+
+        if (target == null) {
+            throw new IllegalArgumentException("Invalid relationship syntax: " + spec
+                    + " (Unknown package or class name)");
+        }
+
+        if (tokens.length == 3) {
+            return new Edge(type, source, target, tokens[1], tokens[2], "", false);
+        }
+
+        final boolean oneway = tokens[1].equalsIgnoreCase("oneway");
+        final int startIndex = oneway ? 4 : 3;
+        final StringBuilder buf = new StringBuilder();
+        for (int i = startIndex; i < tokens.length; i++) {
+            buf.append(' ');
+            buf.append(tokens[i]);
+        }
+        final String edgeLabel = buf.length() == 0 ? "" : buf.substring(1);
+
+        return oneway
+                ? new Edge(type, source, target, tokens[2], tokens[3], edgeLabel, true)
+                : new Edge(type, source, target, tokens[1], tokens[2], edgeLabel, false);
+    }
+}
@@ -0,0 +1,417 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Persistent, content-addressed cache of rendered diagrams.</p>
+ * <p>Each entry is keyed by a hash of the diagram (i.e. digraph) source, the Graphviz version and the
+ * output formats, and holds the image files (such as the PNG image) and the markup (such as the HTML image
+ * map) which Graphviz rendered from that source.
+ * The total size of the cache is capped; the least recently used entries are evicted first. Entries
+ * are written atomically, so the cache can be shared by concurrently rendering threads.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class RenderCache {
+
+    /**
+     * The default maximum size of a RenderCache, in megabytes.
+     */
+    public static final int DEFAULT_MAX_SIZE_MB = 256;
+
+    /**
+     * The algorithm used to calculate cache keys.
+     */
+    public static final String KEY_ALGORITHM = "SHA-256";
+
+    private static final String KEY_VERSION = "apiviz-render-cache-1";
+    private static final String MARKUP_SUFFIX = ".map";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final Charset KEY_CHARSET = Charset.forName(Graphviz.DOT_STANDARD_CHARSET);
+    private static final OutputStream DISCARDING_STREAM = new OutputStream() {
+
+        @Override
+        public void write(final int b) {
+            // Only the digest is of interest.
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            // Only the digest is of interest.
+        }
+    };
+
+    // Internal state
+    private final File directory;
+    private final long maxSize;
+    private final String keyPrefix;
+    private final Map<String, Long> entrySizes = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentSize;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Opens (or creates) a RenderCache within the supplied directory.
+     *
+     * @param directory       The directory holding the cached diagrams. Created if it does not exist.
+     * @param maxSize         The maximum total size of all cached diagrams, in bytes.
+     * @param graphvizVersion The version of the Graphviz installation rendering the diagrams.
+     * @param outputFormats   A description of the output formats rendered by Graphviz.
+     * @throws IOException if the cache directory could not be created.
+     */
+    public RenderCache(final File directory,
+            final long maxSize,
+            final String graphvizVersion,
+            final String outputFormats) throws IOException {
+
+        // Check sanity
+        if (directory == null) {
+            throw new NullPointerException("Cannot handle null 'directory' argument.");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cannot handle non-positive 'maxSize' argument. (Got: "
+                    + maxSize + ")");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the diagram cache directory: " + directory);
+        }
+
+        // Assign internal state
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.keyPrefix = KEY_VERSION + '\n' + graphvizVersion + '\n' + outputFormats + '\n';
+
+        // Load the existing entries, least recently used first.
+        loadEntries();
+    }
+
+    /**
+     * Calculates the cache key for the supplied diagram source.
+     *
+     * @param diagram The diagram (i.e. digraph) source fed to Graphviz.
+     * @return The cache key of the supplied diagram.
+     */
+    public String getKey(final String diagram) {
+
+        final MessageDigest digest = newKeyDigest();
+        digest.update(keyPrefix.getBytes(KEY_CHARSET));
+        digest.update(diagram.getBytes(KEY_CHARSET));
+        return FileUtil.toHex(digest.digest());
+    }
+
+    /**
+     * Calculates the cache key for the supplied diagram, streaming its DOT source into the key digest
+     * instead of materializing it. Yields the same key as {@link #getKey(String)} for the written source.
+     *
+     * @param diagram The diagram fed to Graphviz.
+     * @return The cache key of the supplied diagram.
+     * @throws IOException if the diagram could not be written.
+     */
+    public String getKey(final DiagramSource diagram) throws IOException {
+
+        final MessageDigest digest = newKeyDigest();
+        final Writer out = new BufferedWriter(new OutputStreamWriter(
+                new DigestOutputStream(DISCARDING_STREAM, digest), KEY_CHARSET));
+        out.write(keyPrefix);
+        diagram.writeTo(out);
+        out.close();
+
+        return FileUtil.toHex(digest.digest());
+    }
+
+    /**
+     * Copies the cached images for the supplied key to the given files, and reads the cached markup.
+     *
+     * @param key        The cache key, as calculated by {@link #getKey(DiagramSource)}.
+     * @param imageFiles The image files to write. The cached image of each file is identified by its suffix.
+     * @return The cached markup, or {@code null} if the cache held no entry for the supplied key.
+     */
+    public String restore(final String key, final List<File> imageFiles) {
+
+        synchronized (this) {
+            if (entrySizes.get(key) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+
+        final File cachedMarkupFile = getEntryFile(key, MARKUP_SUFFIX);
+        final String toReturn;
+        try {
+            toReturn = FileUtil.readFile(cachedMarkupFile);
+            for (File current : imageFiles) {
+                Files.copy(getEntryFile(key, getSuffix(current)).toPath(), current.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            cachedMarkupFile.setLastModified(System.currentTimeMillis());
+        } catch (IOException e) {
+
+            // The entry was evicted or damaged. Treat it as a miss.
+            synchronized (this) {
+                removeEntry(key);
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        return toReturn;
+    }
+
+    /**
+     * Stores the supplied images and markup within this RenderCache, evicting the least recently
+     * used entries if the maximum cache size is exceeded.
+     *
+     * @param key        The cache key, as calculated by {@link #getKey(DiagramSource)}.
+     * @param imageFiles The rendered image files, such as the PNG file.
+     * @param markup     The rendered markup, such as the HTML image map.
+     * @throws IOException if the entry could not be written.
+     */
+    public void store(final String key, final List<File> imageFiles, final String markup) throws IOException {
+
+        final File entryDirectory = getEntryFile(key, MARKUP_SUFFIX).getParentFile();
+        if (!entryDirectory.isDirectory() && !entryDirectory.mkdirs()) {
+            throw new IOException("Could not create the diagram cache directory: " + entryDirectory);
+        }
+
+        // Write the images before the markup; an entry is only considered complete when its markup exists.
+        long size = 0;
+        for (File current : imageFiles) {
+            copyAtomically(current, getEntryFile(key, getSuffix(current)));
+            size += current.length();
+        }
+        final byte[] markupBytes = markup.getBytes(FileUtil.DEFAULT_CHARSET);
+        writeAtomically(markupBytes, getEntryFile(key, MARKUP_SUFFIX));
+        size += markupBytes.length;
+
+        synchronized (this) {
+            final Long previousSize = entrySizes.put(key, size);
+            currentSize += entrySizes.get(key) - (previousSize == null ? 0 : previousSize);
+
+            // Evict the least recently used entries, but never the one just stored.
+            final Iterator<Map.Entry<String, Long>> it = entrySizes.entrySet().iterator();
+            while (currentSize > maxSize && entrySizes.size() > 1 && it.hasNext()) {
+                final Map.Entry<String, Long> eldest = it.next();
+                it.remove();
+                currentSize -= eldest.getValue();
+                deleteEntryFiles(eldest.getKey());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return The number of diagrams restored from this RenderCache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of diagrams which were not found within this RenderCache.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of entries evicted from this RenderCache to respect its maximum size.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "RenderCache [" + directory + "]: " + getHits() + " hits, " + getMisses() + " misses, "
+                + getEvictions() + " evictions";
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static MessageDigest newKeyDigest() {
+        try {
+            return MessageDigest.getInstance(KEY_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Required digest algorithm " + KEY_ALGORITHM + " is not available.", e);
+        }
+    }
+
+    private void loadEntries() {
+
+        final List<File> markupFiles = new ArrayList<>();
+        final List<File> imageFiles = new ArrayList<>();
+        final Map<String, Long> sizes = new HashMap<>();
+        final File[] entryDirectories = directory.listFiles();
+        if (entryDirectories != null) {
+            for (File current : entryDirectories) {
+                final File[] files = current.isDirectory() ? current.listFiles() : null;
+                if (files == null) {
+                    continue;
+                }
+
+                for (File file : files) {
+                    final String name = file.getName();
+                    if (name.endsWith(TEMP_SUFFIX) || name.indexOf('.') < 0) {
+                        continue;
+                    }
+
+                    final String key = getEntryKey(file);
+                    final Long size = sizes.get(key);
+                    sizes.put(key, file.length() + (size == null ? 0 : size));
+                    if (name.endsWith(MARKUP_SUFFIX)) {
+                        markupFiles.add(file);
+                    } else {
+                        imageFiles.add(file);
+                    }
+                }
+            }
+        }
+
+        // Images without markup were left behind by an interrupted store(), and would never be evicted.
+        final Set<String> completeKeys = new HashSet<>();
+        for (File current : markupFiles) {
+            completeKeys.add(getEntryKey(current));
+        }
+        for (File current : imageFiles) {
+            if (!completeKeys.contains(getEntryKey(current))) {
+                current.delete();
+            }
+        }
+
+        // Least recently used first.
+        Collections.sort(markupFiles, new Comparator<File>() {
+            public int compare(final File left, final File right) {
+                return Long.compare(left.lastModified(), right.lastModified());
+            }
+        });
+
+        for (File current : markupFiles) {
+            final String key = getEntryKey(current);
+            final long size = sizes.get(key);
+            entrySizes.put(key, size);
+            currentSize += size;
+        }
+    }
+
+    private static String getEntryKey(final File entryFile) {
+        return entryFile.getName().substring(0, entryFile.getName().indexOf('.'));
+    }
+
+    private File getEntryFile(final String key, final String suffix) {
+
+        // Shard the entries into subdirectories, to keep directory listings short.
+        return new File(new File(directory, key.substring(0, 2)), key + suffix);
+    }
+
+    private void removeEntry(final String key) {
+        final Long size = entrySizes.remove(key);
+        if (size != null) {
+            currentSize -= size;
+            deleteEntryFiles(key);
+        }
+    }
+
+    private void deleteEntryFiles(final String key) {
+
+        // Delete the markup first, so that the entry is no longer considered complete.
+        final File markupFile = getEntryFile(key, MARKUP_SUFFIX);
+        markupFile.delete();
+
+        final File[] files = markupFile.getParentFile().listFiles();
+        if (files != null) {
+            for (File current : files) {
+                if (current.getName().startsWith(key + ".") && !current.getName().endsWith(TEMP_SUFFIX)) {
+                    current.delete();
+                }
+            }
+        }
+    }
+
+    private static String getSuffix(final File file) {
+        final String name = file.getName();
+        return name.substring(name.lastIndexOf('.'));
+    }
+
+    private static void copyAtomically(final File source, final File target) throws IOException {
+
+        final Path tempFile = Files.createTempFile(target.getParentFile().toPath(), target.getName(), TEMP_SUFFIX);
+        try {
+            Files.copy(source.toPath(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+            moveAtomically(tempFile, target);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void writeAtomically(final byte[] content, final File target) throws IOException {
+
+        final Path tempFile = Files.createTempFile(target.getParentFile().toPath(), target.getName(), TEMP_SUFFIX);
+        try {
+            Files.write(tempFile, content);
+            moveAtomically(tempFile, target);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void moveAtomically(final Path source, final File target) throws IOException {
+        try {
+            Files.move(source, target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
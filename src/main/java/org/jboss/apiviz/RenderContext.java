@@ -0,0 +1,224 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import se.jguru.javadoc.apiviz.model.DocletModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * <p>Holder of the state shared by all diagrams rendered within a single doclet run.</p>
+ * <p>As diagrams are rendered while the standard doclet writes the HTML pages, the diagrams are injected into
+ * their pages only once all pages are written. Injections requested before then are deferred, and submitted
+ * to the {@link DiagramRenderQueue} by {@link #pagesWritten()}.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public final class RenderContext {
+
+    // Internal state
+    private final DocletModel model;
+    private final DiagramRenderQueue renderQueue;
+    private final RenderCache renderCache;
+    private final GraphSnapshot previousSnapshot;
+    private final GraphSnapshot snapshot;
+    private int numReusedDiagrams;
+    private DiagramBatch pendingBatch;
+    private boolean pagesWritten;
+    private final List<DeferredInjection> deferredInjections = new ArrayList<>();
+
+    /**
+     * Creates a new RenderContext.
+     *
+     * @param model            The non-null DocletModel of the current run.
+     * @param renderQueue      The non-null DiagramRenderQueue rendering the diagrams.
+     * @param renderCache      The RenderCache holding previously rendered diagrams, or {@code null}
+     *                         if diagrams should not be cached.
+     * @param previousSnapshot The GraphSnapshot of the previous run, or {@code null} if the current
+     *                         run is not incremental.
+     * @param snapshot         The GraphSnapshot recording the current run, or {@code null} if the current
+     *                         run is not incremental.
+     */
+    public RenderContext(final DocletModel model,
+            final DiagramRenderQueue renderQueue,
+            final RenderCache renderCache,
+            final GraphSnapshot previousSnapshot,
+            final GraphSnapshot snapshot) {
+
+        // Check sanity
+        if (model == null) {
+            throw new NullPointerException("Cannot handle null 'model' argument.");
+        }
+        if (renderQueue == null) {
+            throw new NullPointerException("Cannot handle null 'renderQueue' argument.");
+        }
+
+        // Assign internal state
+        this.model = model;
+        this.renderQueue = renderQueue;
+        this.renderCache = renderCache;
+        this.previousSnapshot = previousSnapshot;
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return The DocletModel of the current run.
+     */
+    public DocletModel getModel() {
+        return model;
+    }
+
+    /**
+     * @return The DiagramRenderQueue rendering the diagrams.
+     */
+    public DiagramRenderQueue getRenderQueue() {
+        return renderQueue;
+    }
+
+    /**
+     * @return The RenderCache holding previously rendered diagrams, or {@code null}.
+     */
+    public RenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * @return The GraphSnapshot of the previous run, or {@code null} if the current run is not incremental.
+     */
+    public GraphSnapshot getPreviousSnapshot() {
+        return previousSnapshot;
+    }
+
+    /**
+     * @return The GraphSnapshot recording the current run, or {@code null} if the current run
+     * is not incremental.
+     */
+    public GraphSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Records that a diagram was reused from the previous run, instead of being rendered again.
+     */
+    public void diagramReused() {
+        numReusedDiagrams++;
+    }
+
+    /**
+     * @return The number of diagrams reused from the previous run.
+     */
+    public int getNumReusedDiagrams() {
+        return numReusedDiagrams;
+    }
+
+    /**
+     * @return The DiagramBatch collecting diagrams which are not yet submitted for rendering, or {@code null}.
+     */
+    public DiagramBatch getPendingBatch() {
+        return pendingBatch;
+    }
+
+    /**
+     * Assigns the DiagramBatch collecting diagrams which are not yet submitted for rendering.
+     *
+     * @param pendingBatch The pending DiagramBatch, or {@code null} once it was submitted.
+     */
+    public void setPendingBatch(final DiagramBatch pendingBatch) {
+        this.pendingBatch = pendingBatch;
+    }
+
+    /**
+     * Injects a rendered diagram into its HTML page once the page is written. Invoked by the rendering threads,
+     * which complete the injection immediately if all pages are already written.
+     *
+     * @param description A description of the page, used when reporting an injection failure.
+     * @param markup      The markup of the rendered diagram.
+     * @param injection   The Completion injecting the markup into the HTML page.
+     * @throws IOException if the injection was completed immediately, and failed.
+     */
+    public void afterPagesWritten(final String description,
+            final String markup,
+            final DiagramBatch.Completion injection) throws IOException {
+
+        synchronized (deferredInjections) {
+            if (!pagesWritten) {
+                deferredInjections.add(new DeferredInjection(description, markup, injection));
+                return;
+            }
+        }
+
+        injection.complete(markup);
+    }
+
+    /**
+     * Records that the standard doclet wrote all HTML pages, and submits the injections deferred until then.
+     * Must be invoked by the thread submitting diagrams to the {@link DiagramRenderQueue}, once all diagrams
+     * are submitted.
+     *
+     * @throws InterruptedException if the calling thread was interrupted while waiting for a free queue slot.
+     */
+    public void pagesWritten() throws InterruptedException {
+
+        final List<DeferredInjection> toSubmit;
+        synchronized (deferredInjections) {
+            pagesWritten = true;
+            toSubmit = new ArrayList<>(deferredInjections);
+            deferredInjections.clear();
+        }
+
+        for (final DeferredInjection current : toSubmit) {
+            renderQueue.submit(current.description, new Callable<Void>() {
+                public Void call() throws Exception {
+                    current.injection.complete(current.markup);
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * @return {@code true} if only changed diagrams should be rendered within the current run.
+     */
+    public boolean isIncremental() {
+        return snapshot != null;
+    }
+
+    /**
+     * Holder of an injection deferred until all HTML pages are written.
+     */
+    private static final class DeferredInjection {
+
+        private final String description;
+        private final String markup;
+        private final DiagramBatch.Completion injection;
+
+        DeferredInjection(final String description, final String markup, final DiagramBatch.Completion injection) {
+            this.description = description;
+            this.markup = markup;
+            this.injection = injection;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Strips the metadata which Graphviz embeds within the images it renders, such as its version and the time
+ * of rendering, so that identical diagrams always yield byte-identical images.</p>
+ * <p>PNG images lose their textual and time chunks ({@code tEXt}, {@code zTXt}, {@code iTXt} and {@code tIME}),
+ * which are ancillary and hence ignored by all viewers. SVG images lose the comment naming the Graphviz version
+ * which generated them.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class ReproducibleOutput {
+
+    private static final long PNG_SIGNATURE = 0x89504E470D0A1A0AL;
+    private static final int[] PNG_METADATA_CHUNKS = {
+            0x74455874, // tEXt
+            0x7A545874, // zTXt
+            0x69545874, // iTXt
+            0x74494D45  // tIME
+    };
+    private static final Pattern SVG_GENERATOR_COMMENT = Pattern.compile(
+            "^<!-- Generated by graphviz.*?-->\\r?\\n", Pattern.MULTILINE | Pattern.DOTALL);
+
+    /*
+     * Hide constructor for utility classes.
+     */
+    private ReproducibleOutput() {
+        // Unused
+    }
+
+    /**
+     * Strips the metadata from the supplied image files and markup of a rendered diagram.
+     *
+     * @param imageFiles The image files of the diagram, such as its PNG image.
+     * @param markup     The markup of the diagram, i.e. its HTML image map or SVG image.
+     * @return The markup of the diagram, without metadata.
+     * @throws IOException if an image file could not be read or written.
+     */
+    static String strip(final List<File> imageFiles, final String markup) throws IOException {
+
+        for (File current : imageFiles) {
+            if (current.getName().endsWith(DiagramFormat.PNG_SUFFIX)) {
+                final byte[] png = Files.readAllBytes(current.toPath());
+                final byte[] stripped = stripPng(png);
+                if (stripped.length != png.length) {
+                    Files.write(current.toPath(), stripped);
+                }
+            } else if (current.getName().endsWith(DiagramFormat.SVG_SUFFIX)) {
+                final String svg = FileUtil.readFile(current);
+                final String stripped = stripSvg(svg);
+                if (stripped.length() != svg.length()) {
+                    FileUtil.writeFile(current, stripped);
+                }
+            }
+        }
+
+        // All Done.
+        return stripSvg(markup);
+    }
+
+    /**
+     * Removes all textual and time chunks from the supplied PNG image.
+     *
+     * @param png The PNG image.
+     * @return The PNG image without metadata chunks, or the supplied array if it held none.
+     * @throws IOException if the supplied bytes were not a well-formed PNG image.
+     */
+    static byte[] stripPng(final byte[] png) throws IOException {
+
+        final ByteBuffer in = ByteBuffer.wrap(png);
+        if (png.length < 8 || in.getLong() != PNG_SIGNATURE) {
+            throw new IOException("Graphviz output is not a PNG image.");
+        }
+
+        final ByteArrayOutputStream toReturn = new ByteArrayOutputStream(png.length);
+        toReturn.write(png, 0, 8);
+        boolean stripped = false;
+        while (in.hasRemaining()) {
+
+            // Each chunk holds its length, type, data and a 4-byte CRC.
+            if (in.remaining() < 12) {
+                throw new IOException("Truncated PNG chunk at offset " + in.position());
+            }
+            final int start = in.position();
+            final long length = in.getInt() & 0xFFFFFFFFL;
+            final int chunkType = in.getInt();
+            if (length + 4 > in.remaining()) {
+                throw new IOException("Truncated PNG chunk at offset " + start);
+            }
+            in.position(in.position() + (int) length + 4);
+
+            if (isMetadataChunk(chunkType)) {
+                stripped = true;
+            } else {
+                toReturn.write(png, start, in.position() - start);
+            }
+        }
+
+        // All Done.
+        return stripped ? toReturn.toByteArray() : png;
+    }
+
+    /**
+     * Removes the comment naming the Graphviz version from the supplied SVG image.
+     *
+     * @param svg The SVG image, or any other markup.
+     * @return The SVG image without the Graphviz version comment.
+     */
+    static String stripSvg(final String svg) {
+        return SVG_GENERATOR_COMMENT.matcher(svg).replaceAll("");
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static boolean isMetadataChunk(final int chunkType) {
+        for (int current : PNG_METADATA_CHUNKS) {
+            if (current == chunkType) {
+                return true;
+            }
+        }
+
+        // Nopes.
+        return false;
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Removes the redundant edges of a directed graph, i.e. the edges whose target remains reachable
+ * from their source through other edges.</p>
+ * <p>Edges are examined in the order given, and each redundant edge is removed before the next edge is
+ * examined. Since removing a redundant edge never changes which nodes are reachable from which, an edge
+ * once found to be necessary stays necessary; hence a single ordered pass yields the same result as
+ * repeatedly removing the first redundant edge until none remain. For acyclic graphs this is the unique
+ * transitive reduction; within cycles, the order of the edges decides which of them are kept.</p>
+ * <p>The strongly connected components of the graph are collapsed first, and reachability between
+ * components is calculated using bitsets in topological order. An edge between two components is
+ * redundant if its target component is reachable through a third component, or if another edge between
+ * the same two components remains. Only the (typically few) edges within a component require searching
+ * the graph.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class TransitiveReduction {
+
+    /*
+     * Hide the constructor for utility classes.
+     */
+    private TransitiveReduction() {
+    }
+
+    /**
+     * Calculates which edges of the supplied graph remain after removing all redundant edges.
+     *
+     * @param numNodes The number of nodes in the graph. Nodes are identified by the integers
+     *                 {@code 0 .. numNodes - 1}.
+     * @param sources  The source node of each edge, in the order the edges should be examined.
+     * @param targets  The target node of each edge, in the order the edges should be examined.
+     *                 The edges must be distinct.
+     * @return An array holding {@code true} for each edge which is kept, and {@code false} for each
+     * redundant edge.
+     */
+    static boolean[] reduce(final int numNodes, final int[] sources, final int[] targets) {
+
+        // Check sanity
+        if (sources.length != targets.length) {
+            throw new IllegalArgumentException("Cannot handle different numbers of edge sources ("
+                    + sources.length + ") and targets (" + targets.length + ").");
+        }
+
+        final int numEdges = sources.length;
+        final boolean[] kept = new boolean[numEdges];
+        Arrays.fill(kept, true);
+
+        // #1) Build the outgoing adjacency, in compressed sparse row form.
+        final int[] offsets = new int[numNodes + 1];
+        final int[] adjacentEdges = new int[numEdges];
+        for (int source : sources) {
+            offsets[source + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        final int[] next = Arrays.copyOf(offsets, numNodes);
+        for (int edge = 0; edge < numEdges; edge++) {
+            adjacentEdges[next[sources[edge]]++] = edge;
+        }
+
+        // #2) Collapse the strongly connected components.
+        //     Components are numbered in reverse topological order, i.e. successors first.
+        final int[] components = new int[numNodes];
+        final int numComponents = findComponents(numNodes, targets, offsets, adjacentEdges, components);
+
+        // #3) Calculate the components reachable from each component through at least two edges.
+        final BitSet[] successors = new BitSet[numComponents];
+        final BitSet[] reachable = new BitSet[numComponents];
+        final BitSet[] indirectlyReachable = new BitSet[numComponents];
+        for (int c = 0; c < numComponents; c++) {
+            successors[c] = new BitSet(numComponents);
+        }
+        for (int edge = 0; edge < numEdges; edge++) {
+            final int sourceComponent = components[sources[edge]];
+            final int targetComponent = components[targets[edge]];
+            if (sourceComponent != targetComponent) {
+                successors[sourceComponent].set(targetComponent);
+            }
+        }
+        for (int c = 0; c < numComponents; c++) {
+            reachable[c] = new BitSet(numComponents);
+            indirectlyReachable[c] = new BitSet(numComponents);
+            for (int s = successors[c].nextSetBit(0); s >= 0; s = successors[c].nextSetBit(s + 1)) {
+                indirectlyReachable[c].or(reachable[s]);
+            }
+            reachable[c].or(indirectlyReachable[c]);
+            reachable[c].or(successors[c]);
+        }
+
+        // #4) Count the edges between each pair of components.
+        final Map<Long, int[]> numParallelEdges = new HashMap<Long, int[]>();
+        for (int edge = 0; edge < numEdges; edge++) {
+            final int sourceComponent = components[sources[edge]];
+            final int targetComponent = components[targets[edge]];
+            if (sourceComponent != targetComponent) {
+                final Long key = (long) sourceComponent * numComponents + targetComponent;
+                int[] count = numParallelEdges.get(key);
+                if (count == null) {
+                    count = new int[1];
+                    numParallelEdges.put(key, count);
+                }
+                count[0]++;
+            }
+        }
+
+        // #5) Examine the edges in order.
+        final int[] visited = new int[numNodes];
+        final int[] queue = new int[numNodes];
+        for (int edge = 0; edge < numEdges; edge++) {
+
+            final int sourceComponent = components[sources[edge]];
+            final int targetComponent = components[targets[edge]];
+            if (sourceComponent != targetComponent) {
+
+                final int[] count = numParallelEdges.get((long) sourceComponent * numComponents + targetComponent);
+                if (indirectlyReachable[sourceComponent].get(targetComponent) || count[0] > 1) {
+                    kept[edge] = false;
+                    count[0]--;
+                }
+
+            } else if (sources[edge] != targets[edge]
+                    && isReachableWithin(edge + 1, sources[edge], targets[edge], edge, components, targets,
+                    offsets, adjacentEdges, kept, visited, queue)) {
+                kept[edge] = false;
+            }
+        }
+
+        // All Done.
+        return kept;
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Finds the strongly connected components of the graph using an iterative version of Tarjan's algorithm.
+     *
+     * @return The number of components found.
+     */
+    private static int findComponents(final int numNodes,
+            final int[] targets,
+            final int[] offsets,
+            final int[] adjacentEdges,
+            final int[] components) {
+
+        final int[] indices = new int[numNodes];
+        final int[] lowLinks = new int[numNodes];
+        final boolean[] onStack = new boolean[numNodes];
+        final int[] stack = new int[numNodes];
+        final int[] callStack = new int[numNodes];
+        final int[] nextEdge = new int[numNodes];
+        Arrays.fill(indices, -1);
+
+        int index = 0;
+        int stackSize = 0;
+        int numComponents = 0;
+        for (int root = 0; root < numNodes; root++) {
+            if (indices[root] >= 0) {
+                continue;
+            }
+
+            int callStackSize = 0;
+            callStack[callStackSize++] = root;
+            indices[root] = lowLinks[root] = index++;
+            nextEdge[root] = offsets[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (callStackSize > 0) {
+                final int node = callStack[callStackSize - 1];
+                if (nextEdge[node] < offsets[node + 1]) {
+
+                    // Visit the next successor.
+                    final int successor = targets[adjacentEdges[nextEdge[node]++]];
+                    if (indices[successor] < 0) {
+                        indices[successor] = lowLinks[successor] = index++;
+                        nextEdge[successor] = offsets[successor];
+                        stack[stackSize++] = successor;
+                        onStack[successor] = true;
+                        callStack[callStackSize++] = successor;
+                    } else if (onStack[successor]) {
+                        lowLinks[node] = Math.min(lowLinks[node], indices[successor]);
+                    }
+
+                } else {
+
+                    // All successors visited; pop the node and possibly its component.
+                    callStackSize--;
+                    if (callStackSize > 0) {
+                        final int parent = callStack[callStackSize - 1];
+                        lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
+                    }
+
+                    if (lowLinks[node] == indices[node]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            components[member] = numComponents;
+                        } while (member != node);
+                        numComponents++;
+                    }
+                }
+            }
+        }
+
+        return numComponents;
+    }
+
+    /**
+     * Checks if the target node is reachable from the source node within their (common) component,
+     * without using the excluded edge. The visited array is stamped with the supplied mark, to avoid
+     * clearing it between searches.
+     */
+    private static boolean isReachableWithin(final int mark,
+            final int source,
+            final int target,
+            final int excludedEdge,
+            final int[] components,
+            final int[] targets,
+            final int[] offsets,
+            final int[] adjacentEdges,
+            final boolean[] kept,
+            final int[] visited,
+            final int[] queue) {
+
+        final int component = components[source];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        visited[source] = mark;
+
+        while (head < tail) {
+            final int node = queue[head++];
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+
+                final int edge = adjacentEdges[i];
+                final int successor = targets[edge];
+                if (edge == excludedEdge || !kept[edge] || components[successor] != component
+                        || visited[successor] == mark) {
+                    continue;
+                }
+                if (successor == target) {
+                    return true;
+                }
+
+                visited[successor] = mark;
+                queue[tail++] = successor;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,591 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.AnnotatedType;
+import com.sun.javadoc.AnnotationDesc;
+import com.sun.javadoc.AnnotationTypeDoc;
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.ConstructorDoc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.ParamTag;
+import com.sun.javadoc.ParameterizedType;
+import com.sun.javadoc.SeeTag;
+import com.sun.javadoc.SourcePosition;
+import com.sun.javadoc.Tag;
+import com.sun.javadoc.Type;
+import com.sun.javadoc.TypeVariable;
+import com.sun.javadoc.WildcardType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Placeholder node for the target of an {@code @apiviz.uses}, {@code @apiviz.has} or {@code @apiviz.owns}
+ * tag which cannot be found in the classpath. This happens, for instance, when doing a non-aggregating javadoc
+ * in maven, since the packages of sibling projects are not included.</p>
+ * <p>Both the name and the qualified name of an UnresolvedClassNode are {@code Name.NotFound}, which is how the
+ * missing class is shown within the diagrams. UnresolvedClassNodes are interned by the name of the missing class
+ * within a {@link Registry}, and all missing classes of the same package share a single placeholder
+ * {@link PackageDoc}. Hence, several tags referring to the same missing class yield a single node within the
+ * graph.</p>
+ *
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+final class UnresolvedClassNode implements ClassDoc {
+
+    /**
+     * The suffix appended to the name of every missing class.
+     */
+    static final String NOT_FOUND_SUFFIX = ".NotFound";
+
+    // Internal state
+    private final String className;
+    private final String name;
+    private final UnresolvedPackage containingPackage;
+
+    private UnresolvedClassNode(final String className, final UnresolvedPackage containingPackage) {
+
+        // Assign internal state
+        //FIXME - this should be stereotyped as <<NotFound>>, but I can't figure out the encoding
+        this.className = className;
+        this.name = className.substring(className.lastIndexOf('.') + 1) + NOT_FOUND_SUFFIX;
+        this.containingPackage = containingPackage;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return The same as {@link #name()}, i.e. {@code Name.NotFound}.
+     */
+    @Override
+    public String qualifiedName() {
+        return name;
+    }
+
+    /**
+     * @return The shared placeholder package of all missing classes within the same package.
+     */
+    @Override
+    public PackageDoc containingPackage() {
+        return containingPackage;
+    }
+
+    @Override
+    public int hashCode() {
+        return className.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return this == obj || (obj instanceof UnresolvedClassNode
+                && className.equals(((UnresolvedClassNode) obj).className));
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public int compareTo(final Object obj) {
+        return obj instanceof ClassDoc ? name.compareTo(((ClassDoc) obj).qualifiedName()) : -1;
+    }
+
+    public boolean isAbstract() {
+        return false;
+    }
+
+    public boolean isSerializable() {
+        return false;
+    }
+
+    public boolean isExternalizable() {
+        return false;
+    }
+
+    public MethodDoc[] serializationMethods() {
+        return new MethodDoc[0];
+    }
+
+    public FieldDoc[] serializableFields() {
+        return new FieldDoc[0];
+    }
+
+    public boolean definesSerializableFields() {
+        return false;
+    }
+
+    public ClassDoc superclass() {
+        return null;
+    }
+
+    public Type superclassType() {
+        return null;
+    }
+
+    public boolean subclassOf(final ClassDoc cd) {
+        return this.equals(cd);
+    }
+
+    public ClassDoc[] interfaces() {
+        return new ClassDoc[0];
+    }
+
+    public Type[] interfaceTypes() {
+        return new Type[0];
+    }
+
+    public TypeVariable[] typeParameters() {
+        return new TypeVariable[0];
+    }
+
+    public ParamTag[] typeParamTags() {
+        return new ParamTag[0];
+    }
+
+    public FieldDoc[] fields() {
+        return new FieldDoc[0];
+    }
+
+    public FieldDoc[] fields(final boolean filter) {
+        return new FieldDoc[0];
+    }
+
+    public FieldDoc[] enumConstants() {
+        return new FieldDoc[0];
+    }
+
+    public MethodDoc[] methods() {
+        return new MethodDoc[0];
+    }
+
+    public MethodDoc[] methods(final boolean filter) {
+        return new MethodDoc[0];
+    }
+
+    public ConstructorDoc[] constructors() {
+        return new ConstructorDoc[0];
+    }
+
+    public ConstructorDoc[] constructors(final boolean filter) {
+        return new ConstructorDoc[0];
+    }
+
+    public ClassDoc[] innerClasses() {
+        return new ClassDoc[0];
+    }
+
+    public ClassDoc[] innerClasses(final boolean filter) {
+        return new ClassDoc[0];
+    }
+
+    public ClassDoc findClass(final String className) {
+        return null;
+    }
+
+    @Deprecated
+    public ClassDoc[] importedClasses() {
+        return new ClassDoc[0];
+    }
+
+    @Deprecated
+    public PackageDoc[] importedPackages() {
+        return new PackageDoc[0];
+    }
+
+    public ClassDoc containingClass() {
+        return null;
+    }
+
+    public int modifierSpecifier() {
+        return 0;
+    }
+
+    public String modifiers() {
+        return "";
+    }
+
+    public AnnotationDesc[] annotations() {
+        return new AnnotationDesc[0];
+    }
+
+    public boolean isPublic() {
+        return false;
+    }
+
+    public boolean isProtected() {
+        return false;
+    }
+
+    public boolean isPrivate() {
+        return false;
+    }
+
+    public boolean isPackagePrivate() {
+        return false;
+    }
+
+    public boolean isStatic() {
+        return false;
+    }
+
+    public boolean isFinal() {
+        return false;
+    }
+
+    public String commentText() {
+        return "";
+    }
+
+    public Tag[] tags() {
+        return new Tag[0];
+    }
+
+    public Tag[] tags(final String tagname) {
+        return new Tag[0];
+    }
+
+    public SeeTag[] seeTags() {
+        return new SeeTag[0];
+    }
+
+    public Tag[] inlineTags() {
+        return new Tag[0];
+    }
+
+    public Tag[] firstSentenceTags() {
+        return new Tag[0];
+    }
+
+    public String getRawCommentText() {
+        return "";
+    }
+
+    public void setRawCommentText(final String rawDocumentation) {
+        throw new UnsupportedOperationException("Cannot document a class which was not found.");
+    }
+
+    public boolean isField() {
+        return false;
+    }
+
+    public boolean isEnumConstant() {
+        return false;
+    }
+
+    public boolean isConstructor() {
+        return false;
+    }
+
+    public boolean isMethod() {
+        return false;
+    }
+
+    public boolean isAnnotationTypeElement() {
+        return false;
+    }
+
+    public boolean isInterface() {
+        return false;
+    }
+
+    public boolean isException() {
+        return false;
+    }
+
+    public boolean isError() {
+        return false;
+    }
+
+    public boolean isEnum() {
+        return false;
+    }
+
+    public boolean isAnnotationType() {
+        return false;
+    }
+
+    public boolean isOrdinaryClass() {
+        return false;
+    }
+
+    public boolean isClass() {
+        return false;
+    }
+
+    public boolean isIncluded() {
+        return false;
+    }
+
+    public SourcePosition position() {
+        return null;
+    }
+
+    public String typeName() {
+        return name;
+    }
+
+    public String qualifiedTypeName() {
+        return name;
+    }
+
+    public String simpleTypeName() {
+        return name;
+    }
+
+    public String dimension() {
+        return "";
+    }
+
+    public boolean isPrimitive() {
+        return false;
+    }
+
+    public ClassDoc asClassDoc() {
+        return this;
+    }
+
+    public ParameterizedType asParameterizedType() {
+        return null;
+    }
+
+    public TypeVariable asTypeVariable() {
+        return null;
+    }
+
+    public WildcardType asWildcardType() {
+        return null;
+    }
+
+    public AnnotationTypeDoc asAnnotationTypeDoc() {
+        return null;
+    }
+
+    public AnnotatedType asAnnotatedType() {
+        return null;
+    }
+
+    public Type getElementType() {
+        return null;
+    }
+
+    /**
+     * Interns the UnresolvedClassNodes of the missing classes found while building a single {@link ClassDocGraph},
+     * such that they are released along with the graph. A Registry is not thread-safe.
+     */
+    static final class Registry {
+
+        // Internal state
+        private final Map<String, UnresolvedClassNode> classes = new HashMap<String, UnresolvedClassNode>();
+        private final Map<String, UnresolvedPackage> packages = new HashMap<String, UnresolvedPackage>();
+
+        /**
+         * Retrieves the UnresolvedClassNode of the supplied missing class.
+         *
+         * @param className The name of the missing class, as written within the relationship tag.
+         * @return The single UnresolvedClassNode of the supplied class name within this Registry.
+         */
+        UnresolvedClassNode forName(final String className) {
+
+            // Check sanity
+            if (className == null || className.isEmpty()) {
+                throw new IllegalArgumentException("Cannot handle null or empty className argument.");
+            }
+
+            UnresolvedClassNode toReturn = classes.get(className);
+            if (toReturn == null) {
+                final int lastDot = className.lastIndexOf('.');
+                final String packageName = lastDot < 0 ? "" : className.substring(0, lastDot);
+
+                UnresolvedPackage pkg = packages.get(packageName);
+                if (pkg == null) {
+                    pkg = new UnresolvedPackage(packageName);
+                    packages.put(packageName, pkg);
+                }
+
+                toReturn = new UnresolvedClassNode(className, pkg);
+                classes.put(className, toReturn);
+            }
+            return toReturn;
+        }
+    }
+
+    /**
+     * Placeholder package of missing classes, which are never members of any documented package.
+     */
+    private static final class UnresolvedPackage implements PackageDoc {
+
+        // Internal state
+        private final String name;
+
+        private UnresolvedPackage(final String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+        public int compareTo(final Object obj) {
+            return obj instanceof PackageDoc ? name.compareTo(((PackageDoc) obj).name()) : -1;
+        }
+
+        public ClassDoc[] allClasses(final boolean filter) {
+            return new ClassDoc[0];
+        }
+
+        public ClassDoc[] allClasses() {
+            return new ClassDoc[0];
+        }
+
+        public ClassDoc[] ordinaryClasses() {
+            return new ClassDoc[0];
+        }
+
+        public ClassDoc[] exceptions() {
+            return new ClassDoc[0];
+        }
+
+        public ClassDoc[] errors() {
+            return new ClassDoc[0];
+        }
+
+        public ClassDoc[] enums() {
+            return new ClassDoc[0];
+        }
+
+        public ClassDoc[] interfaces() {
+            return new ClassDoc[0];
+        }
+
+        public AnnotationTypeDoc[] annotationTypes() {
+            return new AnnotationTypeDoc[0];
+        }
+
+        public AnnotationDesc[] annotations() {
+            return new AnnotationDesc[0];
+        }
+
+        public ClassDoc findClass(final String className) {
+            return null;
+        }
+
+        public String commentText() {
+            return "";
+        }
+
+        public Tag[] tags() {
+            return new Tag[0];
+        }
+
+        public Tag[] tags(final String tagname) {
+            return new Tag[0];
+        }
+
+        public SeeTag[] seeTags() {
+            return new SeeTag[0];
+        }
+
+        public Tag[] inlineTags() {
+            return new Tag[0];
+        }
+
+        public Tag[] firstSentenceTags() {
+            return new Tag[0];
+        }
+
+        public String getRawCommentText() {
+            return "";
+        }
+
+        public void setRawCommentText(final String rawDocumentation) {
+            throw new UnsupportedOperationException("Cannot document a package which was not found.");
+        }
+
+        public boolean isField() {
+            return false;
+        }
+
+        public boolean isEnumConstant() {
+            return false;
+        }
+
+        public boolean isConstructor() {
+            return false;
+        }
+
+        public boolean isMethod() {
+            return false;
+        }
+
+        public boolean isAnnotationTypeElement() {
+            return false;
+        }
+
+        public boolean isInterface() {
+            return false;
+        }
+
+        public boolean isException() {
+            return false;
+        }
+
+        public boolean isError() {
+            return false;
+        }
+
+        public boolean isEnum() {
+            return false;
+        }
+
+        public boolean isAnnotationType() {
+            return false;
+        }
+
+        public boolean isOrdinaryClass() {
+            return false;
+        }
+
+        public boolean isClass() {
+            return false;
+        }
+
+        public boolean isIncluded() {
+            return false;
+        }
+
+        public SourcePosition position() {
+            return null;
+        }
+    }
+}
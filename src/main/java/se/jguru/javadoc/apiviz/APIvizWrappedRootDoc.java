@@ -21,16 +21,45 @@
  */
 package se.jguru.javadoc.apiviz;
 
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.PackageDoc;
 import com.sun.javadoc.RootDoc;
 import com.sun.javadoc.SourcePosition;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
- * {@link RootDoc} implementation which swallows/ignores APIviz-related messages.
+ * <p>{@link RootDoc} implementation which swallows/ignores APIviz-related messages.</p>
+ * <p>The javadoc model is traversed repeatedly by APIviz, and the wrapped {@link RootDoc} copies its classes
+ * or searches its symbol tables on every call. Hence, the classes, the classes indexed by qualified name and
+ * the packages indexed by name are captured once when the {@link APIvizWrappedRootDoc} is constructed, and
+ * {@link #classNamed(String)} memoizes the classes it finds outside of those. All indexes may be read
+ * concurrently.</p>
  *
  * @author <a href="mailto:lj@jguru.se">Lennart J&ouml;relid</a>, jGuru Europe AB
  */
 public class APIvizWrappedRootDoc extends AbstractRootDocWrapper {
 
+    /**
+     * The option of the standard doclet which omits the time of generation from the HTML pages.
+     */
+    public static final String NO_TIMESTAMP_OPTION = "-notimestamp";
+
+    // Internal state
+    private final ClassDoc[] classes;
+    private final Map<String, ClassDoc> classIndex;
+    private final Map<String, PackageDoc> packageIndex;
+    private final SortedMap<String, PackageDoc> packagesByName;
+    private final Map<String, ClassDoc> otherClasses = new ConcurrentHashMap<String, ClassDoc>();
+    private final Set<String> unresolvedClassNames =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
     /**
      * Constructs an {@link APIvizWrappedRootDoc} instance around the supplied {@link RootDoc}.
      *
@@ -38,6 +67,122 @@ public class APIvizWrappedRootDoc extends AbstractRootDocWrapper {
      */
     public APIvizWrappedRootDoc(final RootDoc wrappedRootDoc) {
         super(wrappedRootDoc);
+
+        // #1) Capture the classes, and index them by qualified name.
+        this.classes = wrappedRootDoc.classes();
+        final Map<String, ClassDoc> name2Class = new HashMap<String, ClassDoc>(classes.length * 2);
+        final SortedMap<String, PackageDoc> name2Package = new TreeMap<String, PackageDoc>();
+        for (ClassDoc current : classes) {
+            name2Class.put(current.qualifiedName(), current);
+
+            final PackageDoc pkg = current.containingPackage();
+            if (pkg != null && !name2Package.containsKey(pkg.name())) {
+                name2Package.put(pkg.name(), pkg);
+            }
+        }
+        this.classIndex = Collections.unmodifiableMap(name2Class);
+        this.packagesByName = Collections.unmodifiableSortedMap(name2Package);
+
+        // #2) Index all packages, including the specified packages holding no classes.
+        final Map<String, PackageDoc> allPackages = new HashMap<String, PackageDoc>(name2Package);
+        for (PackageDoc current : wrappedRootDoc.specifiedPackages()) {
+            if (!allPackages.containsKey(current.name())) {
+                allPackages.put(current.name(), current);
+            }
+        }
+        this.packageIndex = Collections.unmodifiableMap(allPackages);
+    }
+
+    /**
+     * Retrieves the classes and interfaces to be documented. The classes are retrieved from the wrapped
+     * {@link RootDoc} only once; each invocation returns a copy of the same array.
+     *
+     * @return The classes and interfaces to be documented.
+     */
+    @Override
+    public ClassDoc[] classes() {
+        return classes.clone();
+    }
+
+    /**
+     * Retrieves the class with the supplied qualified name. Classes to be documented are found in constant
+     * time, and any other class is looked up in the wrapped {@link RootDoc} only once.
+     *
+     * @param qualifiedName The qualified name of the class.
+     * @return The class with the supplied qualified name, or {@code null} if it could not be found.
+     */
+    @Override
+    public ClassDoc classNamed(final String qualifiedName) {
+
+        ClassDoc toReturn = classIndex.get(qualifiedName);
+        if (toReturn == null && !unresolvedClassNames.contains(qualifiedName)) {
+
+            toReturn = otherClasses.get(qualifiedName);
+            if (toReturn == null) {
+                toReturn = wrappedRootDoc.classNamed(qualifiedName);
+                if (toReturn == null) {
+                    unresolvedClassNames.add(qualifiedName);
+                } else {
+                    otherClasses.put(qualifiedName, toReturn);
+                }
+            }
+        }
+
+        // All Done.
+        return toReturn;
+    }
+
+    /**
+     * Retrieves the package with the supplied name. Packages holding classes to be documented and specified
+     * packages are found in constant time; any other package is looked up in the wrapped {@link RootDoc}.
+     *
+     * @param name The name of the package.
+     * @return The package with the supplied name, or {@code null} if it could not be found.
+     */
+    @Override
+    public PackageDoc packageNamed(final String name) {
+
+        final PackageDoc toReturn = packageIndex.get(name);
+        return toReturn != null ? toReturn : wrappedRootDoc.packageNamed(name);
+    }
+
+    /**
+     * Retrieves the packages holding the classes to be documented.
+     *
+     * @return An unmodifiable SortedMap relating the name of each package holding classes to be documented
+     * to its PackageDoc, in package name order.
+     */
+    public SortedMap<String, PackageDoc> getPackagesByName() {
+        return packagesByName;
+    }
+
+    /**
+     * Retrieves the options of the wrapped {@link RootDoc}. Should the {@link JavaDocOption#REPRODUCIBLE} option
+     * be given, the {@link #NO_TIMESTAMP_OPTION} is added to instruct the standard doclet not to write the
+     * time of generation into the HTML pages.
+     *
+     * @return The options of the wrapped {@link RootDoc}, possibly including the {@link #NO_TIMESTAMP_OPTION}.
+     */
+    @Override
+    public String[][] options() {
+
+        final String[][] options = wrappedRootDoc.options();
+        boolean reproducible = false;
+        for (String[] current : options) {
+            if (NO_TIMESTAMP_OPTION.equals(current[0])) {
+                return options;
+            }
+            reproducible |= JavaDocOption.REPRODUCIBLE.getOption().equals(current[0]);
+        }
+
+        if (!reproducible) {
+            return options;
+        }
+
+        final String[][] toReturn = new String[options.length + 1][];
+        System.arraycopy(options, 0, toReturn, 0, options.length);
+        toReturn[options.length] = new String[]{NO_TIMESTAMP_OPTION};
+        return toReturn;
     }
 
     /**
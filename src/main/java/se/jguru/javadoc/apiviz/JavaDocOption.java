@@ -47,11 +47,78 @@ public enum JavaDocOption {
             + "with @apiviz.category"),
 
     /**
-     * The option {@code -sourceclasspath (commaSeparatedPathlist)} indicates where source
-     * class files should be found.
+     * The option {@code -printdiagrams} indicates that the Graphviz source of each generated diagram
+     * should be written to the {@code apiviz-dot} directory, mirroring the structure of the output directory.
      */
     OUTPUT_DIAGRAM("-printdiagrams", 0, "Prints the generated Graphviz diagram files"),
 
+    /**
+     * The option {@code -dotonly} indicates that the Graphviz source of each diagram should be exported
+     * as with {@code -printdiagrams}, but that Graphviz should not be run to render the diagrams.
+     */
+    DOT_ONLY("-dotonly", 0, "Only prints the generated Graphviz diagram files, without running Graphviz"),
+
+    /**
+     * The option {@code -diagramthreads (n)} specifies how many Graphviz processes may render
+     * diagrams concurrently. Defaults to the number of available processors.
+     */
+    DIAGRAM_THREADS("-diagramthreads", 1, "<n>   Number of diagrams rendered concurrently "
+            + "(default: number of available processors)"),
+
+    /**
+     * The option {@code -diagrambatch (n)} specifies how many diagrams may be rendered by a single
+     * Graphviz process, to avoid launching one process per diagram.
+     */
+    DIAGRAM_BATCH("-diagrambatch", 1, "<n>   Number of diagrams rendered by a single Graphviz process "
+            + "(default: 16)"),
+
+    /**
+     * The option {@code -diagramformat (svg|png|both)} specifies whether diagrams are rendered as PNG images
+     * along with HTML image maps, as SVG images inlined into the HTML pages, or both. Defaults to PNG.
+     */
+    DIAGRAM_FORMAT("-diagramformat", 1, "<svg|png|both>   Format of the rendered diagrams (default: png)"),
+
+    /**
+     * The option {@code -diagramlayout (auto|small|medium|large)} specifies the layout tier used for all
+     * diagrams, overriding the tier otherwise chosen from the size of each diagram.
+     */
+    DIAGRAM_LAYOUT("-diagramlayout", 1, "<auto|small|medium|large>   Layout tier of all diagrams, trading layout "
+            + "quality for speed (default: auto, i.e. chosen from the size of each diagram)"),
+
+    /**
+     * The option {@code -diagramfanout (n)} specifies the maximum number of related classes shown within a
+     * class diagram. The least relevant related classes beyond this budget are summarized in a single node
+     * per relationship type.
+     */
+    DIAGRAM_FAN_OUT("-diagramfanout", 1, "<n>   Maximum number of related classes shown in a class diagram "
+            + "(default: 40)"),
+
+    /**
+     * The option {@code -diagramcache (directory)} specifies a directory where rendered diagrams are cached
+     * between runs, implying that unchanged diagrams need not be rendered by Graphviz again.
+     */
+    DIAGRAM_CACHE("-diagramcache", 1, "<directory>   Directory where rendered diagrams are cached between runs"),
+
+    /**
+     * The option {@code -diagramcachesize (megabytes)} specifies the maximum size of the diagram cache.
+     */
+    DIAGRAM_CACHE_SIZE("-diagramcachesize", 1, "<megabytes>   Maximum size of the diagram cache (default: 256)"),
+
+    /**
+     * The option {@code -incremental} indicates that only diagrams whose subgraph changed since the previous
+     * run should be rendered, using the graph snapshot persisted within the output directory. Likewise, only
+     * the class files which changed since the previous run are parsed to find the package dependencies.
+     */
+    INCREMENTAL("-incremental", 0, "Only render diagrams whose part of the class graph changed since the "
+            + "previous run"),
+
+    /**
+     * The option {@code -reproducible} indicates that identical input should yield byte-identical diagram
+     * sources, images and HTML pages, by stripping the metadata Graphviz embeds within its images, and omitting
+     * the timestamps of the standard doclet.
+     */
+    REPRODUCIBLE("-reproducible", 0, "Generate byte-identical diagrams and HTML pages for identical input"),
+
     /**
      * The option {@code -help}
      */
@@ -22,6 +22,11 @@
 package se.jguru.javadoc.apiviz.model;
 
 import com.sun.javadoc.DocErrorReporter;
+import org.jboss.apiviz.DiagramBatch;
+import org.jboss.apiviz.DiagramFormat;
+import org.jboss.apiviz.FanOutCap;
+import org.jboss.apiviz.LayoutPolicy;
+import org.jboss.apiviz.RenderCache;
 import se.jguru.javadoc.apiviz.JavaDocOption;
 import se.jguru.javadoc.apiviz.doclet.APIvizDoclet;
 
@@ -41,6 +46,16 @@ public class DocletModel {
      */
     public static final String CLASSPATH_ARGUMENT = "-classpath";
 
+    /**
+     * The argument instructing the standard doclet to generate the class and package use pages.
+     */
+    public static final String USE_ARGUMENT = "-use";
+
+    /**
+     * The number of bytes in a megabyte, as used by size options.
+     */
+    public static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
     // Internal state
     private List<ConfigOption> configOptions;
 
@@ -49,6 +64,18 @@ public class DocletModel {
     private Boolean generatePackageDiagram;
     private List<File> classPath;
     private List<Category> categories;
+    private int diagramThreads;
+    private int diagramBatchSize;
+    private DiagramFormat diagramFormat;
+    private LayoutPolicy.Tier diagramLayoutTier;
+    private int diagramFanOut;
+    private File diagramCacheDirectory;
+    private long diagramCacheSize;
+    private boolean incremental;
+    private boolean printDiagrams;
+    private boolean dotOnly;
+    private boolean reproducible;
+    private boolean usePages;
 
     /**
      * Converts the supplied JavaDoc options array into a {@link DocletModel}.
@@ -114,11 +141,9 @@ public class DocletModel {
                     + JavaDocOption.SOURCE_CLASSPATH.getHelpText() + ")");
         }
         for (File classPathSnippet : tmpClassPath) {
-
-            final boolean isReadableFile = classPathSnippet.isFile() && classPathSnippet.canRead();
-            if (!isReadableFile) {
+            if (!isReadableClassPathSnippet(classPathSnippet)) {
                 errorReporter.printError("ClassPath snippet [" + classPathSnippet.getAbsolutePath()
-                        + "] was not a readable file.");
+                        + "] was not a readable directory or file.");
             }
         }
         this.classPath = tmpClassPath;
@@ -128,10 +153,70 @@ public class DocletModel {
         this.categories = Category.parseCategories(this.configOptions);
 
         //
-        // #5) Configuration: standard JavaDoc options
-        for (String[] current : options) {
-            JavaDocOption.parseJavaDocOptionArray(current);
+        // #5) Configuration: Number of concurrently rendered diagrams
+        this.diagramThreads = getPositiveIntegerOption(JavaDocOption.DIAGRAM_THREADS,
+                Runtime.getRuntime().availableProcessors(),
+                errorReporter);
+
+        //
+        // #6) Configuration: Number of diagrams rendered by a single Graphviz process
+        this.diagramBatchSize = getPositiveIntegerOption(JavaDocOption.DIAGRAM_BATCH,
+                DiagramBatch.DEFAULT_SIZE,
+                errorReporter);
+
+        //
+        // #7) Configuration: Diagram format
+        final ConfigOption configDiagramFormat = ConfigOption.getFirst(
+                JavaDocOption.DIAGRAM_FORMAT.getOption(), this.configOptions);
+        if (configDiagramFormat != null && configDiagramFormat.getArguments().size() > 0) {
+            diagramFormat = DiagramFormat.parse(configDiagramFormat.getArguments().get(0));
+        }
+        if (diagramFormat == null) {
+            diagramFormat = DiagramFormat.PNG;
+        }
+
+        //
+        // #8) Configuration: Diagram layout tier
+        final ConfigOption configDiagramLayout = ConfigOption.getFirst(
+                JavaDocOption.DIAGRAM_LAYOUT.getOption(), this.configOptions);
+        if (configDiagramLayout != null && configDiagramLayout.getArguments().size() > 0) {
+            diagramLayoutTier = LayoutPolicy.Tier.parse(configDiagramLayout.getArguments().get(0));
         }
+
+        //
+        // #9) Configuration: Maximum number of related classes within a class diagram
+        this.diagramFanOut = getPositiveIntegerOption(JavaDocOption.DIAGRAM_FAN_OUT,
+                FanOutCap.DEFAULT_BUDGET,
+                errorReporter);
+
+        //
+        // #10) Configuration: Diagram cache
+        final ConfigOption configDiagramCache = ConfigOption.getFirst(
+                JavaDocOption.DIAGRAM_CACHE.getOption(), this.configOptions);
+        if (configDiagramCache != null && configDiagramCache.getArguments().size() > 0) {
+            diagramCacheDirectory = new File(configDiagramCache.getArguments().get(0));
+        }
+        this.diagramCacheSize = BYTES_PER_MEGABYTE * getPositiveIntegerOption(JavaDocOption.DIAGRAM_CACHE_SIZE,
+                RenderCache.DEFAULT_MAX_SIZE_MB,
+                errorReporter);
+
+        //
+        // #11) Configuration: Incremental runs
+        this.incremental = ConfigOption.getFirst(JavaDocOption.INCREMENTAL.getOption(), this.configOptions) != null;
+
+        //
+        // #12) Configuration: Export of the diagram sources
+        this.dotOnly = ConfigOption.getFirst(JavaDocOption.DOT_ONLY.getOption(), this.configOptions) != null;
+        this.printDiagrams = dotOnly
+                || ConfigOption.getFirst(JavaDocOption.OUTPUT_DIAGRAM.getOption(), this.configOptions) != null;
+
+        //
+        // #13) Configuration: Reproducible output
+        this.reproducible = ConfigOption.getFirst(JavaDocOption.REPRODUCIBLE.getOption(), this.configOptions) != null;
+
+        //
+        // #14) Configuration: standard JavaDoc options
+        this.usePages = ConfigOption.getFirst(USE_ARGUMENT, this.configOptions) != null;
     }
 
     /**
@@ -175,6 +260,139 @@ public class DocletModel {
         return categories;
     }
 
+    /**
+     * Retrieves the number of diagrams which may be rendered concurrently, i.e. the maximum number
+     * of simultaneously running Graphviz processes.
+     *
+     * @return the number of diagrams which may be rendered concurrently. Always positive.
+     */
+    public int getDiagramThreads() {
+        return diagramThreads;
+    }
+
+    /**
+     * Retrieves the maximum number of diagrams rendered by a single Graphviz process.
+     *
+     * @return the maximum number of diagrams rendered by a single Graphviz process. Always positive.
+     */
+    public int getDiagramBatchSize() {
+        return diagramBatchSize;
+    }
+
+    /**
+     * Retrieves the format in which diagrams are rendered.
+     *
+     * @return the format in which diagrams are rendered. Never {@code null}.
+     */
+    public DiagramFormat getDiagramFormat() {
+        return diagramFormat;
+    }
+
+    /**
+     * Retrieves the layout tier used for all diagrams.
+     *
+     * @return the layout tier used for all diagrams, or {@code null} if the tier of each diagram should be
+     * chosen from its size.
+     */
+    public LayoutPolicy.Tier getDiagramLayoutTier() {
+        return diagramLayoutTier;
+    }
+
+    /**
+     * Retrieves the maximum number of related classes shown within a class diagram.
+     *
+     * @return the maximum number of related classes shown within a class diagram. Always positive.
+     */
+    public int getDiagramFanOut() {
+        return diagramFanOut;
+    }
+
+    /**
+     * Retrieves the directory where rendered diagrams are cached between runs.
+     *
+     * @return the diagram cache directory, or {@code null} if diagrams should not be cached.
+     */
+    public File getDiagramCacheDirectory() {
+        return diagramCacheDirectory;
+    }
+
+    /**
+     * Retrieves the maximum size of the diagram cache.
+     *
+     * @return the maximum size of the diagram cache, in bytes.
+     */
+    public long getDiagramCacheSize() {
+        return diagramCacheSize;
+    }
+
+    /**
+     * If {@code true}, only diagrams whose subgraph changed since the previous run should be rendered.
+     *
+     * @return {@code true} to render diagrams incrementally.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * If {@code true}, the Graphviz source of each diagram should be written to the output directory.
+     *
+     * @return {@code true} to export the diagram sources. Always {@code true} if {@link #isDotOnly()}.
+     */
+    public boolean isPrintDiagrams() {
+        return printDiagrams;
+    }
+
+    /**
+     * If {@code true}, the Graphviz source of each diagram should be exported without running Graphviz.
+     *
+     * @return {@code true} to export the diagram sources without rendering the diagrams.
+     */
+    public boolean isDotOnly() {
+        return dotOnly;
+    }
+
+    /**
+     * If {@code true}, identical input should yield byte-identical diagram sources, images and HTML pages.
+     *
+     * @return {@code true} to generate reproducible output.
+     */
+    public boolean isReproducible() {
+        return reproducible;
+    }
+
+    /**
+     * If {@code true}, the standard doclet generates the class and package use pages. As the standard doclet
+     * writes its pages concurrently with the generation of the diagrams, diagrams may not check for the
+     * existence of the pages they link to.
+     *
+     * @return {@code true} if the standard doclet generates the class and package use pages.
+     */
+    public boolean isUsePages() {
+        return usePages;
+    }
+
+    /**
+     * Parses the supplied value into a positive (i.e. greater than 0) integer.
+     *
+     * @param value The string value to parse.
+     * @return The parsed positive integer, or {@code null} if the supplied value was not a positive integer.
+     */
+    public static Integer parsePositiveInteger(final String value) {
+
+        // Check sanity
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            final int toReturn = Integer.parseInt(value.trim());
+            return toReturn > 0 ? toReturn : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     /**
      * Splits the supplied classPathSnippet using the {@link File#pathSeparator} character, and returns
      * the results in the form of a File[].
@@ -200,4 +418,39 @@ public class DocletModel {
         // All Done.
         return toReturn;
     }
+
+    /**
+     * Checks if the supplied classpath element can be analyzed. Both class directories and jar files are analyzed.
+     *
+     * @param classPathSnippet A classpath element, as returned by {@link #splitAndConvert(String)}.
+     * @return {@code true} if the classpath element is a readable directory or file.
+     */
+    public static boolean isReadableClassPathSnippet(final File classPathSnippet) {
+        return (classPathSnippet.isFile() || classPathSnippet.isDirectory()) && classPathSnippet.canRead();
+    }
+
+    //
+    // Private helpers
+    //
+
+    private int getPositiveIntegerOption(final JavaDocOption option,
+                                         final int defaultValue,
+                                         final DocErrorReporter errorReporter) {
+
+        final ConfigOption configOption = ConfigOption.getFirst(option.getOption(), this.configOptions);
+        if (configOption == null || configOption.getArguments().isEmpty()) {
+            return defaultValue;
+        }
+
+        final String configValue = configOption.getArguments().get(0);
+        final Integer toReturn = parsePositiveInteger(configValue);
+        if (toReturn == null) {
+            errorReporter.printWarning("Configuration option " + option.getOption()
+                    + " should be a positive integer. (Got: " + configValue + "). Reverting to " + defaultValue);
+            return defaultValue;
+        }
+
+        // All Done.
+        return toReturn;
+    }
 }
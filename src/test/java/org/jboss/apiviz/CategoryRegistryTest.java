@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import org.junit.Assert;
+import org.junit.Test;
+import se.jguru.javadoc.apiviz.model.Category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class CategoryRegistryTest {
+
+    @Test
+    public void validateColorsAreAssignedInNameOrder() {
+
+        // Assemble
+        final List<String> usedNames = Arrays.asList("zeta", "alpha", "mu");
+        final List<String> reversedNames = new ArrayList<String>(usedNames);
+        Collections.reverse(reversedNames);
+
+        // Act
+        final CategoryRegistry unitUnderTest = new CategoryRegistry(Collections.<Category>emptyList(), usedNames);
+        final CategoryRegistry reversed = new CategoryRegistry(Collections.<Category>emptyList(), reversedNames);
+
+        // Assert
+        Assert.assertEquals(ColorCombination.values()[0].getFillColor(), unitUnderTest.get("alpha").getFillColor());
+        Assert.assertEquals(ColorCombination.values()[1].getFillColor(), unitUnderTest.get("mu").getFillColor());
+        Assert.assertEquals(ColorCombination.values()[2].getLineColor(), unitUnderTest.get("zeta").getLineColor());
+        for (String current : usedNames) {
+            Assert.assertEquals(unitUnderTest.get(current).getFillColor(), reversed.get(current).getFillColor());
+        }
+        Assert.assertNull(unitUnderTest.get("unused"));
+        Assert.assertNull(unitUnderTest.get(null));
+    }
+
+    @Test
+    public void validateConfiguredCategoriesKeepTheirColors() {
+
+        // Assemble
+        final Category configured = new Category("beta", Color.khaki1, Color.red4);
+
+        // Act
+        final CategoryRegistry unitUnderTest = new CategoryRegistry(
+                Collections.singletonList(configured), Arrays.asList("beta", "gamma"));
+
+        // Assert
+        Assert.assertSame(configured, unitUnderTest.get("beta"));
+        Assert.assertEquals(ColorCombination.values()[0].getFillColor(), unitUnderTest.get("gamma").getFillColor());
+    }
+
+    @Test
+    public void validateCategoriesBeyondPredefinedColorsAreUncolored() {
+
+        // Assemble
+        final List<String> usedNames = new ArrayList<String>();
+        for (int i = 0; i <= ColorCombination.values().length; i++) {
+            usedNames.add("category" + i);
+        }
+
+        // Act
+        final CategoryRegistry unitUnderTest = new CategoryRegistry(Collections.<Category>emptyList(), usedNames);
+
+        // Assert
+        final Category last = unitUnderTest.get("category" + ColorCombination.values().length);
+        Assert.assertEquals(Color.white, last.getFillColor());
+        Assert.assertEquals(Color.black, last.getLineColor());
+    }
+}
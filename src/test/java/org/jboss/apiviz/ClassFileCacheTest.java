@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import net.gleamynode.apiviz.a.DefaultA;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.TreeSet;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class ClassFileCacheTest {
+
+    // Shared state
+    private File cacheFile;
+
+    @Before
+    public void setupSharedState() throws IOException {
+        cacheFile = new File(Files.createTempDirectory("apiviz-classfiles").toFile(), ClassFileCache.FILENAME);
+    }
+
+    @Test
+    public void validateEntriesSurviveRoundTrip() throws IOException {
+
+        // Assemble
+        final ClassFileCache unitUnderTest = new ClassFileCache(cacheFile);
+        unitUnderTest.put("/classes/org/example/A.class", newEntry(100, 1000, 42, "org/example/A", "java.lang"));
+        unitUnderTest.write();
+
+        // Act
+        final ClassFileCache result = new ClassFileCache(cacheFile);
+
+        // Assert
+        final ClassFileCache.Entry entry = result.get("/classes/org/example/A.class", 100, 1000);
+        Assert.assertNotNull(entry);
+        Assert.assertEquals("org/example/A", entry.className);
+        Assert.assertEquals(42, entry.checksum);
+        Assert.assertEquals(Collections.singleton("java.lang"), entry.referencedPackages);
+        Assert.assertNull(result.get("/classes/org/example/A.class", 101, 1000));
+        Assert.assertNull(result.get("/classes/org/example/A.class", 100, 1001));
+    }
+
+    @Test
+    public void validateTouchedClassFileMatchesByChecksum() throws IOException {
+
+        // Assemble
+        final ClassFileCache unitUnderTest = new ClassFileCache(cacheFile);
+        unitUnderTest.put("A.class", newEntry(100, 1000, 42, "org/example/A", "java.util"));
+
+        // Act
+        final ClassFileCache.Entry touched = unitUnderTest.get("A.class", 100, 2000, 42);
+        final ClassFileCache.Entry changed = unitUnderTest.get("A.class", 100, 2000, 43);
+
+        // Assert
+        Assert.assertNotNull(touched);
+        Assert.assertEquals(2000, touched.lastModified);
+        Assert.assertNull(changed);
+        Assert.assertSame(touched, unitUnderTest.get("A.class", 100, 2000));
+    }
+
+    @Test
+    public void validateChangedEntriesAreAppended() throws IOException {
+
+        // Assemble
+        final ClassFileCache first = new ClassFileCache(cacheFile);
+        for (int i = 0; i < 10; i++) {
+            first.put("C" + i + ".class", newEntry(100, 1000, i, "org/example/C" + i, "java.lang", "java.util"));
+        }
+        first.write();
+        final long initialLength = cacheFile.length();
+
+        // Act
+        final ClassFileCache second = new ClassFileCache(cacheFile);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertNotNull(second.get("C" + i + ".class", 100, 1000));
+        }
+        second.put("C3.class", newEntry(120, 3000, 99, "org/example/C3", "java.lang", "java.io"));
+        second.write();
+        final ClassFileCache result = new ClassFileCache(cacheFile);
+
+        // Assert
+        Assert.assertTrue(cacheFile.length() > initialLength);
+        Assert.assertEquals(new HashSet<String>(Arrays.asList("java.io", "java.lang")),
+                result.get("C3.class", 120, 3000).referencedPackages);
+        Assert.assertNull(result.get("C3.class", 100, 1000));
+        Assert.assertNotNull(result.get("C4.class", 100, 1000));
+    }
+
+    @Test
+    public void validateTruncatedCacheFileKeepsCompleteRecords() throws IOException {
+
+        // Assemble
+        final ClassFileCache unitUnderTest = new ClassFileCache(cacheFile);
+        unitUnderTest.put("A.class", newEntry(100, 1000, 1, "org/example/A", "java.lang"));
+        unitUnderTest.write();
+        final long completeLength = cacheFile.length();
+        unitUnderTest.put("B.class", newEntry(100, 1000, 2, "org/example/B", "java.lang"));
+        unitUnderTest.write();
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(completeLength + 5);
+        }
+
+        // Act
+        final ClassFileCache result = new ClassFileCache(cacheFile);
+
+        // Assert
+        Assert.assertNotNull(result.get("A.class", 100, 1000));
+        Assert.assertNull(result.get("B.class", 100, 1000));
+    }
+
+    @Test
+    public void validateScannerOnlyParsesChangedClassFiles() throws Exception {
+
+        // Assemble
+        final Path testClasses = new File(
+                DefaultA.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toPath();
+        final Path classDirectory = Files.createTempDirectory("apiviz-scanned");
+        for (String current : Arrays.asList("a/A.class", "a/DefaultA.class", "b/B.class")) {
+            final Path target = classDirectory.resolve("net/gleamynode/apiviz/" + current);
+            Files.createDirectories(target.getParent());
+            Files.copy(testClasses.resolve("net/gleamynode/apiviz/" + current), target);
+        }
+        final HashSet<String> packages = new HashSet<String>(
+                Arrays.asList("net.gleamynode.apiviz.a", "net.gleamynode.apiviz.b"));
+        final ClassFileCache firstCache = new ClassFileCache(cacheFile);
+        final PackageDependencies expected = new ClassFileScanner(packages, firstCache)
+                .scan(Collections.singletonList(classDirectory.toFile()));
+        firstCache.write();
+
+        // Act
+        final ClassFileCache unitUnderTest = new ClassFileCache(cacheFile);
+        final PackageDependencies result = new ClassFileScanner(packages, unitUnderTest)
+                .scan(Collections.singletonList(classDirectory.toFile()));
+
+        // Assert
+        Assert.assertEquals("Class file cache: 0 unchanged, 3 parsed class file(s).", firstCache.toString());
+        Assert.assertEquals("Class file cache: 3 unchanged, 0 parsed class file(s).", unitUnderTest.toString());
+        Assert.assertEquals(expected.getNumClasses(), result.getNumClasses());
+        Assert.assertEquals(Collections.singleton("net.gleamynode.apiviz.a"),
+                result.getEfferents("net.gleamynode.apiviz.b"));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static ClassFileCache.Entry newEntry(final long size,
+                                                 final long lastModified,
+                                                 final long checksum,
+                                                 final String className,
+                                                 final String... referencedPackages) {
+        return new ClassFileCache.Entry(size, lastModified, checksum, className,
+                new TreeSet<String>(Arrays.asList(referencedPackages)));
+    }
+}
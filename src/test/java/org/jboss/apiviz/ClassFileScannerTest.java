@@ -0,0 +1,147 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import net.gleamynode.apiviz.a.DefaultA;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class ClassFileScannerTest {
+
+    private static final String PACKAGE_A = "net.gleamynode.apiviz.a";
+    private static final String PACKAGE_B = "net.gleamynode.apiviz.b";
+    private static final String PACKAGE_C = "net.gleamynode.apiviz.c";
+
+    // Shared state
+    private File testClassesDirectory;
+    private Set<String> analyzedPackages;
+
+    @Before
+    public void setupSharedState() throws URISyntaxException {
+        testClassesDirectory = new File(DefaultA.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        analyzedPackages = new HashSet<String>(Arrays.asList(PACKAGE_A, PACKAGE_B, PACKAGE_C));
+    }
+
+    @Test
+    public void validateReferencedClassesInSignatures() {
+
+        // Assemble
+        final Set<String> result = new TreeSet<String>();
+
+        // Act
+        ClassFileScanner.addReferencedClasses(
+                "<T:Ljava/lang/Object;>(Ljava/util/List<TT;>;[Lorg/example/Outer<TT;>.Inner;I)Lorg/example/B;",
+                result);
+
+        // Assert
+        Assert.assertEquals(new TreeSet<String>(Arrays.asList(
+                "java/lang/Object", "java/util/List", "org/example/B", "org/example/Outer")), result);
+    }
+
+    @Test
+    public void validateScanningClassDirectory() throws IOException {
+
+        // Assemble
+        final ClassFileScanner unitUnderTest = new ClassFileScanner(analyzedPackages);
+
+        // Act
+        final PackageDependencies result = unitUnderTest.scan(Collections.singletonList(testClassesDirectory));
+
+        // Assert
+        assertTestPackageDependencies(result);
+    }
+
+    @Test
+    public void validateScanningJarFile() throws IOException {
+
+        // Assemble
+        final File jarFile = File.createTempFile("apiviz-scanner", ".jar");
+        jarFile.deleteOnExit();
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jarFile))) {
+            for (String packageName : analyzedPackages) {
+                final String path = packageName.replace('.', '/');
+                final File[] classFiles = new File(testClassesDirectory, path).listFiles();
+                Assert.assertNotNull(classFiles);
+                for (File current : classFiles) {
+                    out.putNextEntry(new ZipEntry(path + "/" + current.getName()));
+                    Files.copy(current.toPath(), out);
+                    out.closeEntry();
+                }
+            }
+        }
+        final ClassFileScanner unitUnderTest = new ClassFileScanner(analyzedPackages);
+
+        // Act
+        final PackageDependencies result = unitUnderTest.scan(Collections.singletonList(jarFile));
+
+        // Assert
+        assertTestPackageDependencies(result);
+    }
+
+    @Test
+    public void validateNonAnalyzedPackagesAreIgnored() throws IOException {
+
+        // Assemble
+        final ClassFileScanner unitUnderTest = new ClassFileScanner(Collections.singleton(PACKAGE_B));
+
+        // Act
+        final PackageDependencies result = unitUnderTest.scan(Collections.singletonList(testClassesDirectory));
+
+        // Assert
+        Assert.assertTrue(result.containsPackage(PACKAGE_B));
+        Assert.assertFalse(result.containsPackage(PACKAGE_A));
+        Assert.assertTrue(result.getEfferents(PACKAGE_B).isEmpty());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void assertTestPackageDependencies(final PackageDependencies result) {
+
+        Assert.assertTrue(result.containsPackage(PACKAGE_A));
+        Assert.assertTrue(result.containsClass(PACKAGE_A, DefaultA.class.getName()));
+        Assert.assertFalse(result.containsClass(PACKAGE_A, PACKAGE_A + ".Missing"));
+
+        Assert.assertEquals(Collections.singleton(PACKAGE_A), result.getEfferents(PACKAGE_B));
+        Assert.assertTrue(result.getEfferents(PACKAGE_A).isEmpty());
+        Assert.assertFalse(result.getEfferents(PACKAGE_C).contains(PACKAGE_C));
+    }
+}
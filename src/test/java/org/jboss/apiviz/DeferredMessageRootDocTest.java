@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.RootDoc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class DeferredMessageRootDocTest {
+
+    private final List<String> messages = new ArrayList<String>();
+
+    @Test
+    public void validateMessagesArePrintedInOrderWhenReleased() {
+
+        // Assemble
+        final DeferredMessageRootDoc unitUnderTest = new DeferredMessageRootDoc(mockRoot());
+
+        // Act
+        unitUnderTest.printNotice("Generating foo.png...");
+        unitUnderTest.printWarning(null, "No compiled class files could be found.");
+        unitUnderTest.printError("Failed to generate 1 diagram(s).");
+        final List<String> messagesBeforeRelease = new ArrayList<String>(messages);
+        unitUnderTest.release();
+
+        // Assert
+        Assert.assertEquals(0, messagesBeforeRelease.size());
+        Assert.assertEquals("[printNotice: Generating foo.png..., "
+                + "printWarning: No compiled class files could be found., "
+                + "printError: Failed to generate 1 diagram(s).]", messages.toString());
+    }
+
+    @Test
+    public void validateMessagesArePrintedImmediatelyOnceReleased() {
+
+        // Assemble
+        final DeferredMessageRootDoc unitUnderTest = new DeferredMessageRootDoc(mockRoot());
+        unitUnderTest.printNotice("Queued");
+        unitUnderTest.release();
+
+        // Act
+        unitUnderTest.printWarning("Immediate");
+        unitUnderTest.release();
+
+        // Assert
+        Assert.assertEquals("[printNotice: Queued, printWarning: Immediate]", messages.toString());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private RootDoc mockRoot() {
+        return (RootDoc) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RootDoc.class},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if (method.getName().startsWith("print")) {
+                            messages.add(method.getName() + ": " + args[args.length - 1]);
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.PackageDoc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class FanOutCapTest {
+
+    private final Map<String, PackageDoc> packages = new HashMap<String, PackageDoc>();
+    private final List<ClassDoc> classes = new ArrayList<ClassDoc>();
+    private final List<Edge> edges = new ArrayList<Edge>();
+
+    @Test
+    public void validateSubgraphWithinBudgetIsUnchanged() {
+
+        // Assemble
+        final ClassDoc hub = mockClass("org.hub", "Hub", true);
+        addEdge(EdgeType.REALIZATION, mockClass("org.hub", "Impl", true), hub);
+        addEdge(EdgeType.GENERALIZATION, hub, mockClass("org.far", "Super", false));
+        final GraphIndex index = new GraphIndex(classes, edges);
+        final BitSet nodesToRender = all(index.getNumNodes());
+        final BitSet edgesToRender = all(index.getNumEdges());
+
+        // Act
+        final List<FanOutCap.Summary> result = FanOutCap.apply(index, index.getNodeId(hub), 2,
+                nodesToRender, edgesToRender);
+
+        // Assert
+        Assert.assertTrue(result.isEmpty());
+        Assert.assertEquals(all(index.getNumNodes()), nodesToRender);
+        Assert.assertEquals(all(index.getNumEdges()), edgesToRender);
+    }
+
+    @Test
+    public void validateMostRelevantNeighboursAreKept() {
+
+        // Assemble
+        final ClassDoc hub = mockClass("org.hub", "Hub", true);
+        addEdge(EdgeType.GENERALIZATION, hub, mockClass("org.far", "Super", false));
+        addEdge(EdgeType.REALIZATION, mockClass("org.hub", "Impl2", true), hub);
+        addEdge(EdgeType.REALIZATION, mockClass("org.hub", "Impl1", true), hub);
+        addEdge(EdgeType.REALIZATION, mockClass("org.far", "FarC", false), hub);
+        addEdge(EdgeType.REALIZATION, mockClass("org.far", "FarB", false), hub);
+        addEdge(EdgeType.REALIZATION, mockClass("org.far", "FarA", true), hub);
+        addEdge(EdgeType.DEPENDENCY, mockClass("org.far", "User", false), hub);
+        final GraphIndex index = new GraphIndex(classes, edges);
+        final BitSet nodesToRender = all(index.getNumNodes());
+        final BitSet edgesToRender = all(index.getNumEdges());
+
+        // Act
+        final List<FanOutCap.Summary> result = FanOutCap.apply(index, index.getNodeId(hub), 4,
+                nodesToRender, edgesToRender);
+
+        // Assert
+        // Referenced first, then the same package, then documented ones; all others are collapsed.
+        Assert.assertEquals(Arrays.asList("org.far.FarA", "org.far.Super", "org.hub.Hub",
+                "org.hub.Impl1", "org.hub.Impl2"), getNames(index, nodesToRender));
+        for (int e = edgesToRender.nextSetBit(0); e >= 0; e = edgesToRender.nextSetBit(e + 1)) {
+            Assert.assertTrue(nodesToRender.get(index.getEdgeSource(e)));
+            Assert.assertTrue(nodesToRender.get(index.getEdgeTarget(e)));
+        }
+        Assert.assertEquals(4, edgesToRender.cardinality());
+
+        Assert.assertEquals(2, result.size());
+        final FanOutCap.Summary realizations = result.get(0);
+        Assert.assertEquals(EdgeType.REALIZATION, realizations.getType());
+        Assert.assertFalse(realizations.isOutgoing());
+        Assert.assertEquals(Arrays.asList("org.far.FarB", "org.far.FarC"), realizations.getNames());
+        Assert.assertEquals("+2 more", realizations.getLabel());
+        Assert.assertEquals("apivizMore_REALIZATION_in", realizations.getDotId());
+        Assert.assertEquals("org.far.FarB, org.far.FarC", realizations.getTooltip());
+
+        final FanOutCap.Summary dependencies = result.get(1);
+        Assert.assertEquals(EdgeType.DEPENDENCY, dependencies.getType());
+        Assert.assertEquals(Arrays.asList("org.far.User"), dependencies.getNames());
+    }
+
+    @Test
+    public void validateNameOrderBreaksTiesAndSummariesAreSplitByDirection() {
+
+        // Assemble
+        final ClassDoc hub = mockClass("org.hub", "Hub", true);
+        addEdge(EdgeType.DEPENDENCY, hub, mockClass("org.far", "UsedB", true));
+        addEdge(EdgeType.DEPENDENCY, hub, mockClass("org.far", "UsedA", true));
+        addEdge(EdgeType.DEPENDENCY, mockClass("org.far", "UserA", true), hub);
+        addEdge(EdgeType.DEPENDENCY, mockClass("org.far", "UserB", true), hub);
+        final GraphIndex index = new GraphIndex(classes, edges);
+        final BitSet nodesToRender = all(index.getNumNodes());
+        final BitSet edgesToRender = all(index.getNumEdges());
+
+        // Act
+        final List<FanOutCap.Summary> result = FanOutCap.apply(index, index.getNodeId(hub), 1,
+                nodesToRender, edgesToRender);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList("org.far.UsedA", "org.hub.Hub"), getNames(index, nodesToRender));
+        Assert.assertEquals(2, result.size());
+        Assert.assertFalse(result.get(0).isOutgoing());
+        Assert.assertEquals(Arrays.asList("org.far.UserA", "org.far.UserB"), result.get(0).getNames());
+        Assert.assertTrue(result.get(1).isOutgoing());
+        Assert.assertEquals("apivizMore_DEPENDENCY_out", result.get(1).getDotId());
+        Assert.assertEquals(Arrays.asList("org.far.UsedB"), result.get(1).getNames());
+    }
+
+    @Test
+    public void validateTooltipListsLimitedNumberOfNames() {
+
+        // Assemble
+        final ClassDoc hub = mockClass("org.hub", "Hub", true);
+        final int numImplementations = FanOutCap.MAX_TOOLTIP_NAMES + 5;
+        for (int i = 0; i < numImplementations; i++) {
+            addEdge(EdgeType.REALIZATION, mockClass("org.hub", String.format("Impl%02d", i), true), hub);
+        }
+        final GraphIndex index = new GraphIndex(classes, edges);
+
+        // Act
+        final List<FanOutCap.Summary> result = FanOutCap.apply(index, index.getNodeId(hub), 0,
+                all(index.getNumNodes()), all(index.getNumEdges()));
+
+        // Assert
+        Assert.assertEquals(1, result.size());
+        Assert.assertEquals("+" + numImplementations + " more", result.get(0).getLabel());
+        final String tooltip = result.get(0).getTooltip();
+        Assert.assertTrue(tooltip.startsWith("org.hub.Impl00, org.hub.Impl01, "));
+        Assert.assertTrue(tooltip.endsWith("org.hub.Impl19, ..."));
+        Assert.assertFalse(tooltip.contains("Impl20"));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private void addEdge(final EdgeType type, final ClassDoc source, final ClassDoc target) {
+        edges.add(new Edge(type, source, target));
+    }
+
+    private static BitSet all(final int size) {
+        final BitSet toReturn = new BitSet(size);
+        toReturn.set(0, size);
+        return toReturn;
+    }
+
+    private static List<String> getNames(final GraphIndex index, final BitSet nodes) {
+        final List<String> toReturn = new ArrayList<String>();
+        for (int node = nodes.nextSetBit(0); node >= 0; node = nodes.nextSetBit(node + 1)) {
+            toReturn.add(index.getQualifiedName(node));
+        }
+        return toReturn;
+    }
+
+    private ClassDoc mockClass(final String packageName, final String name, final boolean included) {
+
+        PackageDoc pkg = packages.get(packageName);
+        if (pkg == null) {
+            pkg = (PackageDoc) mock(PackageDoc.class, packageName, packageName, null, false);
+            packages.put(packageName, pkg);
+        }
+
+        final ClassDoc toReturn = (ClassDoc) mock(ClassDoc.class, packageName + "." + name, name, pkg, included);
+        classes.add(toReturn);
+        return toReturn;
+    }
+
+    private static Object mock(final Class<?> type,
+                               final String qualifiedName,
+                               final String name,
+                               final PackageDoc containingPackage,
+                               final boolean included) {
+
+        return Proxy.newProxyInstance(FanOutCapTest.class.getClassLoader(), new Class<?>[]{type},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final String methodName = method.getName();
+                        if ("qualifiedName".equals(methodName) || "toString".equals(methodName)) {
+                            return qualifiedName;
+                        } else if ("name".equals(methodName)) {
+                            return name;
+                        } else if ("containingPackage".equals(methodName)) {
+                            return containingPackage;
+                        } else if ("isIncluded".equals(methodName)) {
+                            return included;
+                        } else if ("hashCode".equals(methodName)) {
+                            return System.identityHashCode(proxy);
+                        } else if ("equals".equals(methodName)) {
+                            return proxy == args[0];
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,372 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.PackageDoc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class GraphIndexTest {
+
+    private static final Map<String, PackageDoc> PACKAGES = new HashMap<String, PackageDoc>();
+
+    @Test
+    public void validateIndexMatchesSortedCollectionModel() {
+
+        // Assemble
+        final Random random = new Random(4711);
+        final List<ClassDoc> classes = new ArrayList<ClassDoc>();
+        for (int i = 0; i < 40; i++) {
+            classes.add(mockClass("org.example.p" + random.nextInt(4), "C" + i));
+        }
+        final List<ClassDoc> members = classes.subList(0, 30);
+        final EdgeType[] types = EdgeType.values();
+        final String[] labels = {"", "1", "*", "uses"};
+        final List<Edge> edges = new ArrayList<Edge>();
+        for (int i = 0; i < 400; i++) {
+            final ClassDoc source = members.get(random.nextInt(members.size()));
+            final ClassDoc target = classes.get(random.nextInt(classes.size()));
+            edges.add(new Edge(types[random.nextInt(types.length)], source, target,
+                    labels[random.nextInt(2)], labels[random.nextInt(2)], labels[random.nextInt(labels.length)],
+                    random.nextBoolean()));
+        }
+        for (int i = 0; i < 50; i++) {
+            final Edge duplicated = edges.get(random.nextInt(edges.size()));
+            edges.add(new Edge(duplicated.getType(), duplicated.getSource(), duplicated.getTarget(),
+                    duplicated.getSourceLabel(), duplicated.getTargetLabel(), duplicated.getEdgeLabel(),
+                    duplicated.isOneway()));
+        }
+
+        // The model replaced by the GraphIndex: sorted maps of nodes, and sorted sets of edges per node.
+        final Map<String, ClassDoc> sortedNodes = new TreeMap<String, ClassDoc>();
+        for (ClassDoc current : members) {
+            sortedNodes.put(current.qualifiedName(), current);
+        }
+        final Set<Edge> sortedEdges = new TreeSet<Edge>();
+        final Map<String, Set<Edge>> forward = new TreeMap<String, Set<Edge>>();
+        final Map<String, Set<Edge>> reverse = new TreeMap<String, Set<Edge>>();
+        final Set<String> allNames = new TreeSet<String>(sortedNodes.keySet());
+        for (Edge current : edges) {
+            sortedEdges.add(current);
+            addEdge(forward, ((ClassDoc) current.getSource()).qualifiedName(), current);
+            addEdge(reverse, ((ClassDoc) current.getTarget()).qualifiedName(), current);
+            allNames.add(((ClassDoc) current.getTarget()).qualifiedName());
+        }
+
+        // Act
+        final GraphIndex unitUnderTest = new GraphIndex(members, edges);
+
+        // Assert
+        Assert.assertEquals(new ArrayList<String>(allNames), getNodeNames(unitUnderTest));
+        for (String current : sortedNodes.keySet()) {
+            Assert.assertTrue(unitUnderTest.isMember(unitUnderTest.getNodeId(current)));
+        }
+
+        Assert.assertTrue(sortedEdges.size() < edges.size());
+        Assert.assertEquals(sortedEdges.size(), unitUnderTest.getNumEdges());
+        Assert.assertEquals(describe(sortedEdges), describeEdges(unitUnderTest, allEdgeIds(unitUnderTest)));
+
+        for (int node = 0; node < unitUnderTest.getNumNodes(); node++) {
+            final String name = unitUnderTest.getQualifiedName(node);
+            final List<Integer> outgoing = new ArrayList<Integer>();
+            for (int i = 0; i < unitUnderTest.getNumOutgoingEdges(node); i++) {
+                outgoing.add(unitUnderTest.getOutgoingEdge(node, i));
+            }
+            final List<Integer> incoming = new ArrayList<Integer>();
+            for (int i = 0; i < unitUnderTest.getNumIncomingEdges(node); i++) {
+                incoming.add(unitUnderTest.getIncomingEdge(node, i));
+            }
+
+            Assert.assertEquals(describe(forward.get(name)), describeEdges(unitUnderTest, outgoing));
+            Assert.assertEquals(describe(reverse.get(name)), describeEdges(unitUnderTest, incoming));
+        }
+    }
+
+    @Test
+    public void validateFirstClassAddedWinsOnNameClash() {
+
+        // Assemble
+        final ClassDoc member = mockClass("org.example", "A");
+        final ClassDoc sameNameAsMember = mockClass("org.example", "A");
+        final ClassDoc firstEndpoint = mockClass("org.other", "B");
+        final ClassDoc secondEndpoint = mockClass("org.other", "B");
+        final List<Edge> edges = Arrays.asList(
+                new Edge(EdgeType.DEPENDENCY, sameNameAsMember, firstEndpoint),
+                new Edge(EdgeType.DEPENDENCY, member, secondEndpoint));
+
+        // Act
+        final GraphIndex unitUnderTest = new GraphIndex(Arrays.asList(member), edges);
+
+        // Assert
+        Assert.assertEquals(2, unitUnderTest.getNumNodes());
+        Assert.assertSame(member, unitUnderTest.getNode(unitUnderTest.getNodeId("org.example.A")));
+        Assert.assertSame(firstEndpoint, unitUnderTest.getNode(unitUnderTest.getNodeId("org.other.B")));
+        Assert.assertEquals(1, unitUnderTest.getNumEdges());
+    }
+
+    @Test
+    public void validatePackageMembersExcludeRelatedClasses() {
+
+        // Assemble
+        final ClassDoc a = mockClass("org.example", "A");
+        final ClassDoc b = mockClass("org.example", "B");
+        final ClassDoc other = mockClass("org.other", "Other");
+        final ClassDoc external = mockClass("org.example", "External");
+        final List<Edge> edges = Arrays.asList(
+                new Edge(EdgeType.GENERALIZATION, b, a),
+                new Edge(EdgeType.DEPENDENCY, other, external));
+
+        // Act
+        final GraphIndex unitUnderTest = new GraphIndex(Arrays.asList(b, a, other), edges);
+
+        // Assert
+        final int pkgId = unitUnderTest.getPackageId("org.example");
+        Assert.assertEquals(2, unitUnderTest.getNumPackageMembers(pkgId));
+        Assert.assertEquals("org.example.A",
+                unitUnderTest.getQualifiedName(unitUnderTest.getPackageMember(pkgId, 0)));
+        Assert.assertEquals("org.example.B",
+                unitUnderTest.getQualifiedName(unitUnderTest.getPackageMember(pkgId, 1)));
+        Assert.assertEquals(1, unitUnderTest.getNumPackageMembers(unitUnderTest.getPackageId("org.other")));
+        Assert.assertEquals(-1, unitUnderTest.getPackageId("org.unknown"));
+    }
+
+    @Test
+    public void validatePackageIndexMatchesScanningAllNodes() {
+
+        // Assemble
+        final int numPackages = 100;
+        final int numClassesPerPackage = 10;
+        final GraphIndex unitUnderTest = createPackageGraph(numPackages, numClassesPerPackage);
+        final PackageDoc[] packages = getPackages(unitUnderTest, numPackages);
+
+        // Act
+        final List<Integer> scannedMembers = new ArrayList<Integer>();
+        for (PackageDoc pkg : packages) {
+            scanPackageMembers(unitUnderTest, pkg, scannedMembers);
+        }
+
+        final List<Integer> indexedMembers = new ArrayList<Integer>();
+        for (PackageDoc pkg : packages) {
+            final int pkgId = unitUnderTest.getPackageId(pkg.name());
+            for (int i = 0; i < unitUnderTest.getNumPackageMembers(pkgId); i++) {
+                final int node = unitUnderTest.getPackageMember(pkgId, i);
+                Assert.assertSame(pkg, unitUnderTest.getPackage(node));
+                indexedMembers.add(node);
+            }
+        }
+
+        // Assert
+        Assert.assertEquals(numPackages * numClassesPerPackage, scannedMembers.size());
+        Assert.assertEquals(scannedMembers, indexedMembers);
+    }
+
+    /**
+     * Benchmarks finding the members of 1000 packages using the package index against scanning all nodes.
+     * As wall-clock timings depend on the machine, the benchmark is not part of the test run, but is launched
+     * explicitly using the test classpath, i.e. {@code java -cp <test classpath> org.jboss.apiviz.GraphIndexTest}.
+     *
+     * @param args Ignored.
+     */
+    public static void main(final String[] args) {
+
+        final int numPackages = 1000;
+        final GraphIndex index = createPackageGraph(numPackages, 10);
+        final PackageDoc[] packages = getPackages(index, numPackages);
+
+        for (int round = 1; round <= 3; round++) {
+
+            final long scanStart = System.nanoTime();
+            final List<Integer> scannedMembers = new ArrayList<Integer>();
+            for (PackageDoc pkg : packages) {
+                scanPackageMembers(index, pkg, scannedMembers);
+            }
+            final long scanNanos = System.nanoTime() - scanStart;
+
+            final long indexStart = System.nanoTime();
+            final List<Integer> indexedMembers = new ArrayList<Integer>();
+            for (PackageDoc pkg : packages) {
+                final int pkgId = index.getPackageId(pkg.name());
+                for (int i = 0; i < index.getNumPackageMembers(pkgId); i++) {
+                    indexedMembers.add(index.getPackageMember(pkgId, i));
+                }
+            }
+            final long indexNanos = System.nanoTime() - indexStart;
+
+            System.out.println("Round " + round + ": found the " + indexedMembers.size() + " members of "
+                    + numPackages + " packages: " + (scanNanos / 1000000) + " ms by scanning all nodes, "
+                    + (indexNanos / 1000000) + " ms by the package index.");
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Creates the index of a graph of packages, each holding a chain of classes extending one another.
+     */
+    private static GraphIndex createPackageGraph(final int numPackages, final int numClassesPerPackage) {
+
+        final List<ClassDoc> classes = new ArrayList<ClassDoc>();
+        final List<Edge> edges = new ArrayList<Edge>();
+        for (int pkg = 0; pkg < numPackages; pkg++) {
+            ClassDoc previous = null;
+            for (int cls = 0; cls < numClassesPerPackage; cls++) {
+                final ClassDoc current = mockClass("org.example.p" + pkg, "C" + cls);
+                classes.add(current);
+                if (previous != null) {
+                    edges.add(new Edge(EdgeType.GENERALIZATION, current, previous));
+                }
+                previous = current;
+            }
+        }
+        return new GraphIndex(classes, edges);
+    }
+
+    private static PackageDoc[] getPackages(final GraphIndex index, final int numPackages) {
+
+        final PackageDoc[] toReturn = new PackageDoc[numPackages];
+        for (int pkg = 0; pkg < numPackages; pkg++) {
+            toReturn[pkg] = index.getNode(index.getNodeId("org.example.p" + pkg + ".C0")).containingPackage();
+        }
+        return toReturn;
+    }
+
+    /**
+     * Finds the members of the supplied package the way the package summary diagrams did before the package
+     * index, i.e. by scanning all nodes.
+     */
+    private static void scanPackageMembers(final GraphIndex index, final PackageDoc pkg, final List<Integer> members) {
+        for (int node = 0; node < index.getNumNodes(); node++) {
+            if (index.isMember(node) && index.getNode(node).containingPackage() == pkg) {
+                members.add(node);
+            }
+        }
+    }
+
+    private static void addEdge(final Map<String, Set<Edge>> adjacency, final String node, final Edge edge) {
+        Set<Edge> edges = adjacency.get(node);
+        if (edges == null) {
+            edges = new TreeSet<Edge>();
+            adjacency.put(node, edges);
+        }
+        edges.add(edge);
+    }
+
+    private static List<String> getNodeNames(final GraphIndex index) {
+        final List<String> toReturn = new ArrayList<String>();
+        for (int node = 0; node < index.getNumNodes(); node++) {
+            toReturn.add(index.getQualifiedName(node));
+        }
+        return toReturn;
+    }
+
+    private static List<Integer> allEdgeIds(final GraphIndex index) {
+        final List<Integer> toReturn = new ArrayList<Integer>();
+        for (int edge = 0; edge < index.getNumEdges(); edge++) {
+            toReturn.add(edge);
+        }
+        return toReturn;
+    }
+
+    private static List<String> describe(final Set<Edge> edges) {
+        final List<String> toReturn = new ArrayList<String>();
+        if (edges != null) {
+            for (Edge current : edges) {
+                toReturn.add(current.getType() + " " + ((ClassDoc) current.getSource()).qualifiedName()
+                        + " " + ((ClassDoc) current.getTarget()).qualifiedName() + " " + current.isOneway()
+                        + " [" + current.getEdgeLabel() + "|" + current.getSourceLabel()
+                        + "|" + current.getTargetLabel() + "]");
+            }
+        }
+        return toReturn;
+    }
+
+    private static List<String> describeEdges(final GraphIndex index, final List<Integer> edges) {
+        final List<String> toReturn = new ArrayList<String>();
+        for (int edge : edges) {
+            toReturn.add(index.getEdgeType(edge) + " " + index.getQualifiedName(index.getEdgeSource(edge))
+                    + " " + index.getQualifiedName(index.getEdgeTarget(edge)) + " " + index.isOneway(edge)
+                    + " [" + index.getEdgeLabel(edge) + "|" + index.getSourceLabel(edge)
+                    + "|" + index.getTargetLabel(edge) + "]");
+        }
+        return toReturn;
+    }
+
+    private static ClassDoc mockClass(final String packageName, final String name) {
+        return (ClassDoc) mock(ClassDoc.class, packageName + "." + name, name, mockPackage(packageName));
+    }
+
+    private static PackageDoc mockPackage(final String packageName) {
+        PackageDoc toReturn = PACKAGES.get(packageName);
+        if (toReturn == null) {
+            toReturn = (PackageDoc) mock(PackageDoc.class, packageName, packageName, null);
+            PACKAGES.put(packageName, toReturn);
+        }
+        return toReturn;
+    }
+
+    private static Object mock(final Class<?> type,
+                               final String qualifiedName,
+                               final String name,
+                               final PackageDoc containingPackage) {
+
+        return Proxy.newProxyInstance(GraphIndexTest.class.getClassLoader(), new Class<?>[]{type},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final String methodName = method.getName();
+                        if ("qualifiedName".equals(methodName) || "toString".equals(methodName)) {
+                            return qualifiedName;
+                        } else if ("name".equals(methodName)) {
+                            return name;
+                        } else if ("containingPackage".equals(methodName)) {
+                            return containingPackage;
+                        } else if ("isIncluded".equals(methodName)) {
+                            return true;
+                        } else if ("hashCode".equals(methodName)) {
+                            return System.identityHashCode(proxy);
+                        } else if ("equals".equals(methodName)) {
+                            return proxy == args[0];
+                        }
+                        return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class GraphSnapshotTest {
+
+    // Shared state
+    private File snapshotFile;
+
+    @Before
+    public void setupSharedState() throws IOException {
+        snapshotFile = new File(Files.createTempDirectory("apiviz-snapshot").toFile(), GraphSnapshot.FILENAME);
+    }
+
+    @After
+    public void teardownSharedState() {
+        snapshotFile.delete();
+        snapshotFile.getParentFile().delete();
+    }
+
+    @Test
+    public void validateReadingWrittenSnapshot() throws IOException {
+
+        // Assemble
+        final GraphSnapshot unitUnderTest = new GraphSnapshot("2.38");
+        unitUnderTest.putNode("foo.Bar", "fingerprint-1", false);
+        unitUnderTest.putNode("foo.Baz", "fingerprint-2", true);
+        unitUnderTest.putEdge("SUBCLASS_OF foo_Baz foo_Bar");
+        unitUnderTest.putDiagram("foo/Bar", "diagram-1", "<map name=\"APIVIZ\"></map>");
+
+        // Act
+        unitUnderTest.write(snapshotFile);
+        final GraphSnapshot result = GraphSnapshot.read(snapshotFile, "2.38");
+
+        // Assert
+        Assert.assertEquals(2, result.getNumNodes());
+        Assert.assertEquals(0, result.countChangedNodes(unitUnderTest));
+        Assert.assertEquals(0, result.countChangedEdges(unitUnderTest));
+        Assert.assertEquals("<map name=\"APIVIZ\"></map>", result.getImageMap("foo/Bar", "diagram-1"));
+        Assert.assertNull(result.getImageMap("foo/Bar", "diagram-2"));
+    }
+
+    @Test
+    public void validateSnapshotWithOtherSaltIsIgnored() throws IOException {
+
+        // Assemble
+        final GraphSnapshot unitUnderTest = new GraphSnapshot("2.38");
+        unitUnderTest.putNode("foo.Bar", "fingerprint-1", false);
+        unitUnderTest.putDiagram("foo/Bar", "diagram-1", "map");
+
+        final GraphSnapshot current = new GraphSnapshot("2.40");
+        current.putNode("foo.Bar", "fingerprint-1", false);
+
+        // Act
+        unitUnderTest.write(snapshotFile);
+        final GraphSnapshot result = GraphSnapshot.read(snapshotFile, "2.40");
+
+        // Assert
+        Assert.assertEquals(0, result.getNumNodes());
+        Assert.assertEquals(1, result.countChangedNodes(current));
+        Assert.assertNull(result.getImageMap("foo/Bar", "diagram-1"));
+    }
+
+    @Test
+    public void validateDamagedStringLengthsYieldEmptySnapshot() throws IOException {
+
+        // Assemble
+        final GraphSnapshot unitUnderTest = new GraphSnapshot("2.38");
+        unitUnderTest.putNode("foo.Bar", "fingerprint-1", false);
+        unitUnderTest.write(snapshotFile);
+
+        // Act & Assert
+        for (int damagedLength : new int[]{-1, Integer.MAX_VALUE}) {
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(
+                    new FileOutputStream(snapshotFile)))) {
+                out.writeInt(0x41505653);
+                out.writeInt(1);
+                out.writeInt(damagedLength);
+            }
+            Assert.assertEquals(0, GraphSnapshot.read(snapshotFile, "2.38").getNumNodes());
+        }
+    }
+}
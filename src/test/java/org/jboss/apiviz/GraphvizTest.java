@@ -25,6 +25,14 @@ package org.jboss.apiviz;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  *
  * @author bsneade
@@ -48,4 +56,90 @@ public class GraphvizTest {
             Assert.assertTrue(currentFirstLine.matches(Graphviz.GRAPHVIZ_EXECUTABLE_FIRST_LINE_CHECK));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void validateSplittingBatchedImages() throws IOException {
+
+        // Assemble
+        final File directory = Files.createTempDirectory("apiviz-graphviz").toFile();
+        final byte[] first = createPng(3);
+        final byte[] second = createPng(300);
+        final File batchFile = new File(directory, "batch.png");
+        Files.write(batchFile.toPath(), concatenate(first, second));
+        final List<File> pngFiles = Arrays.asList(new File(directory, "A.png"), new File(directory, "B.png"));
+
+        // Act
+        Graphviz.splitImages(batchFile, pngFiles);
+
+        // Assert
+        Assert.assertArrayEquals(first, Files.readAllBytes(pngFiles.get(0).toPath()));
+        Assert.assertArrayEquals(second, Files.readAllBytes(pngFiles.get(1).toPath()));
+    }
+
+    @Test
+    public void validateSplittingBatchedMaps() throws IOException {
+
+        // Assemble
+        final String first = "<map id=\"APIVIZ\" name=\"APIVIZ\">\n"
+                + "<area shape=\"rect\" id=\"node1\" href=\"A.html\" title=\"A\" coords=\"5,5,30,30\"/>\n"
+                + "</map>\n";
+        final String second = "<map id=\"APIVIZ\" name=\"APIVIZ\">\n</map>\n";
+
+        // Act
+        final List<String> result = Graphviz.splitMarkup(first + second, "</map>", 2);
+
+        // Assert
+        Assert.assertEquals(Arrays.asList(first, second), result);
+    }
+
+    @Test(expected = IOException.class)
+    public void validateExceptionOnMissingBatchedMap() throws IOException {
+
+        // Act & Assert
+        Graphviz.splitMarkup("<map id=\"APIVIZ\" name=\"APIVIZ\">\n</map>\n", "</map>", 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void validateExceptionOnMissingBatchedImage() throws IOException {
+
+        // Assemble
+        final File directory = Files.createTempDirectory("apiviz-graphviz").toFile();
+        final File batchFile = new File(directory, "batch.png");
+        Files.write(batchFile.toPath(), createPng(10));
+
+        // Act & Assert
+        Graphviz.splitImages(batchFile, Arrays.asList(new File(directory, "A.png"), new File(directory, "B.png")));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static byte[] createPng(final int dataLength) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0x89504E470D0A1A0AL);
+
+        // A chunk whose data (and CRC) holds the bytes of the IEND type, which must not end the image.
+        out.writeInt(dataLength);
+        out.writeBytes("IDAT");
+        for (int i = 0; i < dataLength; i++) {
+            out.writeByte("IEND".charAt(i % 4));
+        }
+        out.writeBytes("IEND");
+
+        out.writeInt(0);
+        out.writeBytes("IEND");
+        out.writeInt(0xAE426082);
+        out.close();
+
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concatenate(final byte[] first, final byte[] second) {
+        final byte[] toReturn = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, toReturn, first.length, second.length);
+        return toReturn;
+    }
+}
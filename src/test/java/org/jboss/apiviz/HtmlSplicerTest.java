@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class HtmlSplicerTest {
+
+    private static final Pattern INSERTION_POINT_PATTERN = Pattern.compile(
+            "((<\\/PRE>)(?=\\s*(<P>|<div[^>]*block))|(?=<TABLE BORDER=\"1\")|(<div[^>]*contentContainer[^>]*>))",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String[] FRAGMENTS = {"</PRE>", "</pre>", " ", "\n", "\t", "<P>", "<p>", "<div",
+            " class=\"block\"", "BLOCK", ">", "<TABLE BORDER=\"1\"", "<table border=\"1\"", "<table", "contentContainer",
+            "CONTENTCONTAINER", "x", "<", "\u00e9", "\u00ff"};
+
+    // Shared state
+    private File htmlFile;
+
+    @Before
+    public void setupSharedState() throws IOException {
+        htmlFile = Files.createTempFile("apiviz-page", ".html").toFile();
+    }
+
+    @Test
+    public void validateContentInsertedAfterContentContainer() throws IOException {
+
+        // Assemble
+        FileUtil.writeFile(htmlFile, "<html><body>\n<div class=\"header\">\u00e9</div>\n"
+                + "<div class=\"contentContainer\">\n<div class=\"description\">...</div></body></html>");
+
+        // Act
+        HtmlSplicer.splice(htmlFile, "<img src=\"A.png\">".getBytes(FileUtil.DEFAULT_CHARSET));
+
+        // Assert
+        Assert.assertEquals("<html><body>\n<div class=\"header\">\u00e9</div>\n"
+                        + "<div class=\"contentContainer\"><img src=\"A.png\">\n"
+                        + "<div class=\"description\">...</div></body></html>",
+                FileUtil.readFile(htmlFile));
+        Assert.assertFalse(new File(htmlFile.getPath() + ".tmp").exists());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void validateExceptionOnMissingInsertionPoint() throws IOException {
+
+        // Assemble
+        FileUtil.writeFile(htmlFile, "<html><body><div class=\"content\"></div></body></html>");
+
+        // Act & Assert
+        HtmlSplicer.splice(htmlFile, new byte[]{'x'});
+    }
+
+    @Test
+    public void validateSameInsertionPointAsRegularExpression() throws IOException {
+
+        final Random random = new Random(4711);
+        for (int i = 0; i < 2000; i++) {
+
+            // Assemble
+            final StringBuilder page = new StringBuilder();
+            for (int length = random.nextInt(40); length > 0; length--) {
+                page.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            FileUtil.writeFile(htmlFile, page.toString());
+
+            final Matcher matcher = INSERTION_POINT_PATTERN.matcher(page);
+            final long expected = matcher.find() ? matcher.end() : -1;
+
+            // Act
+            final long result;
+            try (FileChannel channel = FileChannel.open(htmlFile.toPath(), StandardOpenOption.READ)) {
+                result = HtmlSplicer.findInsertionPoint(channel, 1 + random.nextInt(16));
+            }
+
+            // Assert
+            Assert.assertEquals("Page: " + page, expected, result);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class LayoutPolicyTest {
+
+    @Test
+    public void validateTierChosenFromDiagramSize() {
+
+        // Assemble
+        final LayoutPolicy unitUnderTest = new LayoutPolicy(null);
+
+        // Act & Assert
+        Assert.assertEquals(LayoutPolicy.Tier.SMALL, unitUnderTest.choose(3, 2));
+        Assert.assertEquals(LayoutPolicy.Tier.SMALL, unitUnderTest.choose(40, 80));
+        Assert.assertEquals(LayoutPolicy.Tier.MEDIUM, unitUnderTest.choose(41, 10));
+        Assert.assertEquals(LayoutPolicy.Tier.MEDIUM, unitUnderTest.choose(10, 81));
+        Assert.assertEquals(LayoutPolicy.Tier.LARGE, unitUnderTest.choose(300, 900));
+        Assert.assertEquals("Diagram layout tiers: 2 small, 2 medium, 1 large", unitUnderTest.toString());
+    }
+
+    @Test
+    public void validateForcedTierOverridesDiagramSize() {
+
+        // Assemble
+        final LayoutPolicy unitUnderTest = new LayoutPolicy(LayoutPolicy.Tier.SMALL);
+
+        // Act & Assert
+        Assert.assertEquals(LayoutPolicy.Tier.SMALL, unitUnderTest.choose(300, 900));
+        Assert.assertEquals(LayoutPolicy.Tier.LARGE, LayoutPolicy.Tier.parse(" Large "));
+        Assert.assertNull(LayoutPolicy.Tier.parse(LayoutPolicy.AUTOMATIC));
+    }
+
+    @Test
+    public void validateSmallTierKeepsExhaustiveLayout() throws IOException {
+
+        // Assemble
+        final StringWriter out = new StringWriter();
+
+        // Act
+        LayoutPolicy.writeAttributes(out, LayoutPolicy.Tier.SMALL, 1024, 3, 2);
+
+        // Assert
+        final String result = out.toString();
+        Assert.assertTrue(result.startsWith("/* APIviz layout tier: small (3 nodes, 2 edges) */"));
+        Assert.assertTrue(result.contains("mclimit=1024;"));
+        Assert.assertTrue(result.contains("remincross=true;"));
+        Assert.assertTrue(result.contains("searchsize=65536;"));
+        Assert.assertTrue(result.contains("splines=polyline;"));
+    }
+}
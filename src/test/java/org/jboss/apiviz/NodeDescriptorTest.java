@@ -0,0 +1,168 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.Tag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class NodeDescriptorTest {
+
+    @Test
+    public void validateSplittingPackageNames() {
+
+        // Act & Assert
+        Assert.assertEquals("[org, example, sub]", Arrays.toString(NodeDescriptor.splitPackageName("org.example.sub")));
+        Assert.assertEquals("[org]", Arrays.toString(NodeDescriptor.splitPackageName("org")));
+        Assert.assertEquals("[]", Arrays.toString(NodeDescriptor.splitPackageName("")));
+        Assert.assertEquals(1, NodeDescriptor.splitPackageName("").length);
+    }
+
+    @Test
+    public void validateRelativeHrefs() {
+
+        // Assemble
+        final NodeDescriptor unitUnderTest = new NodeDescriptor(
+                mockClass("org.example.sub", "Foo", true, attributes()), descriptor());
+
+        // Act & Assert
+        Assert.assertEquals("Foo.html", unitUnderTest.getHref(NodeDescriptor.splitPackageName("org.example.sub")));
+        Assert.assertEquals("sub/Foo.html", unitUnderTest.getHref(NodeDescriptor.splitPackageName("org.example")));
+        Assert.assertEquals("../sub/Foo.html",
+                unitUnderTest.getHref(NodeDescriptor.splitPackageName("org.example.other")));
+        Assert.assertEquals("../../../org/example/sub/Foo.html",
+                unitUnderTest.getHref(NodeDescriptor.splitPackageName("net.other.pkg")));
+        Assert.assertNull(new NodeDescriptor(mockClass("org.example", "Bar", false, attributes()), descriptor())
+                .getHref(NodeDescriptor.splitPackageName("org.example")));
+    }
+
+    @Test
+    public void validateLabelsAndStereotypes() {
+
+        // Assemble
+        final NodeDescriptor anInterface = new NodeDescriptor(
+                mockClass("org.example", "Service", true, attributes("isInterface", "isAbstract")), descriptor());
+        final NodeDescriptor anAbstractClass = new NodeDescriptor(
+                mockClass("org.example", "AbstractService", true, attributes("isAbstract")), descriptor());
+
+        // Act & Assert
+        Assert.assertEquals("interface", anInterface.getStereotype());
+        Assert.assertEquals("&#171;interface&#187;\\nService", anInterface.getLabel(true));
+        Assert.assertEquals("&#171;interface&#187;\\nService\\n(org.example)", anInterface.getLabel(false));
+        Assert.assertFalse(anInterface.isAbstractClass());
+        Assert.assertNull(anAbstractClass.getStereotype());
+        Assert.assertEquals("AbstractService", anAbstractClass.getTooltip(true));
+        Assert.assertTrue(anAbstractClass.isAbstractClass());
+    }
+
+    @Test
+    public void validateNaturalSortOrder() {
+
+        // Assemble
+        final List<NodeDescriptor> nodes = new ArrayList<NodeDescriptor>();
+        nodes.add(new NodeDescriptor(mockClass("p", "Plain", true, attributes()), descriptor()));
+        nodes.add(new NodeDescriptor(mockClass("p", "Failure", true, attributes("isException")), descriptor()));
+        nodes.add(new NodeDescriptor(mockClass("p", "Service", true, attributes("isInterface")), descriptor()));
+        nodes.add(new NodeDescriptor(mockClass("p", "Marker", true, attributes("isAnnotationType")), descriptor()));
+        nodes.add(new NodeDescriptor(mockClass("p", "Kind", true, attributes("isEnum")), descriptor()));
+        nodes.add(new NodeDescriptor(mockClass("p", "Utils", true, attributes("static")), descriptor()));
+
+        // Act
+        Collections.sort(nodes, new ClassDocComparator(false));
+
+        // Assert
+        final List<String> names = new ArrayList<String>();
+        for (NodeDescriptor current : nodes) {
+            names.add(current.getName());
+        }
+        Assert.assertEquals(Arrays.asList("Marker", "Kind", "Utils", "Service", "Plain", "Failure"), names);
+        Assert.assertEquals("static", nodes.get(2).getStereotype());
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static Map<String, Object> attributes(final String... trueAttributes) {
+        final Map<String, Object> toReturn = new HashMap<String, Object>();
+        for (String current : trueAttributes) {
+            toReturn.put(current, Boolean.TRUE);
+        }
+        return toReturn;
+    }
+
+    private static DocDescriptor descriptor() {
+        return new DocDescriptor((ClassDoc) mock(ClassDoc.class, new HashMap<String, Object>()));
+    }
+
+    private static ClassDoc mockClass(final String packageName,
+                                      final String name,
+                                      final boolean included,
+                                      final Map<String, Object> attributes) {
+
+        final Map<String, Object> packageAttributes = new HashMap<String, Object>();
+        packageAttributes.put("name", packageName);
+
+        final Map<String, Object> methodAttributes = new HashMap<String, Object>();
+        methodAttributes.put("isStatic", Boolean.TRUE);
+
+        attributes.put("name", name);
+        attributes.put("qualifiedName", packageName + "." + name);
+        attributes.put("isIncluded", included);
+        attributes.put("containingPackage", mock(PackageDoc.class, packageAttributes));
+        attributes.put("methods", attributes.containsKey("static")
+                ? new MethodDoc[]{(MethodDoc) mock(MethodDoc.class, methodAttributes)}
+                : new MethodDoc[0]);
+        attributes.put("tags", new Tag[0]);
+        return (ClassDoc) mock(ClassDoc.class, attributes);
+    }
+
+    private static Object mock(final Class<?> type, final Map<String, Object> attributes) {
+        return Proxy.newProxyInstance(NodeDescriptorTest.class.getClassLoader(), new Class<?>[]{type},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final Object toReturn = attributes.get(method.getName());
+                        if (toReturn == null && method.getReturnType() == boolean.class) {
+                            return Boolean.FALSE;
+                        }
+                        return toReturn;
+                    }
+                });
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.Tag;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class RelationshipTagParserTest {
+
+    private final List<String> lookups = new ArrayList<String>();
+    private final List<String> warnings = new ArrayList<String>();
+
+    @Test
+    public void validateTokenizing() {
+
+        // Act & Assert
+        Assert.assertEquals("[org.example.Foo]",
+                Arrays.toString(RelationshipTagParser.tokenize("\n\t org.example.Foo  ")));
+        Assert.assertEquals("[Foo, oneway, , 1..*, owns, many]",
+                Arrays.toString(RelationshipTagParser.tokenize("Foo oneway -\t1..* owns\r\nmany")));
+        Assert.assertEquals("[Foo, , , , -]", Arrays.toString(RelationshipTagParser.tokenize("Foo - - - -")));
+        Assert.assertEquals(0, RelationshipTagParser.tokenize(" \t ").length);
+        Assert.assertEquals(0, RelationshipTagParser.tokenize(null).length);
+    }
+
+    @Test
+    public void validateLabels() {
+
+        // Assemble
+        final ClassDoc source = mockClass("org.example.Source", "Source", null);
+        final ClassDoc foo = mockClass("org.example.Foo", "Foo", null);
+        final RelationshipTagParser unitUnderTest = new RelationshipTagParser(mockRoot(source, foo));
+
+        // Act
+        final Edge plain = unitUnderTest.parse(EdgeType.DEPENDENCY, source, "org.example.Foo");
+        final Edge labelled = unitUnderTest.parse(EdgeType.NAVIGABILITY, source, "org.example.Foo 1 - creates");
+        final Edge oneway = unitUnderTest.parse(EdgeType.NAVIGABILITY, source, "org.example.Foo oneway 1 * has many");
+
+        // Assert
+        Assert.assertSame(foo, plain.getTarget());
+        Assert.assertTrue(plain.isOneway());
+        Assert.assertEquals("", plain.getEdgeLabel());
+        Assert.assertFalse(labelled.isOneway());
+        Assert.assertEquals("1", labelled.getSourceLabel());
+        Assert.assertEquals("", labelled.getTargetLabel());
+        Assert.assertEquals("creates", labelled.getEdgeLabel());
+        Assert.assertTrue(oneway.isOneway());
+        Assert.assertEquals("*", oneway.getTargetLabel());
+        Assert.assertEquals("has many", oneway.getEdgeLabel());
+        Assert.assertEquals(unitUnderTest.parse(EdgeType.DEPENDENCY, source, "org.missing.Foo"),
+                unitUnderTest.parse(EdgeType.DEPENDENCY, source, " org.missing.Foo\t"));
+        Assert.assertEquals(unitUnderTest.parse(EdgeType.DEPENDENCY, source, "org.missing.Foo").getTarget(),
+                new Edge(mockRoot(source, foo), EdgeType.DEPENDENCY, source, " org.missing.Foo\t").getTarget());
+    }
+
+    @Test
+    public void validateResolvingAndMemoizingNames() {
+
+        // Assemble
+        final ClassDoc imported = mockClass("org.other.Imported", "Imported", null);
+        final ClassDoc source = mockClass("org.example.Source", "Source", imported);
+        final ClassDoc unique = mockClass("org.example.Unique", "Unique", null);
+        final ClassDoc first = mockClass("org.example.Twin", "Twin", null);
+        final ClassDoc second = mockClass("org.other.Twin", "Twin", null);
+        final RelationshipTagParser unitUnderTest =
+                new RelationshipTagParser(mockRoot(source, unique, first, second));
+
+        // Act & Assert
+        Assert.assertSame(unique, unitUnderTest.resolve(source, "org.example.Unique"));
+        Assert.assertSame(unique, unitUnderTest.resolve(source, "Unique"));
+        Assert.assertSame(imported, unitUnderTest.resolve(source, "Imported"));
+        Assert.assertNull(unitUnderTest.resolve(unique, "Twin"));
+        Assert.assertNull(unitUnderTest.resolve(unique, "org.missing.Foo"));
+        Assert.assertNull(unitUnderTest.resolve(source, "org.missing.Foo"));
+        Assert.assertEquals(Arrays.asList("Unique", "Imported", "Twin", "org.missing.Foo"), lookups);
+    }
+
+    @Test
+    public void validateDiagnosticsForMalformedTags() {
+
+        // Assemble
+        final ClassDoc source = mockClass("org.example.Source", "Source", null);
+        final RelationshipTagParser unitUnderTest = new RelationshipTagParser(mockRoot(source));
+
+        // Act
+        final Edge missingLabel = unitUnderTest.parse(source, mockTag("@apiviz.has", "org.example.Source 1"));
+        final Edge unknownTarget = unitUnderTest.parse(source, mockTag("@apiviz.uses", "org.missing.Foo 1 2"));
+        final Edge unresolved = unitUnderTest.parse(source, mockTag("@apiviz.owns", "org.missing.Foo"));
+
+        // Assert
+        Assert.assertNull(missingLabel);
+        Assert.assertNull(unknownTarget);
+        Assert.assertEquals(2, warnings.size());
+        Assert.assertTrue(warnings.get(0).startsWith("Invalid relationship syntax: org.example.Source 1 - expected: "
+                + "@apiviz.has <FQCN> [oneway]"));
+        Assert.assertTrue(warnings.get(1).contains("(Unknown package or class name)"));
+        Assert.assertEquals(new UnresolvedClassNode.Registry().forName("org.missing.Foo"), unresolved.getTarget());
+        Assert.assertSame(unresolved.getTarget(),
+                unitUnderTest.parse(source, mockTag("@apiviz.uses", "org.missing.Foo")).getTarget());
+        Assert.assertEquals(EdgeType.AGGREGATION, unresolved.getType());
+        Assert.assertEquals(EdgeType.COMPOSITION, RelationshipTagParser.getEdgeType("@apiviz.composedOf"));
+        Assert.assertNull(RelationshipTagParser.getEdgeType("@apiviz.landmark"));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private RootDoc mockRoot(final ClassDoc... classes) {
+        return (RootDoc) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RootDoc.class},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final String methodName = method.getName();
+                        if ("classes".equals(methodName)) {
+                            return classes;
+                        } else if ("classNamed".equals(methodName)) {
+                            lookups.add((String) args[0]);
+                        } else if ("printWarning".equals(methodName)) {
+                            warnings.add((String) args[args.length - 1]);
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    private static ClassDoc mockClass(final String qualifiedName, final String name, final ClassDoc imported) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        attributes.put("qualifiedName", qualifiedName);
+        attributes.put("name", name);
+        return (ClassDoc) Proxy.newProxyInstance(RelationshipTagParserTest.class.getClassLoader(),
+                new Class<?>[]{ClassDoc.class},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        final String methodName = method.getName();
+                        if ("findClass".equals(methodName)) {
+                            return imported != null && imported.name().equals(args[0]) ? imported : null;
+                        } else if ("hashCode".equals(methodName)) {
+                            return System.identityHashCode(proxy);
+                        } else if ("equals".equals(methodName)) {
+                            return proxy == args[0];
+                        }
+                        return attributes.get(methodName);
+                    }
+                });
+    }
+
+    private static Tag mockTag(final String name, final String text) {
+        return (Tag) Proxy.newProxyInstance(RelationshipTagParserTest.class.getClassLoader(),
+                new Class<?>[]{Tag.class},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        if ("name".equals(method.getName())) {
+                            return name;
+                        }
+                        return "text".equals(method.getName()) ? text : null;
+                    }
+                });
+    }
+}
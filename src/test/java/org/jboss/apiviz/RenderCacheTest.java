@@ -0,0 +1,214 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class RenderCacheTest {
+
+    // Shared state
+    private File cacheDirectory;
+    private File outputDirectory;
+
+    @Before
+    public void setupSharedState() throws IOException {
+        cacheDirectory = Files.createTempDirectory("apiviz-cache").toFile();
+        outputDirectory = Files.createTempDirectory("apiviz-output").toFile();
+    }
+
+    @After
+    public void teardownSharedState() throws IOException {
+        deleteRecursively(cacheDirectory);
+        deleteRecursively(outputDirectory);
+    }
+
+    @Test
+    public void validateKeyDependsOnDiagramAndGraphvizVersion() throws IOException {
+
+        // Assemble
+        final RenderCache unitUnderTest = new RenderCache(cacheDirectory, 1024, "2.38", "cmapx,png");
+        final RenderCache otherVersion = new RenderCache(cacheDirectory, 1024, "2.40", "cmapx,png");
+
+        // Act & Assert
+        Assert.assertEquals(unitUnderTest.getKey("digraph A {}"), unitUnderTest.getKey("digraph A {}"));
+        Assert.assertNotEquals(unitUnderTest.getKey("digraph A {}"), unitUnderTest.getKey("digraph B {}"));
+        Assert.assertNotEquals(unitUnderTest.getKey("digraph A {}"), otherVersion.getKey("digraph A {}"));
+    }
+
+    @Test
+    public void validateStreamedDiagramYieldsSameKey() throws IOException {
+
+        // Assemble
+        final RenderCache unitUnderTest = new RenderCache(cacheDirectory, 1024, "2.38", "cmapx,png");
+        final DiagramSource diagram = new DiagramSource() {
+            public void writeTo(final Writer out) throws IOException {
+                out.write("digraph A {");
+                out.write("\u00e5 -> \u00e4 [label=\"\u00ab\u00bb\"];");
+                out.write("}");
+            }
+        };
+
+        // Act & Assert
+        Assert.assertEquals(unitUnderTest.getKey("digraph A {\u00e5 -> \u00e4 [label=\"\u00ab\u00bb\"];}"),
+                unitUnderTest.getKey(diagram));
+    }
+
+    @Test
+    public void validateRestoringStoredDiagram() throws IOException {
+
+        // Assemble
+        final RenderCache unitUnderTest = new RenderCache(cacheDirectory, 1024, "2.38", "cmapx,png");
+        final String key = unitUnderTest.getKey("digraph A {}");
+        final File pngFile = writeFile("A.png", "png-content");
+        final List<File> pngFiles = Collections.singletonList(pngFile);
+
+        // Act
+        final String missed = unitUnderTest.restore(key, pngFiles);
+        unitUnderTest.store(key, pngFiles, "map-content");
+        pngFile.delete();
+
+        final RenderCache reopened = new RenderCache(cacheDirectory, 1024, "2.38", "cmapx,png");
+        final String hit = reopened.restore(key, pngFiles);
+
+        // Assert
+        Assert.assertNull(missed);
+        Assert.assertEquals("map-content", hit);
+        Assert.assertEquals(1, unitUnderTest.getMisses());
+        Assert.assertEquals(1, reopened.getHits());
+        Assert.assertEquals("png-content", FileUtil.readFile(pngFile));
+    }
+
+    @Test
+    public void validateRestoringStoredDiagramWithoutImages() throws IOException {
+
+        // Assemble
+        final RenderCache unitUnderTest = new RenderCache(cacheDirectory, 1024, "2.38", "svg");
+        final String key = unitUnderTest.getKey("digraph A {}");
+        final List<File> noImages = Collections.emptyList();
+
+        // Act
+        unitUnderTest.store(key, noImages, "<svg></svg>");
+        final String hit = new RenderCache(cacheDirectory, 1024, "2.38", "svg").restore(key, noImages);
+
+        // Assert
+        Assert.assertEquals("<svg></svg>", hit);
+    }
+
+    @Test
+    public void validateLeastRecentlyUsedEntryIsEvicted() throws IOException {
+
+        // Assemble
+        final RenderCache unitUnderTest = new RenderCache(cacheDirectory, 50, "2.38", "cmapx,png");
+        final List<File> pngFiles = Collections.singletonList(writeFile("A.png", "0123456789"));
+        final String mapContent = "0123456789";
+        final String first = unitUnderTest.getKey("first");
+        final String second = unitUnderTest.getKey("second");
+        final String third = unitUnderTest.getKey("third");
+
+        // Act
+        unitUnderTest.store(first, pngFiles, mapContent);
+        unitUnderTest.store(second, pngFiles, mapContent);
+        unitUnderTest.restore(first, pngFiles);
+        unitUnderTest.store(third, pngFiles, mapContent);
+
+        // Assert
+        Assert.assertEquals(1, unitUnderTest.getEvictions());
+        Assert.assertNotNull(unitUnderTest.restore(first, pngFiles));
+        Assert.assertNull(unitUnderTest.restore(second, pngFiles));
+        Assert.assertNotNull(unitUnderTest.restore(third, pngFiles));
+    }
+
+    @Test
+    public void validateImagesWithoutMarkupAreDeletedWhenLoading() throws IOException {
+
+        // Assemble
+        final RenderCache unitUnderTest = new RenderCache(cacheDirectory, 1024, "2.38", "cmapx,png");
+        final List<File> pngFiles = Collections.singletonList(writeFile("A.png", "png-content"));
+        final String complete = unitUnderTest.getKey("complete");
+        final String interrupted = unitUnderTest.getKey("interrupted");
+        unitUnderTest.store(complete, pngFiles, "map-content");
+        unitUnderTest.store(interrupted, pngFiles, "map-content");
+
+        // Simulate a store() interrupted after writing the images.
+        final File interruptedMarkup = new File(new File(cacheDirectory, interrupted.substring(0, 2)),
+                interrupted + ".map");
+        final File interruptedImage = new File(interruptedMarkup.getParentFile(), interrupted + ".png");
+        Assert.assertTrue(interruptedMarkup.delete());
+        Assert.assertTrue(interruptedImage.isFile());
+
+        // Act
+        final RenderCache reopened = new RenderCache(cacheDirectory, 1024, "2.38", "cmapx,png");
+
+        // Assert
+        Assert.assertFalse(interruptedImage.exists());
+        Assert.assertNull(reopened.restore(interrupted, pngFiles));
+        Assert.assertEquals("map-content", reopened.restore(complete, pngFiles));
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static void deleteRecursively(final File directory) throws IOException {
+        if (directory == null || !directory.exists()) {
+            return;
+        }
+
+        Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private File writeFile(final String name, final String content) throws IOException {
+        final File toReturn = new File(outputDirectory, name);
+        FileUtil.writeFile(toReturn, content);
+        return toReturn;
+    }
+}
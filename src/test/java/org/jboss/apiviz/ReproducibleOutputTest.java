@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class ReproducibleOutputTest {
+
+    @Test
+    public void validateImagesRenderedAtDifferentTimesBecomeIdentical() throws IOException {
+
+        // Assemble
+        final File directory = Files.createTempDirectory("apiviz-reproducible").toFile();
+        final File first = new File(directory, "first.png");
+        final File second = new File(directory, "second.png");
+        Files.write(first.toPath(), png("tIME", "2015", "tEXt", "Software\u0000graphviz 2.38"));
+        Files.write(second.toPath(), png("tEXt", "Software\u0000graphviz 2.40", "tIME", "2016"));
+
+        // Act
+        ReproducibleOutput.strip(Arrays.asList(first), "<map id=\"APIVIZ\"></map>");
+        ReproducibleOutput.strip(Arrays.asList(second), "<map id=\"APIVIZ\"></map>");
+
+        // Assert
+        Assert.assertArrayEquals(png(), Files.readAllBytes(first.toPath()));
+        Assert.assertArrayEquals(png(), Files.readAllBytes(second.toPath()));
+    }
+
+    @Test
+    public void validateSvgGeneratorCommentIsStripped() throws IOException {
+
+        // Assemble
+        final String svg = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+                + "<!-- Generated by graphviz version 2.38.0 (20140413.2041)\n -->\n"
+                + "<!-- Title: APIVIZ Pages: 1 -->\n"
+                + "<svg width=\"8pt\" height=\"8pt\"></svg>\n";
+
+        // Act
+        final String result = ReproducibleOutput.strip(Arrays.<File>asList(), svg);
+
+        // Assert
+        Assert.assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+                + "<!-- Title: APIVIZ Pages: 1 -->\n"
+                + "<svg width=\"8pt\" height=\"8pt\"></svg>\n", result);
+    }
+
+    //
+    // Private helpers
+    //
+
+    private static byte[] png(final String... metadataChunks) throws IOException {
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0x89504E470D0A1A0AL);
+        writeChunk(out, "IHDR", "0123456789abc");
+        for (int i = 0; i < metadataChunks.length; i += 2) {
+            writeChunk(out, metadataChunks[i], metadataChunks[i + 1]);
+        }
+        writeChunk(out, "IDAT", "pixels");
+        writeChunk(out, "IEND", "");
+        return bytes.toByteArray();
+    }
+
+    private static void writeChunk(final DataOutputStream out, final String type, final String data)
+            throws IOException {
+        out.writeInt(data.length());
+        out.writeBytes(type);
+        out.writeBytes(data);
+        out.writeInt(0);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class TransitiveReductionTest {
+
+    @Test
+    public void validateRedundantEdgeOfDiamondIsRemoved() {
+
+        // Assemble
+        // 0 -> 1 -> 3, 0 -> 2 -> 3, and the shortcut 0 -> 3
+        final int[] sources = {0, 0, 0, 1, 2};
+        final int[] targets = {1, 2, 3, 3, 3};
+
+        // Act
+        final boolean[] result = TransitiveReduction.reduce(4, sources, targets);
+
+        // Assert
+        Assert.assertEquals("[true, true, false, true, true]", Arrays.toString(result));
+    }
+
+    @Test
+    public void validateFirstRedundantEdgeOfCycleIsRemoved() {
+
+        // Assemble
+        // 0 <-> 1, both of which depend on 2.
+        final int[] sources = {0, 0, 1, 1};
+        final int[] targets = {1, 2, 0, 2};
+
+        // Act
+        final boolean[] result = TransitiveReduction.reduce(3, sources, targets);
+
+        // Assert
+        Assert.assertEquals("[true, false, true, true]", Arrays.toString(result));
+    }
+
+    @Test
+    public void validateSameResultAsRepeatedRedundantEdgeRemoval() {
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+
+            // Assemble
+            final int numNodes = 2 + random.nextInt(25);
+            final int[][] graph = createRandomGraph(random, numNodes, random.nextInt(numNodes * 4), 0.2);
+
+            // Act
+            final boolean[] expected = reduceByRepeatedRemoval(numNodes, graph[0], graph[1]);
+            final boolean[] result = TransitiveReduction.reduce(numNodes, graph[0], graph[1]);
+
+            // Assert
+            Assert.assertEquals("Graph #" + i + ": " + Arrays.deepToString(graph),
+                    Arrays.toString(expected), Arrays.toString(result));
+        }
+    }
+
+    @Test
+    public void validateSameResultAsRepeatedRedundantEdgeRemovalOnDenseGraph() {
+
+        // Assemble
+        final Random random = new Random(4711);
+        final int numNodes = 120;
+        final int[][] graph = createRandomGraph(random, numNodes, numNodes * 6, 0.02);
+
+        // Act
+        final boolean[] expected = reduceByRepeatedRemoval(numNodes, graph[0], graph[1]);
+        final boolean[] result = TransitiveReduction.reduce(numNodes, graph[0], graph[1]);
+
+        // Assert
+        Assert.assertEquals(Arrays.toString(expected), Arrays.toString(result));
+    }
+
+    /**
+     * Benchmarks TransitiveReduction against the former repeated edge removal. As wall-clock timings depend on
+     * the machine, the benchmark is not part of the test run, but is launched explicitly using the test classpath,
+     * i.e. {@code java -cp <test classpath> org.jboss.apiviz.TransitiveReductionTest}.
+     *
+     * @param args Ignored.
+     */
+    public static void main(final String[] args) {
+
+        final Random random = new Random(4711);
+        final int numSmallNodes = 120;
+        final int[][] smallGraph = createRandomGraph(random, numSmallNodes, numSmallNodes * 6, 0.02);
+        final int numLargeNodes = 600;
+        final int[][] largeGraph = createRandomGraph(random, numLargeNodes, numLargeNodes * 8, 0.02);
+
+        for (int round = 1; round <= 3; round++) {
+
+            final long legacyStart = System.nanoTime();
+            reduceByRepeatedRemoval(numSmallNodes, smallGraph[0], smallGraph[1]);
+            final long legacyNanos = System.nanoTime() - legacyStart;
+
+            final long reductionStart = System.nanoTime();
+            TransitiveReduction.reduce(numSmallNodes, smallGraph[0], smallGraph[1]);
+            final long reductionNanos = System.nanoTime() - reductionStart;
+
+            final long largeStart = System.nanoTime();
+            TransitiveReduction.reduce(numLargeNodes, largeGraph[0], largeGraph[1]);
+            final long largeNanos = System.nanoTime() - largeStart;
+
+            System.out.println("Round " + round + ": reduced " + smallGraph[0].length + " edges: "
+                    + (legacyNanos / 1000000) + " ms by repeated removal, " + (reductionNanos / 1000000)
+                    + " ms by TransitiveReduction. Reduced " + largeGraph[0].length + " edges of " + numLargeNodes
+                    + " packages in " + (largeNanos / 1000000) + " ms.");
+        }
+    }
+
+    //
+    // Private helpers
+    //
+
+    /**
+     * Creates a random graph of distinct edges, ordered by source and target, which mostly points
+     * "downwards" (i.e. to nodes with higher numbers), like package dependencies usually do.
+     */
+    private static int[][] createRandomGraph(final Random random,
+            final int numNodes,
+            final int maxEdges,
+            final double upwardsProbability) {
+
+        final Set<Long> edges = new HashSet<Long>();
+        for (int i = 0; i < maxEdges; i++) {
+            final int source = random.nextInt(numNodes);
+            final int target = random.nextDouble() < upwardsProbability || source == numNodes - 1
+                    ? random.nextInt(numNodes)
+                    : source + 1 + random.nextInt(Math.min(10, numNodes - source - 1));
+            if (source != target) {
+                edges.add((long) source * numNodes + target);
+            }
+        }
+
+        final Long[] sorted = edges.toArray(new Long[edges.size()]);
+        Arrays.sort(sorted);
+
+        final int[][] toReturn = new int[2][sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            toReturn[0][i] = (int) (sorted[i] / numNodes);
+            toReturn[1][i] = (int) (sorted[i] % numNodes);
+        }
+        return toReturn;
+    }
+
+    /**
+     * The former overview diagram algorithm: repeatedly remove the first edge whose target is
+     * indirectly reachable from its source, until no such edge remains.
+     */
+    private static boolean[] reduceByRepeatedRemoval(final int numNodes, final int[] sources, final int[] targets) {
+
+        final Map<Integer, Set<Integer>> dependencies = new HashMap<Integer, Set<Integer>>();
+        final Set<Integer> remainingEdges = new LinkedHashSet<Integer>();
+        for (int edge = 0; edge < sources.length; edge++) {
+            Set<Integer> nextDependencies = dependencies.get(sources[edge]);
+            if (nextDependencies == null) {
+                nextDependencies = new LinkedHashSet<Integer>();
+                dependencies.put(sources[edge], nextDependencies);
+            }
+            nextDependencies.add(targets[edge]);
+            remainingEdges.add(edge);
+        }
+
+        for (int i = sources.length; i > 0; i--) {
+            for (Integer edge : remainingEdges) {
+                if (isIndirectlyReachable(dependencies, sources[edge], targets[edge])) {
+                    remainingEdges.remove(edge);
+                    dependencies.get(sources[edge]).remove(targets[edge]);
+                    break;
+                }
+            }
+        }
+
+        final boolean[] toReturn = new boolean[sources.length];
+        for (Integer edge : remainingEdges) {
+            toReturn[edge] = true;
+        }
+        return toReturn;
+    }
+
+    private static boolean isIndirectlyReachable(final Map<Integer, Set<Integer>> dependencies,
+            final int source,
+            final int target) {
+
+        final Set<Integer> visited = new HashSet<Integer>();
+        visited.add(source);
+
+        final List<Integer> intermediaryTargets = dependencies.containsKey(source)
+                ? new ArrayList<Integer>(dependencies.get(source))
+                : new ArrayList<Integer>();
+        for (Integer current : intermediaryTargets) {
+            if (current != target && isReachable(dependencies, current, target, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isReachable(final Map<Integer, Set<Integer>> dependencies,
+            final int source,
+            final int target,
+            final Set<Integer> visited) {
+
+        if (!visited.add(source)) {
+            return false;
+        }
+
+        final Set<Integer> intermediaryTargets = dependencies.get(source);
+        if (intermediaryTargets != null) {
+            for (Integer current : intermediaryTargets) {
+                if (current == target || isReachable(dependencies, current, target, visited)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
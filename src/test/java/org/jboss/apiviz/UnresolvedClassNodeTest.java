@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.apiviz;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.RootDoc;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class UnresolvedClassNodeTest {
+
+    @Test
+    public void validateNamesAndSharedPackage() {
+
+        // Assemble
+        final UnresolvedClassNode.Registry unitUnderTest = new UnresolvedClassNode.Registry();
+
+        // Act
+        final UnresolvedClassNode foo = unitUnderTest.forName("org.missing.Foo");
+        final UnresolvedClassNode bar = unitUnderTest.forName("org.missing.Bar");
+        final UnresolvedClassNode unnamed = unitUnderTest.forName("Baz");
+
+        // Assert
+        Assert.assertEquals("Foo.NotFound", foo.name());
+        Assert.assertEquals("Foo.NotFound", foo.qualifiedName());
+        Assert.assertEquals("org.missing", foo.containingPackage().name());
+        Assert.assertSame(foo.containingPackage(), bar.containingPackage());
+        Assert.assertEquals("", unnamed.containingPackage().name());
+        Assert.assertFalse(foo.isIncluded());
+        Assert.assertEquals(0, foo.methods().length);
+        Assert.assertEquals(0, foo.tags().length);
+    }
+
+    @Test
+    public void validateMissingClassesAreInternedPerRegistry() {
+
+        // Assemble
+        final UnresolvedClassNode.Registry first = new UnresolvedClassNode.Registry();
+        final UnresolvedClassNode.Registry second = new UnresolvedClassNode.Registry();
+
+        // Act
+        final UnresolvedClassNode foo = first.forName("org.missing.Foo");
+
+        // Assert
+        Assert.assertSame(foo, first.forName("org.missing.Foo"));
+        Assert.assertNotSame(foo, second.forName("org.missing.Foo"));
+        Assert.assertEquals(foo, second.forName("org.missing.Foo"));
+        Assert.assertNotEquals(foo, first.forName("org.other.Foo"));
+    }
+
+    @Test
+    public void validateEdgesToTheSameMissingClassHaveEqualTargets() {
+
+        // Assemble
+        final ClassDoc source = new UnresolvedClassNode.Registry().forName("org.example.Source");
+        final RootDoc rootDoc = (RootDoc) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RootDoc.class},
+                new InvocationHandler() {
+                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                        return null;
+                    }
+                });
+
+        // Act
+        final Edge first = new Edge(rootDoc, EdgeType.DEPENDENCY, source, "org.missing.Foo");
+        final Edge second = new Edge(rootDoc, EdgeType.DEPENDENCY, source, " org.missing.Foo ");
+
+        // Assert
+        Assert.assertEquals(first.getTarget(), second.getTarget());
+        Assert.assertEquals("Foo.NotFound", ((ClassDoc) first.getTarget()).qualifiedName());
+        Assert.assertEquals(first.hashCode(), second.hashCode());
+    }
+}
@@ -0,0 +1,51 @@
+package se.jguru.javadoc.apiviz.model;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * @author The APIviz Project (apiviz-dev@lists.jboss.org)
+ */
+public class DocletModelTest {
+
+    // Shared state
+    private File classDirectory;
+    private File jarFile;
+
+    @Before
+    public void setupSharedState() throws IOException {
+        classDirectory = Files.createTempDirectory("apiviz-classes").toFile();
+        jarFile = new File(classDirectory, "classes.jar");
+        Files.write(jarFile.toPath(), new byte[0]);
+    }
+
+    @After
+    public void teardownSharedState() throws IOException {
+        Files.deleteIfExists(jarFile.toPath());
+        Files.deleteIfExists(classDirectory.toPath());
+    }
+
+    @Test
+    public void validateClassDirectoriesAndJarFilesAreReadableClassPathSnippets() {
+
+        // Act & Assert
+        Assert.assertTrue(DocletModel.isReadableClassPathSnippet(classDirectory));
+        Assert.assertTrue(DocletModel.isReadableClassPathSnippet(jarFile));
+        Assert.assertFalse(DocletModel.isReadableClassPathSnippet(new File(classDirectory, "missing.jar")));
+    }
+
+    @Test
+    public void validateSplittingClassPath() {
+
+        // Act & Assert
+        Assert.assertEquals(2, DocletModel.splitAndConvert(
+                classDirectory.getPath() + File.pathSeparator + jarFile.getPath()).size());
+        Assert.assertEquals(0, DocletModel.splitAndConvert("").size());
+    }
+}